@@ -0,0 +1,56 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.exceptions.GlobalExceptionHandler;
+import com.example.demo.exceptions.OutOfStockException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Error path of a rejected order: building the error body through {@link GlobalExceptionHandler}
+ * (which goes through its private {@code buildErrorResponse}), with and without the cost of
+ * creating the exception, and writing the body as JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private MockHttpServletRequest request;
+    private OutOfStockException exception;
+    private ObjectMapper objectMapper;
+    private Object body;
+
+    @Setup
+    public void setUp() {
+        handler = new GlobalExceptionHandler();
+        request = new MockHttpServletRequest("POST", "/orders");
+        exception = new OutOfStockException("Product is out of stock");
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        body = handler.handleOutOfStock(exception, request).getBody();
+    }
+
+    @Benchmark
+    public ResponseEntity<?> handleOutOfStock() {
+        return handler.handleOutOfStock(exception, request);
+    }
+
+    @Benchmark
+    public ResponseEntity<?> throwAndHandleOutOfStock() {
+        return handler.handleOutOfStock(new OutOfStockException("Product is out of stock"), request);
+    }
+
+    @Benchmark
+    public byte[] errorBodyToJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(body);
+    }
+}
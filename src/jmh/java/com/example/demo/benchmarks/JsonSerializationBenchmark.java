@@ -0,0 +1,60 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the response bodies, with the same builder defaults Spring MVC uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class JsonSerializationBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ProductEntity product;
+    private OrderEntity order;
+    private OrderResponse orderResponse;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+        product = new ProductEntity();
+        product.setProductId(6);
+        product.setProductName("Test Product");
+        product.setStock(42);
+
+        order = new OrderEntity();
+        order.setOrderId(1001);
+        order.setCustomerName("Alice");
+        order.setProduct(product);
+
+        orderResponse = OrderResponse.from(order);
+    }
+
+    @Benchmark
+    public byte[] productEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] orderEntity() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(order);
+    }
+
+    @Benchmark
+    public byte[] orderResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(orderResponse);
+    }
+}
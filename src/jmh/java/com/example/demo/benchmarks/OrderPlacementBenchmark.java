@@ -0,0 +1,70 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.services.OrderService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link OrderService#placeOrder} against the embedded H2 database, with the row-lock
+ * path and the in-memory reservation engine.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OrderPlacementBenchmark {
+
+    @Param({"false", "true"})
+    public boolean inMemoryStock;
+
+    private ConfigurableApplicationContext context;
+    private OrderService orderService;
+    private OrderRequest request;
+
+    @Setup(Level.Trial)
+    public void startApplication() {
+        context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("orderup.stock.in-memory.enabled=" + inMemoryStock,
+                        "logging.level.root=WARN",
+                        "logging.level.com.example.demo=OFF")
+                .run();
+        orderService = context.getBean(OrderService.class);
+
+        ProductEntity product = new ProductEntity();
+        product.setProductName("BenchmarkProduct");
+        product.setStock(Integer.MAX_VALUE / 2);
+        product = context.getBean(ProductRepository.class).save(product);
+
+        request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName("Benchmark");
+    }
+
+    @TearDown(Level.Trial)
+    public void stopApplication() {
+        context.close();
+    }
+
+    @Benchmark
+    public OrderEntity placeOrder() {
+        return orderService.placeOrder(request);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public OrderEntity placeOrderContended() {
+        return orderService.placeOrder(request);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.benchmarks;
+
+import com.example.demo.entity.ProductEntity;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the {@code synchronized} {@link ProductEntity#reserveStock()} monitor, uncontended and
+ * with several threads on one product.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ReserveStockBenchmark {
+
+    @State(Scope.Thread)
+    public static class OwnProduct {
+        ProductEntity product = new ProductEntity();
+
+        @Setup(Level.Iteration)
+        public void restock() {
+            product.setStock(Integer.MAX_VALUE);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SharedProduct {
+        ProductEntity product = new ProductEntity();
+
+        @Setup(Level.Iteration)
+        public void restock() {
+            product.setStock(Integer.MAX_VALUE);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveStock(OwnProduct state) {
+        return state.product.reserveStock();
+    }
+
+    @Benchmark
+    public boolean reserveStockQuantity(OwnProduct state) {
+        return state.product.reserveStock(3);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean reserveStockContended(SharedProduct state) {
+        return state.product.reserveStock();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * Sends read-only transactions to their own connection pool, so list and lookup traffic cannot
+ * take the connections that orders need for their locking transactions.
+ *
+ * The application {@link DataSource} is a {@link LazyConnectionDataSourceProxy} that fetches the
+ * physical connection on the first statement. By then Spring has marked a
+ * {@code @Transactional(readOnly = true)} transaction's connection read-only, and the proxy takes
+ * it from the read pool instead of the write pool. Hibernate runs such transactions with flushing
+ * off and loads entities read-only, so no snapshots are kept for dirty checking.
+ *
+ * The read pool connects to {@code orderup.datasource.read.url}, e.g. a replica, or to the primary
+ * when no URL is set. Reads inherited from Spring Data, such as {@code findById}, run in a
+ * read-only transaction of their own when called outside one, so against a lagging replica they
+ * may not see a write that just committed. Background jobs that act on stock figures, such as the
+ * engine's reconciliation and the slot rebalancer, read inside read-write transactions instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "orderup.datasource.read.enabled", havingValue = "true")
+public class ReadWriteDataSourceConfig {
+
+    /**
+     * The primary pool, configured by {@code spring.datasource.*} and {@code spring.datasource.hikari.*}
+     * as it would be without routing.
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource writeDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public HikariDataSource readDataSource(DataSourceProperties dataSourceProperties,
+                                           @Value("${orderup.datasource.read.url:}") String url,
+                                           @Value("${orderup.datasource.read.username:}") String username,
+                                           @Value("${orderup.datasource.read.password:}") String password,
+                                           @Value("${orderup.datasource.read.pool-size:10}") int poolSize) {
+        HikariDataSource read = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        if (!url.isBlank()) {
+            read.setJdbcUrl(url);
+        }
+        if (!username.isBlank()) {
+            read.setUsername(username);
+            read.setPassword(password);
+        }
+        read.setPoolName("orderup-read");
+        read.setMaximumPoolSize(poolSize);
+        read.setReadOnly(true);
+        return read;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("writeDataSource") HikariDataSource writeDataSource,
+                                 @Qualifier("readDataSource") HikariDataSource readDataSource) {
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(writeDataSource);
+        routing.setReadOnlyDataSource(readDataSource);
+        return routing;
+    }
+}
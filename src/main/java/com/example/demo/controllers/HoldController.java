@@ -0,0 +1,39 @@
+package com.example.demo.controllers;
+
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.services.StockHoldService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/holds")
+public class HoldController {
+
+    private final StockHoldService stockHoldService;
+
+    @Autowired
+    public HoldController(StockHoldService stockHoldService){
+        this.stockHoldService = stockHoldService;
+    }
+
+    @PostMapping
+    public ResponseEntity<StockHoldEntity> hold(@RequestBody HoldRequest holdRequest){
+        return ResponseEntity.ok(stockHoldService.hold(holdRequest));
+    }
+
+    @PostMapping("/{id}/confirm")
+    public ResponseEntity<List<OrderResponse>> confirm(@PathVariable int id){
+        return ResponseEntity.ok(stockHoldService.confirm(id).stream().map(OrderResponse::from).toList());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> release(@PathVariable int id){
+        stockHoldService.release(id);
+        return ResponseEntity.noContent().build();
+    }
+}
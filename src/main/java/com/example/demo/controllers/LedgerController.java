@@ -0,0 +1,42 @@
+package com.example.demo.controllers;
+
+import com.example.demo.entity.CustomerOrdersViewEntity;
+import com.example.demo.entity.StockEventEntity;
+import com.example.demo.services.StockLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/ledger")
+public class LedgerController {
+
+    private final StockLedger stockLedger;
+
+    @Autowired
+    public LedgerController(StockLedger stockLedger){
+        this.stockLedger = stockLedger;
+    }
+
+    @GetMapping("/events")
+    public ResponseEntity<List<StockEventEntity>> getEvents(@RequestParam(required = false) Integer productId,
+                                                            @RequestParam(defaultValue = "0") int afterId,
+                                                            @RequestParam(defaultValue = "100") int limit){
+        List<StockEventEntity> events = productId == null
+                ? stockLedger.getEvents(afterId, limit)
+                : stockLedger.getEventsForProduct(productId, afterId, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!events.isEmpty()) {
+            response.header(JsonStreaming.NEXT_AFTER_ID_HEADER,
+                    String.valueOf(events.get(events.size() - 1).getEventId()));
+        }
+        return response.body(events);
+    }
+
+    @GetMapping("/customers/{customerName}")
+    public ResponseEntity<CustomerOrdersViewEntity> getCustomerOrders(@PathVariable String customerName){
+        return ResponseEntity.ok(stockLedger.getCustomerOrders(customerName));
+    }
+}
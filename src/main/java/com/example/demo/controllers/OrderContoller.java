@@ -1,34 +1,109 @@
 package com.example.demo.controllers;
 
+import com.example.demo.dtos.BatchOrderRequest;
 import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.dtos.OrderStatusResponse;
 import com.example.demo.entity.OrderEntity;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.OrderNotFoundException;
+import com.example.demo.services.IdempotencyIndex;
+import com.example.demo.services.OrderIntake;
 import com.example.demo.services.OrderService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.aspectj.weaver.ast.Or;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.net.URI;
 import java.util.List;
 
 @RestController
 @RequestMapping("/orders")
 public class OrderContoller {
 
+    static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final OrderService orderService;
+    private final OrderIntake orderIntake;
+    private final IdempotencyIndex idempotencyIndex;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public OrderContoller(OrderService orderService){
+    public OrderContoller(OrderService orderService, OrderIntake orderIntake, IdempotencyIndex idempotencyIndex,
+                          ObjectMapper objectMapper){
         this.orderService = orderService;
+        this.orderIntake = orderIntake;
+        this.idempotencyIndex = idempotencyIndex;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<OrderEntity> getOrders(){
-        return orderService.getOrders();
+    public ResponseEntity<List<OrderResponse>> getOrders(@RequestParam(defaultValue = "0") int afterId,
+                                                         @RequestParam(defaultValue = "100") int limit,
+                                                         @RequestParam(required = false) Integer productId,
+                                                         @RequestParam(required = false) String customer){
+        List<OrderResponse> orders;
+        if (productId != null && customer != null) {
+            throw new InvalidRequestException("Filter by productId or customer, not both");
+        } else if (productId != null) {
+            orders = orderService.getOrdersForProduct(productId, afterId, limit);
+        } else if (customer != null) {
+            orders = orderService.getOrdersForCustomer(customer, afterId, limit);
+        } else {
+            orders = orderService.getOrders(afterId, limit);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!orders.isEmpty()) {
+            response.header(JsonStreaming.NEXT_AFTER_ID_HEADER,
+                    String.valueOf(orders.get(orders.size() - 1).getOrderId()));
+        }
+        return response.body(orders);
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamOrders(){
+        StreamingResponseBody body = JsonStreaming.jsonArray(objectMapper, orderService::streamOrders);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
     }
 
+    /**
+     * Places the order and returns it, or with the async intake enabled, queues it and returns 202
+     * with a token to poll at {@code /orders/status/{token}}. A synchronous request carrying an
+     * {@code Idempotency-Key} is placed at most once; repeats get the original order back. Queued
+     * orders cannot honor the key, so the intake refuses requests that carry one.
+     */
     @PostMapping
-    public ResponseEntity<OrderEntity> placeOrder(@RequestBody OrderRequest orderRequest){
+    public ResponseEntity<?> placeOrder(@RequestBody OrderRequest orderRequest,
+                                        @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey){
+        if (orderIntake.isEnabled()) {
+            if (idempotencyKey != null) {
+                throw new InvalidRequestException(IDEMPOTENCY_KEY_HEADER
+                        + " is not supported with asynchronous intake; poll the returned token instead of retrying");
+            }
+            OrderStatusResponse status = orderIntake.submit(orderRequest);
+            return ResponseEntity.accepted().location(URI.create("/orders/status/" + status.getToken())).body(status);
+        }
+        if (idempotencyKey != null) {
+            return ResponseEntity.ok(idempotencyIndex.placeOnce(idempotencyKey, orderRequest,
+                    () -> OrderResponse.from(orderService.placeOrder(orderRequest))));
+        }
         OrderEntity savedOrder = orderService.placeOrder(orderRequest);
-        return ResponseEntity.ok(savedOrder);
+        return ResponseEntity.ok(OrderResponse.from(savedOrder));
+    }
+
+    @GetMapping("/status/{token}")
+    public ResponseEntity<OrderStatusResponse> getOrderStatus(@PathVariable String token){
+        return ResponseEntity.ok(orderIntake.status(token)
+                .orElseThrow(() -> new OrderNotFoundException("Order not found")));
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<OrderResponse>> placeOrders(@RequestBody BatchOrderRequest batchOrderRequest){
+        List<OrderEntity> savedOrders = orderService.placeOrders(batchOrderRequest);
+        return ResponseEntity.ok(savedOrders.stream().map(OrderResponse::from).toList());
     }
 }
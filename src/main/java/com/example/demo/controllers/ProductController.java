@@ -1,11 +1,16 @@
 package com.example.demo.controllers;
 
 import com.example.demo.dtos.ProductRequest;
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.dtos.ProductSalesResponse;
 import com.example.demo.entity.ProductEntity;
 import com.example.demo.services.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -14,27 +19,61 @@ import java.util.List;
 public class ProductController {
 
     private final ProductService productService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public ProductController(ProductService productService){
+    public ProductController(ProductService productService, ObjectMapper objectMapper){
         this.productService = productService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
-    public List<ProductEntity> getAllProducts(){
-        return productService.getAllProducts();
+    public ResponseEntity<List<ProductResponse>> getAllProducts(@RequestParam(defaultValue = "0") int afterId,
+                                                                @RequestParam(defaultValue = "100") int limit){
+        List<ProductResponse> products = productService.getProducts(afterId, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (!products.isEmpty()) {
+            response.header(JsonStreaming.NEXT_AFTER_ID_HEADER,
+                    String.valueOf(products.get(products.size() - 1).getProductId()));
+        }
+        return response.body(products);
     }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ProductResponse> getProduct(@PathVariable int id){
+        return ResponseEntity.ok(productService.getProduct(id));
+    }
+
+    @GetMapping("/{id}/sales")
+    public ResponseEntity<ProductSalesResponse> getProductSales(@PathVariable int id){
+        return ResponseEntity.ok(productService.getSales(id));
+    }
+
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamProducts(){
+        StreamingResponseBody body = JsonStreaming.jsonArray(objectMapper, productService::streamProducts);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     @PostMapping
-    public ResponseEntity<ProductEntity> addProduct(@RequestBody ProductRequest productRequest){
+    public ResponseEntity<ProductResponse> addProduct(@RequestBody ProductRequest productRequest){
         ProductEntity savedProduct = productService.addProduct(productRequest);
-        return ResponseEntity.ok(savedProduct);
+        return ResponseEntity.ok(ProductResponse.from(savedProduct));
     }
     @PatchMapping("/{id}/update")
-    public ResponseEntity<ProductEntity> updateProductStock(
+    public ResponseEntity<ProductResponse> updateProductStock(
             @PathVariable int id,
             @RequestParam int stock) {
 
         ProductEntity updatedProduct = productService.updateStock(id, stock);
-        return ResponseEntity.ok(updatedProduct);
+        return ResponseEntity.ok(ProductResponse.from(updatedProduct));
+    }
+
+    @PatchMapping("/{id}/slots")
+    public ResponseEntity<ProductResponse> updateProductSlots(
+            @PathVariable int id,
+            @RequestParam int count) {
+
+        return ResponseEntity.ok(productService.setStockSlots(id, count));
     }
 }
@@ -0,0 +1,33 @@
+package com.example.demo.dtos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchOrderRequest {
+    private String customerName;
+    private List<OrderLineItem> items = new ArrayList<>();
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public List<OrderLineItem> getItems() {
+        return items;
+    }
+
+    public void setItems(List<OrderLineItem> items) {
+        this.items = items;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchOrderRequest{" +
+                "customerName='" + customerName + '\'' +
+                ", items=" + items +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.dtos;
+
+public class HoldRequest {
+    private int productId;
+    private int quantity = 1;
+    private String customerName;
+    private Integer ttlSeconds;
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    /**
+     * How long to hold the units, or null for the configured default.
+     */
+    public Integer getTtlSeconds() {
+        return ttlSeconds;
+    }
+
+    public void setTtlSeconds(Integer ttlSeconds) {
+        this.ttlSeconds = ttlSeconds;
+    }
+
+    @Override
+    public String toString() {
+        return "HoldRequest{" +
+                "productId=" + productId +
+                ", quantity=" + quantity +
+                ", customerName='" + customerName + '\'' +
+                ", ttlSeconds=" + ttlSeconds +
+                '}';
+    }
+}
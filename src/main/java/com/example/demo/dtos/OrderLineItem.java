@@ -0,0 +1,30 @@
+package com.example.demo.dtos;
+
+public class OrderLineItem {
+    private int productId;
+    private int quantity;
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderLineItem{" +
+                "productId=" + productId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.demo.dtos;
+
+import com.example.demo.entity.OrderEntity;
+
+public class OrderResponse {
+    private final int orderId;
+    private final String customerName;
+    private final ProductResponse product;
+
+    public OrderResponse(int orderId, String customerName, ProductResponse product) {
+        this.orderId = orderId;
+        this.customerName = customerName;
+        this.product = product;
+    }
+
+    /**
+     * Flat form used by JPQL constructor expressions.
+     */
+    public OrderResponse(int orderId, String customerName, int productId, String productName, int stock) {
+        this(orderId, customerName, new ProductResponse(productId, productName, stock));
+    }
+
+    public static OrderResponse from(OrderEntity order) {
+        return new OrderResponse(order.getOrderId(), order.getCustomerName(), ProductResponse.from(order.getProduct()));
+    }
+
+    public int getOrderId() {
+        return orderId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public ProductResponse getProduct() {
+        return product;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderResponse{" +
+                "orderId=" + orderId +
+                ", product=" + product +
+                '}';
+    }
+}
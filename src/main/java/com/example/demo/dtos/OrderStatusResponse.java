@@ -0,0 +1,50 @@
+package com.example.demo.dtos;
+
+/**
+ * State of an order accepted through the asynchronous intake, looked up by its token.
+ */
+public class OrderStatusResponse {
+
+    public enum Status { PENDING, PLACED, REJECTED, FAILED }
+
+    private final String token;
+    private final Status status;
+    private final String message;
+    private final OrderResponse order;
+
+    public OrderStatusResponse(String token, Status status, String message, OrderResponse order) {
+        this.token = token;
+        this.status = status;
+        this.message = message;
+        this.order = order;
+    }
+
+    public static OrderStatusResponse pending(String token) {
+        return new OrderStatusResponse(token, Status.PENDING, null, null);
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public OrderResponse getOrder() {
+        return order;
+    }
+
+    @Override
+    public String toString() {
+        return "OrderStatusResponse{" +
+                "token='" + token + '\'' +
+                ", status=" + status +
+                ", order=" + order +
+                '}';
+    }
+}
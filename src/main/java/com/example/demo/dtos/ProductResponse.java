@@ -0,0 +1,44 @@
+package com.example.demo.dtos;
+
+import com.example.demo.entity.ProductEntity;
+
+public class ProductResponse {
+    private final int productId;
+    private final String productName;
+    private final int stock;
+
+    public ProductResponse(int productId, String productName, int stock) {
+        this.productId = productId;
+        this.productName = productName;
+        this.stock = stock;
+    }
+
+    public static ProductResponse from(ProductEntity product) {
+        return new ProductResponse(product.getProductId(), product.getProductName(), product.getStock());
+    }
+
+    public ProductResponse withStock(int stock) {
+        return new ProductResponse(productId, productName, stock);
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductResponse{" +
+                "productId=" + productId +
+                ", productName='" + productName + '\'' +
+                ", stock=" + stock +
+                '}';
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.demo.dtos;
+
+/**
+ * Sales counter of one product. Every order is one unit, so {@code unitsSold} is also its order count.
+ */
+public class ProductSalesResponse {
+    private final int productId;
+    private final long unitsSold;
+
+    public ProductSalesResponse(int productId, long unitsSold) {
+        this.productId = productId;
+        this.unitsSold = unitsSold;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    @Override
+    public String toString() {
+        return "ProductSalesResponse{" +
+                "productId=" + productId +
+                ", unitsSold=" + unitsSold +
+                '}';
+    }
+}
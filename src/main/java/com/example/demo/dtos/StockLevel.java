@@ -0,0 +1,37 @@
+package com.example.demo.dtos;
+
+/**
+ * Stock and units sold of one product as stored in the {@code products} table.
+ */
+public class StockLevel {
+    private final int productId;
+    private final int stock;
+    private final long unitsSold;
+
+    public StockLevel(int productId, int stock, long unitsSold) {
+        this.productId = productId;
+        this.stock = stock;
+        this.unitsSold = unitsSold;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    @Override
+    public String toString() {
+        return "StockLevel{" +
+                "productId=" + productId +
+                ", stock=" + stock +
+                ", unitsSold=" + unitsSold +
+                '}';
+    }
+}
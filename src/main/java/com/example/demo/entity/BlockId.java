@@ -0,0 +1,27 @@
+package com.example.demo.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Assigns ids from blocks reserved in the {@code id_allocator} table, so inserts can be batched.
+ * {@code table} and {@code column} seed a new sequence above the ids already in use.
+ */
+@IdGeneratorType(BlockIdGenerator.class)
+@Retention(RUNTIME)
+@Target({FIELD, METHOD})
+public @interface BlockId {
+    String sequence();
+
+    String table();
+
+    String column();
+
+    int blockSize() default 100;
+}
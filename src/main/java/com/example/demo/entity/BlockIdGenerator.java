@@ -0,0 +1,44 @@
+package com.example.demo.entity;
+
+import com.example.demo.repository.IdBlockAllocator;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.hibernate.generator.EventTypeSets;
+import org.hibernate.resource.beans.spi.ManagedBeanRegistry;
+
+import java.util.EnumSet;
+
+public class BlockIdGenerator implements BeforeExecutionGenerator {
+
+    private final BlockId config;
+    private transient volatile IdBlockAllocator allocator;
+
+    public BlockIdGenerator(BlockId config) {
+        this.config = config;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object owner, Object currentValue, EventType eventType) {
+        long id = allocator(session).next(config.sequence(), config.blockSize(), config.table(), config.column());
+        return Math.toIntExact(id);
+    }
+
+    @Override
+    public EnumSet<EventType> getEventTypes() {
+        return EventTypeSets.INSERT_ONLY;
+    }
+
+    private IdBlockAllocator allocator(SharedSessionContractImplementor session) {
+        IdBlockAllocator current = allocator;
+        if (current == null) {
+            // Resolved through Hibernate's bean container, i.e. from the Spring context owning this session factory
+            current = session.getFactory().getServiceRegistry()
+                    .requireService(ManagedBeanRegistry.class)
+                    .getBean(IdBlockAllocator.class)
+                    .getBeanInstance();
+            allocator = current;
+        }
+        return current;
+    }
+}
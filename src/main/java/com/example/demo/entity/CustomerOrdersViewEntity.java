@@ -0,0 +1,76 @@
+package com.example.demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Read model of one customer's orders, maintained from the ledger by the projector.
+ */
+@Entity
+@Table(name = "customer_orders_view")
+public class CustomerOrdersViewEntity implements Persistable<String> {
+
+    @Id
+    private String customerName;
+
+    @Transient
+    private boolean isNew = true;
+    private long orderCount;
+    private Integer lastOrderId;
+    private LocalDateTime lastOrderAt;
+
+    protected CustomerOrdersViewEntity() {
+    }
+
+    public CustomerOrdersViewEntity(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public void addOrder(int orderId, LocalDateTime placedAt) {
+        orderCount++;
+        if (lastOrderAt == null || !placedAt.isBefore(lastOrderAt)) {
+            lastOrderId = orderId;
+            lastOrderAt = placedAt;
+        }
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public Integer getLastOrderId() {
+        return lastOrderId;
+    }
+
+    public LocalDateTime getLastOrderAt() {
+        return lastOrderAt;
+    }
+
+    @Override
+    @JsonIgnore
+    public String getId() {
+        return customerName;
+    }
+
+    /**
+     * Ids are assigned by the caller, so Spring Data cannot tell new rows from existing ones by id.
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+/**
+ * The next unreserved id of one {@link BlockId} sequence. Only mapped so the table is part of the
+ * schema; {@code IdBlockAllocator} reads and advances it over its own connections.
+ */
+@Entity
+@Table(name = "id_allocator")
+public class IdAllocatorEntity {
+    @Id
+    @Column(length = 64)
+    private String sequenceName;
+    @Column(nullable = false)
+    private long nextVal;
+
+    public String getSequenceName() {
+        return sequenceName;
+    }
+
+    public void setSequenceName(String sequenceName) {
+        this.sequenceName = sequenceName;
+    }
+
+    public long getNextVal() {
+        return nextVal;
+    }
+
+    public void setNextVal(long nextVal) {
+        this.nextVal = nextVal;
+    }
+}
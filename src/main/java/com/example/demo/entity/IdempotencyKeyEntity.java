@@ -0,0 +1,67 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * An {@code Idempotency-Key} seen on {@code POST /orders} and the order it produced. The order id
+ * stays null while the first request with the key is still being placed; {@code createdAt} is when
+ * that request claimed the key.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+public class IdempotencyKeyEntity {
+
+    @Id
+    @Column(length = 100)
+    private String idempotencyKey;
+    /**
+     * SHA-256 of the request's product and customer, hex encoded.
+     */
+    @Column(length = 64, nullable = false)
+    private String requestDigest;
+    private Integer orderId;
+    private LocalDateTime createdAt;
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
+
+    public String getRequestDigest() {
+        return requestDigest;
+    }
+
+    public void setRequestDigest(String requestDigest) {
+        this.requestDigest = requestDigest;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public void setOrderId(Integer orderId) {
+        this.orderId = orderId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyKey{" +
+                "key='" + idempotencyKey + '\'' +
+                ", order_id=" + orderId +
+                ", created_at=" + createdAt +
+                '}';
+    }
+}
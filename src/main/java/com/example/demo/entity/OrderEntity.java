@@ -1,20 +1,23 @@
 package com.example.demo.entity;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
-import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_customer", columnList = "customer_name, order_id"),
+        @Index(name = "idx_orders_lease", columnList = "lease_id")})
 public class OrderEntity {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(sequence = "orders", table = "orders", column = "order_id", blockSize = 500)
     private int orderId;
     private String customerName;
     @ManyToOne
     @JoinColumn(name = "product_id")
-    @JsonIgnoreProperties({"orders"})
     private ProductEntity product;
+    /**
+     * The stock lease the unit came from, or null when the order took it from the product row.
+     */
+    private Integer leaseId;
 
     public int getOrderId() {
         return orderId;
@@ -40,6 +43,14 @@ public class OrderEntity {
         this.product = product;
     }
 
+    public Integer getLeaseId() {
+        return leaseId;
+    }
+
+    public void setLeaseId(Integer leaseId) {
+        this.leaseId = leaseId;
+    }
+
     @Override
     public String toString() {
         return "Orders{" +
@@ -1,34 +1,28 @@
 package com.example.demo.entity;
 
-import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 
-import java.util.ArrayList;
-import java.util.List;
-
 @Entity
 @Table(name = "products")
 public class ProductEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @BlockId(sequence = "products", table = "products", column = "product_id", blockSize = 20)
     private int productId;
     private String productName;
     private int stock;
 
-    @OneToMany(mappedBy = "product", cascade = CascadeType.ALL)
-    @JsonBackReference
-    private List<OrderEntity> orders = new ArrayList<>();
-
-    public void addOrder(OrderEntity order) {
-        orders.add(order);
-        order.setProduct(this);
-    }
+    @Version
+    @JsonIgnore
+    private long version;
 
-    public void removeOrder(OrderEntity order) {
-        orders.remove(order);
-        order.setProduct(null);
-    }
+    /**
+     * Units sold so far, maintained with every stock decrement. Each order is one unit, so this is
+     * also the product's order count; the orders themselves are paged with {@code GET /orders?productId=}.
+     */
+    @Column(nullable = false)
+    private long unitsSold;
 
     public int getProductId() {
         return productId;
@@ -54,20 +48,30 @@ public class ProductEntity {
         this.stock = stock;
     }
 
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
     public synchronized boolean reserveStock(){
         if(this.stock > 0){
             this.stock--;
+            this.unitsSold++;
             return true;
         }
         return false;
     }
 
-    public List<OrderEntity> getOrders() {
-        return orders;
-    }
-
-    public void setOrders(List<OrderEntity> orders) {
-        this.orders = orders;
+    public synchronized boolean reserveStock(int quantity){
+        if(quantity > 0 && this.stock >= quantity){
+            this.stock -= quantity;
+            this.unitsSold += quantity;
+            return true;
+        }
+        return false;
     }
 
     @Override
@@ -76,7 +80,7 @@ public class ProductEntity {
                 "productId=" + productId +
                 ", productName='" + productName + '\'' +
                 ", stock=" + stock +
-                ", orders=" + orders +
+                ", unitsSold=" + unitsSold +
                 '}';
     }
 }
@@ -0,0 +1,103 @@
+package com.example.demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * One share of a slotted product's stock. A product split into K slots has K rows here, and
+ * orders for it lock one slot row instead of the {@code products} row. Units sold from a slot are
+ * counted on the slot and added to the product's counter when the slots are removed.
+ */
+@Entity
+@Table(name = "product_stock_slots")
+@IdClass(ProductStockSlotEntity.Key.class)
+public class ProductStockSlotEntity implements Persistable<ProductStockSlotEntity.Key> {
+
+    @Id
+    private int productId;
+    @Id
+    private int slot;
+    private int stock;
+    @Column(nullable = false)
+    private long unitsSold;
+
+    @Transient
+    private boolean isNew = true;
+
+    protected ProductStockSlotEntity() {
+    }
+
+    public ProductStockSlotEntity(int productId, int slot, int stock) {
+        this.productId = productId;
+        this.slot = slot;
+        this.stock = stock;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void setStock(int stock) {
+        this.stock = stock;
+    }
+
+    public long getUnitsSold() {
+        return unitsSold;
+    }
+
+    @Override
+    @JsonIgnore
+    public Key getId() {
+        return new Key(productId, slot);
+    }
+
+    /**
+     * Ids are assigned by the caller, so Spring Data cannot tell new rows from existing ones by id.
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+
+    public static class Key implements Serializable {
+        private int productId;
+        private int slot;
+
+        protected Key() {
+        }
+
+        public Key(int productId, int slot) {
+            this.productId = productId;
+            this.slot = slot;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && productId == key.productId && slot == key.slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(productId, slot);
+        }
+    }
+}
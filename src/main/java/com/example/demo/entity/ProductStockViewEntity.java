@@ -0,0 +1,70 @@
+package com.example.demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * Read model of a product's current stock, maintained from the ledger by the projector and
+ * served to catalog reads instead of the {@code products} row that orders lock.
+ */
+@Entity
+@Table(name = "product_stock_view")
+public class ProductStockViewEntity implements Persistable<Integer> {
+
+    @Id
+    private int productId;
+
+    @Transient
+    private boolean isNew = true;
+    private String productName;
+    private int stock;
+
+    protected ProductStockViewEntity() {
+    }
+
+    public ProductStockViewEntity(int productId) {
+        this.productId = productId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public void setProductName(String productName) {
+        this.productName = productName;
+    }
+
+    public int getStock() {
+        return stock;
+    }
+
+    public void addStock(int quantity) {
+        this.stock += quantity;
+    }
+
+    @Override
+    @JsonIgnore
+    public Integer getId() {
+        return productId;
+    }
+
+    /**
+     * Ids are assigned by the caller, so Spring Data cannot tell new rows from existing ones by id.
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.demo.entity;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+/**
+ * A ledger event not yet applied to the read models. Written in the same transaction as the event
+ * and deleted by the projector in the transaction that applies it, so every event is projected
+ * exactly once whatever order the writing transactions commit in.
+ */
+@Entity
+@Table(name = "stock_event_queue")
+public class QueuedStockEventEntity implements Persistable<Integer> {
+
+    @Id
+    private int eventId;
+
+    @Transient
+    private boolean isNew = true;
+
+    protected QueuedStockEventEntity() {
+    }
+
+    public QueuedStockEventEntity(int eventId) {
+        this.eventId = eventId;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    @Override
+    @JsonIgnore
+    public Integer getId() {
+        return eventId;
+    }
+
+    /**
+     * Ids are assigned by the caller, so Spring Data cannot tell new rows from existing ones by id.
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        isNew = false;
+    }
+}
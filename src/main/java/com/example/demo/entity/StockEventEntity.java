@@ -0,0 +1,116 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * One stock movement in the append-only ledger. Rows are inserted and never updated or deleted.
+ * {@code quantity} is the signed change to the product's stock: the opening stock of a new product,
+ * units added by a restock, -1 for each order, and the units a hold or a stock lease takes off stock
+ * or puts back. An order sold from a lease changes nothing, since the lease already took its unit.
+ */
+@Entity
+@Table(name = "stock_events")
+public class StockEventEntity {
+
+    public enum Type { PRODUCT_ADDED, RESTOCKED, ORDER_PLACED, HELD, HOLD_RELEASED, LEASED, LEASE_RETURNED }
+
+    @Id
+    @BlockId(sequence = "stock_events", table = "stock_events", column = "event_id", blockSize = 1000)
+    private int eventId;
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private Type type;
+    private int productId;
+    private String productName;
+    private Integer orderId;
+    private String customerName;
+    private int quantity;
+    private LocalDateTime createdAt;
+
+    public static StockEventEntity productAdded(int productId, String productName, int stock) {
+        StockEventEntity event = of(Type.PRODUCT_ADDED, productId, stock);
+        event.productName = productName;
+        return event;
+    }
+
+    public static StockEventEntity restocked(int productId, int quantity) {
+        return of(Type.RESTOCKED, productId, quantity);
+    }
+
+    public static StockEventEntity orderPlaced(OrderEntity order) {
+        int quantity = order.getLeaseId() == null ? -1 : 0;
+        StockEventEntity event = of(Type.ORDER_PLACED, order.getProduct().getProductId(), quantity);
+        event.orderId = order.getOrderId();
+        event.customerName = order.getCustomerName();
+        return event;
+    }
+
+    public static StockEventEntity held(int productId, int quantity) {
+        return of(Type.HELD, productId, -quantity);
+    }
+
+    public static StockEventEntity holdReleased(int productId, int quantity) {
+        return of(Type.HOLD_RELEASED, productId, quantity);
+    }
+
+    public static StockEventEntity leased(int productId, int units) {
+        return of(Type.LEASED, productId, -units);
+    }
+
+    public static StockEventEntity leaseReturned(int productId, int units) {
+        return of(Type.LEASE_RETURNED, productId, units);
+    }
+
+    private static StockEventEntity of(Type type, int productId, int quantity) {
+        StockEventEntity event = new StockEventEntity();
+        event.type = type;
+        event.productId = productId;
+        event.quantity = quantity;
+        event.createdAt = LocalDateTime.now();
+        return event;
+    }
+
+    public int getEventId() {
+        return eventId;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StockEventEntity{" +
+                "eventId=" + eventId +
+                ", type=" + type +
+                ", productId=" + productId +
+                ", quantity=" + quantity +
+                '}';
+    }
+}
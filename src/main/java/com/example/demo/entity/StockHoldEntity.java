@@ -0,0 +1,83 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Units set aside for a customer for a limited time, e.g. while they check out a cart. The units
+ * are taken off the product's stock when the hold is made. Confirming the hold turns them into
+ * orders; releasing it, or letting it pass {@code expiresAt}, puts them back. Either way the row
+ * is deleted, so the table only holds outstanding holds.
+ */
+@Entity
+@Table(name = "stock_holds", indexes = @Index(name = "idx_stock_holds_expires", columnList = "expires_at"))
+public class StockHoldEntity {
+    @Id
+    @BlockId(sequence = "stock_holds", table = "stock_holds", column = "hold_id", blockSize = 100)
+    private int holdId;
+    private int productId;
+    private int quantity;
+    private String customerName;
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt;
+
+    public int getHoldId() {
+        return holdId;
+    }
+
+    public void setHoldId(int holdId) {
+        this.holdId = holdId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(int quantity) {
+        this.quantity = quantity;
+    }
+
+    public String getCustomerName() {
+        return customerName;
+    }
+
+    public void setCustomerName(String customerName) {
+        this.customerName = customerName;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StockHoldEntity{" +
+                "holdId=" + holdId +
+                ", productId=" + productId +
+                ", quantity=" + quantity +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A block of a product's stock handed to one application node. The units are taken off the
+ * product row when the lease is granted, and the node sells them without touching that row again.
+ * Orders placed from the lease carry its id, so when the lease is returned, or reclaimed after
+ * {@code expiresAt} because its node stopped renewing it, the units not sold are those granted
+ * minus its orders.
+ */
+@Entity
+@Table(name = "stock_leases", indexes = @Index(name = "idx_stock_leases_expires", columnList = "expires_at"))
+public class StockLeaseEntity {
+    @Id
+    @BlockId(sequence = "stock_leases", table = "stock_leases", column = "lease_id", blockSize = 100)
+    private int leaseId;
+    @Column(length = 64, nullable = false)
+    private String nodeId;
+    private int productId;
+    private int units;
+    @Column(nullable = false)
+    private LocalDateTime expiresAt;
+    private LocalDateTime createdAt;
+
+    public int getLeaseId() {
+        return leaseId;
+    }
+
+    public void setLeaseId(int leaseId) {
+        this.leaseId = leaseId;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getProductId() {
+        return productId;
+    }
+
+    public void setProductId(int productId) {
+        this.productId = productId;
+    }
+
+    public int getUnits() {
+        return units;
+    }
+
+    public void setUnits(int units) {
+        this.units = units;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "StockLeaseEntity{" +
+                "leaseId=" + leaseId +
+                ", nodeId='" + nodeId + '\'' +
+                ", productId=" + productId +
+                ", units=" + units +
+                ", expiresAt=" + expiresAt +
+                '}';
+    }
+}
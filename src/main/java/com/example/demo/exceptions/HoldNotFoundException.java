@@ -0,0 +1,7 @@
+package com.example.demo.exceptions;
+
+public class HoldNotFoundException extends RuntimeException {
+    public HoldNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.demo.exceptions;
+
+public class OrderIntakeStoppedException extends RuntimeException {
+    public OrderIntakeStoppedException(String message) {
+        super(message);
+    }
+}
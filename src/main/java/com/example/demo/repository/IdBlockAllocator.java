@@ -0,0 +1,104 @@
+package com.example.demo.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out ids from blocks reserved in the {@code id_allocator} table, one block per node at a time.
+ *
+ * Blocks are reserved over a small dedicated connection pool. Hibernate's own table generator borrows
+ * a second connection from the application pool for this, which deadlocks once every pooled
+ * connection belongs to a transaction waiting for an id.
+ */
+@Component
+public class IdBlockAllocator {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<String, Block> blocks = new ConcurrentHashMap<>();
+
+    @Autowired
+    public IdBlockAllocator(DataSourceProperties dataSourceProperties,
+                            @Value("${orderup.ids.pool-size:2}") int poolSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("id-allocator");
+        this.dataSource.setMaximumPoolSize(poolSize);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    }
+
+    public long next(String sequence, int blockSize, String table, String column) {
+        Block block = blocks.computeIfAbsent(sequence, s -> new Block());
+        block.lock.lock();
+        try {
+            if (block.next >= block.limit) {
+                block.next = reserveBlock(sequence, blockSize, table, column);
+                block.limit = block.next + blockSize;
+            }
+            return block.next++;
+        } finally {
+            block.lock.unlock();
+        }
+    }
+
+    /**
+     * Reserves the next block of a sequence. The first node to use a sequence creates its row; a
+     * node that loses that race reads the winner's row on its next attempt.
+     */
+    private long reserveBlock(String sequence, int blockSize, String table, String column) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return reserveBlockOnce(sequence, blockSize, table, column);
+            } catch (DuplicateKeyException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private long reserveBlockOnce(String sequence, int blockSize, String table, String column) {
+        return transactionTemplate.execute(status -> {
+            List<Long> current = jdbcTemplate.queryForList(
+                    "SELECT next_val FROM id_allocator WHERE sequence_name = ? FOR UPDATE", Long.class, sequence);
+            long start;
+            if (current.isEmpty()) {
+                start = jdbcTemplate.queryForObject(
+                        "SELECT COALESCE(MAX(" + column + "), 0) + 1 FROM " + table, Long.class);
+                jdbcTemplate.update("INSERT INTO id_allocator (sequence_name, next_val) VALUES (?, ?)",
+                        sequence, start + blockSize);
+            } else {
+                start = current.get(0);
+                jdbcTemplate.update("UPDATE id_allocator SET next_val = ? WHERE sequence_name = ?",
+                        start + blockSize, sequence);
+            }
+            return start;
+        });
+    }
+
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+
+    private static final class Block {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long next;
+        private long limit;
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.IdempotencyKeyEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKeyEntity, String> {
+
+    /**
+     * Inserts the key with no order yet. Fails with a duplicate key error if another request
+     * claimed it first, on this node or any other.
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (idempotency_key, request_digest, created_at) "
+            + "VALUES (:key, :requestDigest, :createdAt)", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestDigest") String requestDigest,
+              @Param("createdAt") LocalDateTime createdAt);
+
+    /**
+     * Takes over a claim that never got its order because the request holding it died, provided
+     * it was made before {@code staleBefore}. Returns 1 if the caller now holds the claim.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyKeyEntity k SET k.createdAt = :now WHERE k.idempotencyKey = :key "
+            + "AND k.orderId IS NULL AND k.createdAt < :staleBefore")
+    int takeOver(@Param("key") String key, @Param("now") LocalDateTime now,
+                 @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE IdempotencyKeyEntity k SET k.orderId = :orderId WHERE k.idempotencyKey = :key")
+    int complete(@Param("key") String key, @Param("orderId") int orderId);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM IdempotencyKeyEntity k WHERE k.createdAt < :cutoff")
+    int deleteCreatedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
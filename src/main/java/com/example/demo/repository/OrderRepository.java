@@ -1,10 +1,54 @@
 package com.example.demo.repository;
 
+import com.example.demo.dtos.OrderResponse;
 import com.example.demo.entity.OrderEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
 public interface OrderRepository extends JpaRepository<OrderEntity, Integer> {
 
+    String ORDER_RESPONSE = "SELECT new com.example.demo.dtos.OrderResponse("
+            + "o.orderId, o.customerName, p.productId, p.productName, p.stock) "
+            + "FROM OrderEntity o JOIN o.product p ";
+
+    @Query(ORDER_RESPONSE + "WHERE o.orderId > :afterId ORDER BY o.orderId")
+    List<OrderResponse> findPage(@Param("afterId") int afterId, Limit limit);
+
+    /**
+     * One product's orders, paged by id through the index on {@code product_id}.
+     */
+    @Query(ORDER_RESPONSE + "WHERE p.productId = :productId AND o.orderId > :afterId ORDER BY o.orderId")
+    List<OrderResponse> findPageByProduct(@Param("productId") int productId, @Param("afterId") int afterId,
+                                          Limit limit);
+
+    /**
+     * One customer's orders, paged by id through the {@code (customer_name, order_id)} index.
+     */
+    @Query(ORDER_RESPONSE + "WHERE o.customerName = :customerName AND o.orderId > :afterId ORDER BY o.orderId")
+    List<OrderResponse> findPageByCustomer(@Param("customerName") String customerName, @Param("afterId") int afterId,
+                                           Limit limit);
+
+    /**
+     * Orders placed from one stock lease, counted through the {@code lease_id} index.
+     */
+    @Query("SELECT COUNT(o) FROM OrderEntity o WHERE o.leaseId = :leaseId")
+    long countByLease(@Param("leaseId") int leaseId);
+
+    @Query(ORDER_RESPONSE + "WHERE o.orderId = :id")
+    Optional<OrderResponse> findResponseById(@Param("id") int id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(ORDER_RESPONSE + "ORDER BY o.orderId")
+    Stream<OrderResponse> streamAll();
 }
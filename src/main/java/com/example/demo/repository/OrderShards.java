@@ -0,0 +1,372 @@
+package com.example.demo.repository;
+
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.entity.OrderEntity;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Keeps orders in {@code orders} tables spread over several databases instead of the primary's,
+ * so order inserts are no longer limited by one MySQL instance. Products, stock and order ids
+ * stay on the primary.
+ *
+ * An order's shard is a hash of its {@code key}: {@code order-id} spreads every product's orders
+ * evenly, {@code product-id} keeps a product's orders together so its order list reads one
+ * shard. Other reads query every shard in parallel and merge the rows, which each shard returns
+ * in id order, into one page. Product names and stock are then read from the primary in one
+ * query. The shard count is fixed for a deployment; changing it moves keys between shards.
+ *
+ * Ids come from {@link IdBlockAllocator}'s {@code orders} sequence, so they are unique across
+ * shards. Rows are inserted on a connection per shard that stays open until the surrounding
+ * transaction ends, and are committed right after it commits. A failed insert therefore rolls
+ * back the stock reservation with it. Only a shard that fails between the two commits loses
+ * orders; their units stay off stock, the failure is logged and counted in
+ * {@code orderup.orders.shards.commit-failures}.
+ */
+@Repository
+public class OrderShards {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderShards.class);
+    private static final int BATCH = 500;
+
+    private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS orders ("
+            + "order_id INT NOT NULL PRIMARY KEY, customer_name VARCHAR(255), product_id INT NOT NULL, lease_id INT, "
+            + "INDEX idx_orders_product (product_id, order_id), "
+            + "INDEX idx_orders_customer (customer_name, order_id), "
+            + "INDEX idx_orders_lease (lease_id))";
+    private static final String INSERT = "INSERT INTO orders (order_id, customer_name, product_id, lease_id) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String SELECT = "SELECT order_id, customer_name, product_id FROM orders ";
+    private static final RowMapper<Row> ROW = (rs, n) ->
+            new Row(rs.getInt("order_id"), rs.getString("customer_name"), rs.getInt("product_id"));
+
+    public enum Key { ORDER_ID, PRODUCT_ID }
+
+    private final IdBlockAllocator idBlockAllocator;
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final Key key;
+    private final HikariDataSource[] dataSources;
+    private final JdbcTemplate[] jdbcTemplates;
+    private final ExecutorService executor;
+    private final Counter commitFailures;
+
+    @Autowired
+    public OrderShards(DataSourceProperties dataSourceProperties, IdBlockAllocator idBlockAllocator,
+                       ProductRepository productRepository, MeterRegistry meterRegistry,
+                       @Value("${orderup.orders.shards.enabled:false}") boolean enabled,
+                       @Value("${orderup.orders.shards.urls:}") List<String> urls,
+                       @Value("${orderup.orders.shards.username:}") String username,
+                       @Value("${orderup.orders.shards.password:}") String password,
+                       @Value("${orderup.orders.shards.pool-size:10}") int poolSize,
+                       @Value("${orderup.orders.shards.key:order-id}") String key) {
+        this.idBlockAllocator = idBlockAllocator;
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.key = Key.valueOf(key.trim().toUpperCase().replace('-', '_'));
+        List<String> shardUrls = urls.stream().map(String::trim).filter(url -> !url.isEmpty()).toList();
+        if (enabled && shardUrls.isEmpty()) {
+            throw new IllegalArgumentException("orderup.orders.shards.urls must list at least one JDBC URL");
+        }
+        int shards = enabled ? shardUrls.size() : 0;
+        this.dataSources = new HikariDataSource[shards];
+        this.jdbcTemplates = new JdbcTemplate[shards];
+        for (int shard = 0; shard < shards; shard++) {
+            HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class).build();
+            dataSource.setJdbcUrl(shardUrls.get(shard));
+            if (!username.isBlank()) {
+                dataSource.setUsername(username);
+                dataSource.setPassword(password);
+            }
+            dataSource.setPoolName("order-shard-" + shard);
+            dataSource.setMaximumPoolSize(poolSize);
+            dataSource.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            dataSources[shard] = dataSource;
+            jdbcTemplates[shard] = new JdbcTemplate(dataSource);
+            jdbcTemplates[shard].execute(CREATE_TABLE);
+        }
+        this.executor = enabled ? Executors.newVirtualThreadPerTaskExecutor() : null;
+        this.commitFailures = Counter.builder("orderup.orders.shards.commit-failures")
+                .description("Order shard commits that failed after the stock reservation committed")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int shards() {
+        return dataSources.length;
+    }
+
+    /**
+     * The shard an order is stored on.
+     */
+    public int shardOf(int orderId, int productId) {
+        int hash = (key == Key.ORDER_ID ? orderId : productId) * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), dataSources.length);
+    }
+
+    /**
+     * Assigns the orders their ids and inserts them, as part of the current transaction when there
+     * is one.
+     */
+    public void insert(List<OrderEntity> orders) {
+        if (orders.isEmpty()) {
+            return;
+        }
+        Map<Integer, List<OrderEntity>> byShard = new TreeMap<>();
+        for (OrderEntity order : orders) {
+            order.setOrderId((int) idBlockAllocator.next("orders", 500, "orders", "order_id"));
+            byShard.computeIfAbsent(shardOf(order.getOrderId(), order.getProduct().getProductId()),
+                    shard -> new ArrayList<>()).add(order);
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            byShard.forEach((shard, rows) -> insert(jdbcTemplates[shard], rows));
+            return;
+        }
+        PendingInserts pending = (PendingInserts) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingInserts();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        for (Map.Entry<Integer, List<OrderEntity>> entry : byShard.entrySet()) {
+            insert(pending.jdbcTemplate(entry.getKey()), entry.getValue());
+        }
+    }
+
+    private static void insert(JdbcTemplate jdbcTemplate, List<OrderEntity> orders) {
+        jdbcTemplate.batchUpdate(INSERT, orders, BATCH, (ps, order) -> {
+            ps.setInt(1, order.getOrderId());
+            ps.setString(2, order.getCustomerName());
+            ps.setInt(3, order.getProduct().getProductId());
+            ps.setObject(4, order.getLeaseId());
+        });
+    }
+
+    public List<OrderResponse> findPage(int afterId, Limit limit) {
+        return merge(allShards(), shard -> jdbcTemplates[shard].query(
+                SELECT + "WHERE order_id > ? ORDER BY order_id LIMIT ?", ROW, afterId, limit.max()), limit);
+    }
+
+    public List<OrderResponse> findPageByProduct(int productId, int afterId, Limit limit) {
+        int[] shards = key == Key.PRODUCT_ID ? new int[]{shardOf(0, productId)} : allShards();
+        return merge(shards, shard -> jdbcTemplates[shard].query(
+                SELECT + "WHERE product_id = ? AND order_id > ? ORDER BY order_id LIMIT ?",
+                ROW, productId, afterId, limit.max()), limit);
+    }
+
+    public List<OrderResponse> findPageByCustomer(String customerName, int afterId, Limit limit) {
+        return merge(allShards(), shard -> jdbcTemplates[shard].query(
+                SELECT + "WHERE customer_name = ? AND order_id > ? ORDER BY order_id LIMIT ?",
+                ROW, customerName, afterId, limit.max()), limit);
+    }
+
+    public Optional<OrderResponse> findResponseById(int id) {
+        int[] shards = key == Key.ORDER_ID ? new int[]{shardOf(id, 0)} : allShards();
+        return merge(shards, shard -> jdbcTemplates[shard].query(SELECT + "WHERE order_id = ?", ROW, id), Limit.of(1))
+                .stream().findFirst();
+    }
+
+    public long countByLease(int leaseId) {
+        return scatter(allShards(), shard -> jdbcTemplates[shard].queryForObject(
+                "SELECT COUNT(*) FROM orders WHERE lease_id = ?", Long.class, leaseId))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    public long count() {
+        return scatter(allShards(), shard -> jdbcTemplates[shard].queryForObject("SELECT COUNT(*) FROM orders", Long.class))
+                .stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * Every order in id order, read a merged page at a time.
+     */
+    public Stream<OrderResponse> streamAll() {
+        return Stream.iterate(findPage(0, Limit.of(BATCH)), page -> !page.isEmpty(),
+                        page -> page.size() < BATCH
+                                ? List.of()
+                                : findPage(page.get(page.size() - 1).getOrderId(), Limit.of(BATCH)))
+                .flatMap(List::stream);
+    }
+
+    private int[] allShards() {
+        return IntStream.range(0, dataSources.length).toArray();
+    }
+
+    /**
+     * Queries the shards in parallel and merges their id-ordered rows into the first
+     * {@code limit} overall, with the products' current name and stock.
+     */
+    private List<OrderResponse> merge(int[] shards, IntFunction<List<Row>> query, Limit limit) {
+        List<List<Row>> results = scatter(shards, query);
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Comparator.comparingInt(Cursor::orderId));
+        for (List<Row> rows : results) {
+            if (!rows.isEmpty()) {
+                heads.add(new Cursor(rows));
+            }
+        }
+        List<Row> page = new ArrayList<>();
+        while (!heads.isEmpty() && page.size() < limit.max()) {
+            Cursor head = heads.poll();
+            page.add(head.rows.get(head.next++));
+            if (head.next < head.rows.size()) {
+                heads.add(head);
+            }
+        }
+        if (page.isEmpty()) {
+            return List.of();
+        }
+        Map<Integer, ProductResponse> products = productRepository.findResponsesById(
+                        page.stream().map(Row::productId).collect(Collectors.toSet())).stream()
+                .collect(Collectors.toMap(ProductResponse::getProductId, Function.identity()));
+        // Like the primary's join, orders whose product is gone are left out.
+        return page.stream()
+                .filter(row -> products.containsKey(row.productId()))
+                .map(row -> new OrderResponse(row.orderId(), row.customerName(), products.get(row.productId())))
+                .toList();
+    }
+
+    private <T> List<T> scatter(int[] shards, IntFunction<T> query) {
+        if (shards.length == 1) {
+            return List.of(query.apply(shards[0]));
+        }
+        List<Future<T>> futures = Arrays.stream(shards)
+                .mapToObj(shard -> executor.submit(() -> query.apply(shard)))
+                .toList();
+        List<T> results = new ArrayList<>(shards.length);
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Interrupted while reading order shards", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Could not read order shards", e.getCause());
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        for (HikariDataSource dataSource : dataSources) {
+            dataSource.close();
+        }
+    }
+
+    private record Row(int orderId, String customerName, int productId) {
+    }
+
+    private static final class Cursor {
+        private final List<Row> rows;
+        private int next;
+
+        private Cursor(List<Row> rows) {
+            this.rows = rows;
+        }
+
+        private int orderId() {
+            return rows.get(next).orderId();
+        }
+    }
+
+    /**
+     * The shard connections one transaction has inserted on, committed once it commits and rolled
+     * back otherwise.
+     */
+    private final class PendingInserts implements TransactionSynchronization {
+        private final Map<Integer, Connection> connections = new TreeMap<>();
+
+        private JdbcTemplate jdbcTemplate(int shard) {
+            Connection connection = connections.computeIfAbsent(shard, s -> {
+                try {
+                    Connection opened = dataSources[s].getConnection();
+                    opened.setAutoCommit(false);
+                    return opened;
+                } catch (SQLException e) {
+                    throw new CannotGetJdbcConnectionException("Could not start a transaction on order shard " + s, e);
+                }
+            });
+            return new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+        }
+
+        @Override
+        public void afterCommit() {
+            connections.forEach((shard, connection) -> {
+                try {
+                    connection.commit();
+                } catch (SQLException e) {
+                    commitFailures.increment();
+                    logger.error("Order shard {} failed to commit orders whose stock was already taken: {}",
+                            shard, e.getMessage());
+                }
+            });
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(OrderShards.this);
+            connections.forEach((shard, connection) -> {
+                try {
+                    if (status != STATUS_COMMITTED) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(true);
+                } catch (SQLException e) {
+                    logger.warn("Could not reset order shard {} connection: {}", shard, e.getMessage());
+                } finally {
+                    JdbcUtils.closeConnection(connection);
+                }
+            });
+        }
+    }
+}
@@ -1,19 +1,119 @@
 package com.example.demo.repository;
 
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.dtos.ProductSalesResponse;
+import com.example.demo.dtos.StockLevel;
 import com.example.demo.entity.ProductEntity;
 import jakarta.annotation.Nullable;
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ProductRepository extends JpaRepository<ProductEntity, Integer> {
+    /**
+     * Stock of a slotted product is the row's remainder plus its slots; unslotted products have
+     * no slot rows.
+     */
+    String SLOT_STOCK = "COALESCE((SELECT SUM(s.stock) FROM ProductStockSlotEntity s WHERE s.productId = p.productId), 0)";
+    String PRODUCT_RESPONSE = "SELECT new com.example.demo.dtos.ProductResponse(p.productId, p.productName, "
+            + "CAST(p.stock + " + SLOT_STOCK + " AS Integer)) FROM ProductEntity p ";
+
+    @Query(PRODUCT_RESPONSE + "WHERE p.productId > :afterId ORDER BY p.productId")
+    List<ProductResponse> findPage(@Param("afterId") int afterId, Limit limit);
+
+    @Query(PRODUCT_RESPONSE + "WHERE p.productId = :id")
+    Optional<ProductResponse> findResponseById(@Param("id") int id);
+
+    @Query(PRODUCT_RESPONSE + "WHERE p.productId IN :ids")
+    List<ProductResponse> findResponsesById(@Param("ids") Collection<Integer> ids);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(PRODUCT_RESPONSE + "ORDER BY p.productId")
+    Stream<ProductResponse> streamAll();
+
+    /**
+     * Loads products that this transaction will not write through the entity; changes to them are
+     * never flushed, so they can sit next to bulk stock updates without a dirty check.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT p FROM ProductEntity p WHERE p.productId = :id")
+    Optional<ProductEntity> findReadOnlyById(@Param("id") int id);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT p FROM ProductEntity p WHERE p.productId IN :ids ORDER BY p.productId")
+    List<ProductEntity> findAllReadOnlyById(@Param("ids") Collection<Integer> ids);
+
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT p FROM ProductEntity p WHERE p.productId = :id")
-    Optional<ProductEntity> findByIdForUpdate(@Param("id") int id);
+    Optional<ProductEntity> findForUpdateById(@Param("id") int id);
+
+    @Query("SELECT p.stock FROM ProductEntity p WHERE p.productId = :id")
+    Optional<Integer> findStockById(@Param("id") int id);
+
+    String STOCK_LEVEL = "SELECT new com.example.demo.dtos.StockLevel(p.productId, p.stock, p.unitsSold) "
+            + "FROM ProductEntity p ";
+
+    @Query(STOCK_LEVEL + "WHERE p.productId = :id")
+    Optional<StockLevel> findStockLevelById(@Param("id") int id);
+
+    @Query(STOCK_LEVEL + "WHERE p.productId IN :ids")
+    List<StockLevel> findStockLevelsById(@Param("ids") Collection<Integer> ids);
+
+    @Query("SELECT new com.example.demo.dtos.ProductSalesResponse(p.productId, p.unitsSold + "
+            + "COALESCE((SELECT SUM(s.unitsSold) FROM ProductStockSlotEntity s WHERE s.productId = p.productId), 0)) "
+            + "FROM ProductEntity p WHERE p.productId = :id")
+    Optional<ProductSalesResponse> findSalesById(@Param("id") int id);
+
+    /**
+     * Decrements stock in a single statement, only if enough units are left, and counts the units
+     * as sold under the same row lock.
+     * Returns the number of updated rows (0 when the product is missing or short).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock - :quantity, p.unitsSold = p.unitsSold + :quantity, "
+            + "p.version = p.version + 1 WHERE p.productId = :id AND p.stock >= :quantity")
+    int decrementStock(@Param("id") int id, @Param("quantity") int quantity);
+
+    /**
+     * Adds to stock in a single statement. Returns the number of updated rows (0 when the product is missing).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock + :quantity, p.version = p.version + 1 "
+            + "WHERE p.productId = :id")
+    int incrementStock(@Param("id") int id, @Param("quantity") int quantity);
+
+    /**
+     * Puts back units that were taken off stock but never sold, such as a released hold's, and
+     * takes them off the units-sold counter.
+     */
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = p.stock + :quantity, p.unitsSold = p.unitsSold - :quantity, "
+            + "p.version = p.version + 1 WHERE p.productId = :id")
+    int restoreStock(@Param("id") int id, @Param("quantity") int quantity);
+
+    /**
+     * Sets the stock left on the product row when it is split into slots or merged back, and adds
+     * the units sold from the slots being removed.
+     */
+    @Modifying
+    @Query("UPDATE ProductEntity p SET p.stock = :stock, p.unitsSold = p.unitsSold + :unitsSold, "
+            + "p.version = p.version + 1 WHERE p.productId = :id")
+    int replaceStock(@Param("id") int id, @Param("stock") int stock, @Param("unitsSold") long unitsSold);
 }
@@ -0,0 +1,58 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.ProductStockSlotEntity;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface ProductStockSlotRepository extends JpaRepository<ProductStockSlotEntity, ProductStockSlotEntity.Key> {
+
+    /**
+     * Every slot of every slotted product, for the rebalancer to check. Only hot products are
+     * slotted, so this stays small.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT s FROM ProductStockSlotEntity s ORDER BY s.productId, s.slot")
+    List<ProductStockSlotEntity> findAllSlots();
+
+    /**
+     * The product's slots that still have stock, read without locking them.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("SELECT s FROM ProductStockSlotEntity s WHERE s.productId = :productId AND s.stock > 0 ORDER BY s.slot")
+    List<ProductStockSlotEntity> findInStock(@Param("productId") int productId);
+
+    long countByProductId(int productId);
+
+    /**
+     * Locks all of the product's slots in slot order.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM ProductStockSlotEntity s WHERE s.productId = :productId ORDER BY s.slot")
+    List<ProductStockSlotEntity> findAllForUpdate(@Param("productId") int productId);
+
+    /**
+     * Takes units from one slot if it has enough, counting them as sold under the slot's row lock.
+     * Returns the number of updated rows (0 when the slot is missing or short).
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE ProductStockSlotEntity s SET s.stock = s.stock - :quantity, s.unitsSold = s.unitsSold + :quantity "
+            + "WHERE s.productId = :productId AND s.slot = :slot AND s.stock >= :quantity")
+    int decrementStock(@Param("productId") int productId, @Param("slot") int slot, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("DELETE FROM ProductStockSlotEntity s WHERE s.productId = :productId")
+    int deleteByProduct(@Param("productId") int productId);
+}
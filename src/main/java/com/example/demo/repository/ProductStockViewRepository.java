@@ -0,0 +1,24 @@
+package com.example.demo.repository;
+
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.entity.ProductStockViewEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ProductStockViewRepository extends JpaRepository<ProductStockViewEntity, Integer> {
+    String PRODUCT_RESPONSE = "SELECT new com.example.demo.dtos.ProductResponse(v.productId, v.productName, v.stock) "
+            + "FROM ProductStockViewEntity v ";
+
+    @Query(PRODUCT_RESPONSE + "WHERE v.productId > :afterId ORDER BY v.productId")
+    List<ProductResponse> findPage(@Param("afterId") int afterId, Limit limit);
+
+    @Query(PRODUCT_RESPONSE + "WHERE v.productId = :id")
+    Optional<ProductResponse> findResponseById(@Param("id") int id);
+}
@@ -0,0 +1,22 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.QueuedStockEventEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+
+@Repository
+public interface QueuedStockEventRepository extends JpaRepository<QueuedStockEventEntity, Integer> {
+
+    /**
+     * Takes events off the queue. Returns how many were still queued; fewer than asked means
+     * another projector applied some of them first.
+     */
+    @Modifying
+    @Query("DELETE FROM QueuedStockEventEntity q WHERE q.eventId IN :ids")
+    int dequeue(@Param("ids") Collection<Integer> ids);
+}
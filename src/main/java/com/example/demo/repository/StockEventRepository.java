@@ -0,0 +1,27 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.StockEventEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface StockEventRepository extends JpaRepository<StockEventEntity, Integer> {
+
+    @Query("SELECT e FROM StockEventEntity e WHERE e.eventId > :afterId ORDER BY e.eventId")
+    List<StockEventEntity> findPage(@Param("afterId") int afterId, Limit limit);
+
+    @Query("SELECT e FROM StockEventEntity e WHERE e.productId = :productId AND e.eventId > :afterId ORDER BY e.eventId")
+    List<StockEventEntity> findPageByProduct(@Param("productId") int productId, @Param("afterId") int afterId,
+                                             Limit limit);
+
+    /**
+     * The oldest events still waiting to be projected.
+     */
+    @Query("SELECT e FROM QueuedStockEventEntity q JOIN StockEventEntity e ON e.eventId = q.eventId ORDER BY q.eventId")
+    List<StockEventEntity> findQueued(Limit limit);
+}
@@ -0,0 +1,33 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.StockHoldEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHoldEntity, Integer> {
+
+    @Query("SELECT h FROM StockHoldEntity h WHERE h.holdId > :afterId ORDER BY h.holdId")
+    List<StockHoldEntity> findPage(@Param("afterId") int afterId, Limit limit);
+
+    /**
+     * Holds that expired before {@code before}, oldest first, found on the {@code expires_at} index.
+     */
+    @Query("SELECT h FROM StockHoldEntity h WHERE h.expiresAt < :before ORDER BY h.expiresAt")
+    List<StockHoldEntity> findExpired(@Param("before") LocalDateTime before, Limit limit);
+
+    /**
+     * Deletes a hold. Returns 1 if this transaction removed it and 0 if it was already confirmed,
+     * released or expired elsewhere, so only one of them acts on its units.
+     */
+    @Modifying
+    @Query("DELETE FROM StockHoldEntity h WHERE h.holdId = :id")
+    int deleteHold(@Param("id") int id);
+}
@@ -0,0 +1,50 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.StockLeaseEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockLeaseRepository extends JpaRepository<StockLeaseEntity, Integer> {
+
+    /**
+     * Leases that expired before {@code before}, oldest first, found on the {@code expires_at} index.
+     */
+    @Query("SELECT l FROM StockLeaseEntity l WHERE l.expiresAt < :before ORDER BY l.expiresAt")
+    List<StockLeaseEntity> findExpired(@Param("before") LocalDateTime before, Limit limit);
+
+    /**
+     * Extends every lease held by a node in one statement.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE StockLeaseEntity l SET l.expiresAt = :expiresAt WHERE l.nodeId = :nodeId")
+    int renew(@Param("nodeId") String nodeId, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Query("SELECT l.leaseId FROM StockLeaseEntity l WHERE l.nodeId = :nodeId")
+    List<Integer> findIdsByNode(@Param("nodeId") String nodeId);
+
+    /**
+     * Deletes a lease. Returns 1 if this transaction removed it and 0 if it was already returned or
+     * reclaimed, so its unused units are put back only once.
+     */
+    @Modifying
+    @Query("DELETE FROM StockLeaseEntity l WHERE l.leaseId = :id")
+    int deleteLease(@Param("id") int id);
+
+    /**
+     * Deletes a lease only if it is still expired, so a lease its node renewed after it was found
+     * expired is left alone.
+     */
+    @Modifying
+    @Query("DELETE FROM StockLeaseEntity l WHERE l.leaseId = :id AND l.expiresAt < :before")
+    int deleteExpiredLease(@Param("id") int id, @Param("before") LocalDateTime before);
+}
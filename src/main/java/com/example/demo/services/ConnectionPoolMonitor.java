@@ -0,0 +1,113 @@
+package com.example.demo.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warns when orders waiting on product row locks are starving the connection pool.
+ *
+ * Pool sizes and acquisition times are published by Spring Boot as the {@code hikaricp.connections.*}
+ * meters. Every {@code interval-ms} this monitor also works out what share of the pool's connection
+ * time went to {@code placeOrder} row lock waits since the last check (published as
+ * {@code orderup.pool.lock-wait.share}). If threads are queueing for a connection while that share is
+ * at least {@code warn-share}, the pool is exhausted by orders queued on a hot row rather than by
+ * load, and a warning is logged: more connections will not help, combining or the in-memory engine will.
+ */
+@Service
+public class ConnectionPoolMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPoolMonitor.class);
+
+    private final HikariDataSource pool;
+    private final StockLockingPolicy stockLockingPolicy;
+    private final boolean enabled;
+    private final double warnShare;
+    private final Counter starvationWarnings;
+    private long lastCheckNanos = System.nanoTime();
+    private long lastLockWaitNanos;
+    private volatile double lockWaitShare;
+
+    @Autowired
+    public ConnectionPoolMonitor(DataSource dataSource, StockLockingPolicy stockLockingPolicy, MeterRegistry meterRegistry,
+                                 @Value("${orderup.pool.monitor.enabled:true}") boolean enabled,
+                                 @Value("${orderup.pool.monitor.warn-share:0.5}") double warnShare) {
+        this.pool = writePool(dataSource);
+        this.stockLockingPolicy = stockLockingPolicy;
+        this.enabled = enabled && pool != null;
+        this.warnShare = warnShare;
+        this.lastLockWaitNanos = stockLockingPolicy.totalLockWaitNanos();
+        this.starvationWarnings = Counter.builder("orderup.pool.starvation.warnings")
+                .description("Checks that found threads waiting for a connection while most were waiting on row locks")
+                .register(meterRegistry);
+        Gauge.builder("orderup.pool.lock-wait.share", this, ConnectionPoolMonitor::getLockWaitShare)
+                .description("Share of pool connection time spent waiting for product row locks since the last check")
+                .register(meterRegistry);
+    }
+
+    /**
+     * The pool orders take their connections from, also when read-only transactions are routed
+     * to a pool of their own.
+     */
+    private static HikariDataSource writePool(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource hikari) {
+            return hikari;
+        }
+        try {
+            return dataSource.isWrapperFor(HikariDataSource.class) ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    public double getLockWaitShare() {
+        return lockWaitShare;
+    }
+
+    @Scheduled(fixedDelayString = "${orderup.pool.monitor.interval-ms:5000}")
+    public void check() {
+        check(System.nanoTime());
+    }
+
+    /**
+     * @return true if a starvation warning was logged
+     */
+    boolean check(long now) {
+        if (!enabled) {
+            return false;
+        }
+        long lockWait = stockLockingPolicy.totalLockWaitNanos();
+        long elapsed = now - lastCheckNanos;
+        long waited = lockWait - lastLockWaitNanos;
+        lastCheckNanos = now;
+        lastLockWaitNanos = lockWait;
+        HikariPoolMXBean stats = pool.getHikariPoolMXBean();
+        if (stats == null || elapsed <= 0) {
+            return false;
+        }
+        int maxConnections = pool.getMaximumPoolSize();
+        lockWaitShare = Math.min(1, (double) waited / ((double) elapsed * maxConnections));
+        int pending = stats.getThreadsAwaitingConnection();
+        if (pending == 0 || lockWaitShare < warnShare) {
+            return false;
+        }
+        starvationWarnings.increment();
+        logger.warn("Connection pool starved by row lock waits: {} threads waiting for a connection, {}/{} active, "
+                        + "{}% of connection time in the last {} ms spent waiting on product row locks",
+                pending, stats.getActiveConnections(), maxConnections, Math.round(lockWaitShare * 100),
+                TimeUnit.NANOSECONDS.toMillis(elapsed));
+        return true;
+    }
+}
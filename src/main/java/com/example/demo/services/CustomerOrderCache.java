@@ -0,0 +1,130 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Per-customer cache of the first {@code page-size} orders, in front of
+ * {@link OrderRepository#findPageByCustomer}. Support tools open a customer's history at the
+ * start and page on from there, so that page is what gets cached. Later pages are served from it
+ * while they fall inside it, and read from the database otherwise.
+ *
+ * A customer's entry is evicted when an order for them commits on this node. Other nodes see the
+ * new order once their entry expires after {@code ttl-ms}. The product stock in cached orders is
+ * for display and may be stale.
+ */
+@Service
+public class CustomerOrderCache {
+
+    private final OrderRepository orderRepository;
+    private final OrderShards orderShards;
+    private final boolean enabled;
+    private final int pageSize;
+    private final Cache<String, List<OrderResponse>> firstPages;
+
+    @Autowired
+    public CustomerOrderCache(OrderRepository orderRepository, OrderShards orderShards, MeterRegistry meterRegistry,
+                              @Value("${orderup.cache.customer-orders.enabled:false}") boolean enabled,
+                              @Value("${orderup.cache.customer-orders.max-size:10000}") long maxSize,
+                              @Value("${orderup.cache.customer-orders.ttl-ms:30000}") long ttlMs,
+                              @Value("${orderup.cache.customer-orders.page-size:100}") int pageSize) {
+        this.orderRepository = orderRepository;
+        this.orderShards = orderShards;
+        this.enabled = enabled;
+        this.pageSize = pageSize;
+        this.firstPages = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(meterRegistry, firstPages, "customerOrders");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns up to {@code limit} of the customer's orders with an id greater than {@code afterId},
+     * in id order.
+     */
+    public List<OrderResponse> page(String customerName, int afterId, Limit limit) {
+        if (!enabled) {
+            return load(customerName, afterId, limit);
+        }
+        List<OrderResponse> cached = afterId == 0
+                ? firstPages.get(customerName, name -> load(name, 0, Limit.of(pageSize)))
+                : firstPages.getIfPresent(customerName);
+        if (cached != null) {
+            List<OrderResponse> page = new ArrayList<>();
+            for (OrderResponse order : cached) {
+                if (order.getOrderId() > afterId) {
+                    page.add(order);
+                    if (page.size() == limit.max()) {
+                        return page;
+                    }
+                }
+            }
+            // A short cached page holds all of the customer's orders.
+            if (cached.size() < pageSize) {
+                return page;
+            }
+        }
+        return load(customerName, afterId, limit);
+    }
+
+    private List<OrderResponse> load(String customerName, int afterId, Limit limit) {
+        return orderShards.isEnabled()
+                ? orderShards.findPageByCustomer(customerName, afterId, limit)
+                : orderRepository.findPageByCustomer(customerName, afterId, limit);
+    }
+
+    /**
+     * Evicts the customers of newly placed orders once the current transaction commits (or
+     * immediately outside a transaction).
+     */
+    public void ordersPlaced(List<OrderEntity> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return;
+        }
+        Set<String> customers = orders.stream()
+                .map(OrderEntity::getCustomerName)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            firstPages.invalidateAll(customers);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                firstPages.invalidateAll(customers);
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        firstPages.invalidateAll();
+    }
+}
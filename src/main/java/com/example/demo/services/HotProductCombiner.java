@@ -0,0 +1,190 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.OrderEntity;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Flat combining for flash-sale products: concurrent orders for one hot product are merged into a
+ * single group commit instead of each taking the product's row lock in turn.
+ *
+ * Every caller for a hot product publishes its order on the product's lane and then tries the
+ * lane's combiner lock. Whoever gets it drains up to {@code max-batch} published orders, places
+ * them as one group (one stock decrement of N units, one batched insert) and hands each waiting
+ * caller its result; the others wait for theirs and only take the lock if nobody has served them.
+ * A product counts as hot while its arrival rate over the last {@code rate-window-ms} is at least
+ * {@code hot-rate} orders per second. Lanes idle for two windows are evicted; a new lane starts cold,
+ * which is what the idle one would have said anyway.
+ */
+@Service
+public class HotProductCombiner {
+
+    private final boolean enabled;
+    private final long windowNanos;
+    private final int hotArrivalsPerWindow;
+    private final int maxBatch;
+    private final Cache<Integer, Lane> lanes;
+    private final DistributionSummary batchSizes;
+
+    @Autowired
+    public HotProductCombiner(MeterRegistry meterRegistry,
+                              @Value("${orderup.stock.combining.enabled:false}") boolean enabled,
+                              @Value("${orderup.stock.combining.hot-rate:200}") int hotRate,
+                              @Value("${orderup.stock.combining.rate-window-ms:1000}") long windowMs,
+                              @Value("${orderup.stock.combining.max-batch:200}") int maxBatch) {
+        this(meterRegistry, enabled, hotRate, windowMs, maxBatch, Ticker.systemTicker());
+    }
+
+    HotProductCombiner(MeterRegistry meterRegistry, boolean enabled, int hotRate, long windowMs, int maxBatch,
+                       Ticker ticker) {
+        if (windowMs < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("rate-window-ms and max-batch must be positive");
+        }
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.hotArrivalsPerWindow = (int) Math.max(1, hotRate * windowMs / 1000);
+        this.maxBatch = maxBatch;
+        // Evicting a lane is cheap, so it is done on the calling thread.
+        this.lanes = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofNanos(2 * windowNanos))
+                .executor(Runnable::run)
+                .ticker(ticker)
+                .build();
+        Gauge.builder("orderup.stock.combining.lanes", lanes, Cache::estimatedSize)
+                .description("Products with a combining lane")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("orderup.stock.combining.batch")
+                .description("Orders for one hot product placed by a single combined commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Counts an arrival for the product and tells whether its orders should be combined.
+     */
+    public boolean isHot(int productId) {
+        if (!enabled) {
+            return false;
+        }
+        return lanes.get(productId, id -> new Lane()).arrive(System.nanoTime());
+    }
+
+    /**
+     * Places the order as part of a combined group for its product and returns its own result.
+     *
+     * @param placeGroup places a list of orders for one product and returns one result per order
+     */
+    public OrderEntity place(OrderRequest request, Function<List<OrderRequest>, List<PlacementResult>> placeGroup) {
+        // Callers still waiting on a lane after it is evicted drain it themselves; newer ones get a fresh lane.
+        Lane lane = lanes.get(request.getProductId(), id -> new Lane());
+        Pending pending = new Pending(request);
+        lane.published.add(pending);
+        while (!pending.result.isDone()) {
+            if (lane.combiner.tryLock()) {
+                try {
+                    combine(lane, placeGroup);
+                } finally {
+                    lane.combiner.unlock();
+                }
+            } else {
+                awaitBriefly(pending);
+            }
+        }
+        try {
+            return pending.result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private void combine(Lane lane, Function<List<OrderRequest>, List<PlacementResult>> placeGroup) {
+        List<Pending> batch = new ArrayList<>();
+        Pending next;
+        while (batch.size() < maxBatch && (next = lane.published.poll()) != null) {
+            batch.add(next);
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        batchSizes.record(batch.size());
+        try {
+            List<PlacementResult> results = placeGroup.apply(batch.stream().map(Pending::request).toList());
+            for (int i = 0; i < batch.size(); i++) {
+                PlacementResult result = results.get(i);
+                if (result.isPlaced()) {
+                    batch.get(i).result.complete(result.order());
+                } else {
+                    batch.get(i).result.completeExceptionally(result.error());
+                }
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result.completeExceptionally(e));
+        }
+    }
+
+    private static void awaitBriefly(Pending pending) {
+        try {
+            pending.result.get(1, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a combined order", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // Completed exceptionally, or still queued; the caller's loop decides.
+        }
+    }
+
+    private record Pending(OrderRequest request, CompletableFuture<OrderEntity> result) {
+        Pending(OrderRequest request) {
+            this(request, new CompletableFuture<>());
+        }
+    }
+
+    /**
+     * Per-product published orders, combiner lock and arrival counter over fixed windows.
+     */
+    private final class Lane {
+        private final ConcurrentLinkedQueue<Pending> published = new ConcurrentLinkedQueue<>();
+        private final ReentrantLock combiner = new ReentrantLock();
+        private final AtomicInteger arrivals = new AtomicInteger();
+        private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+        private volatile boolean hot;
+
+        boolean arrive(long now) {
+            long start = windowStart.get();
+            if (now - start >= windowNanos && windowStart.compareAndSet(start, now)) {
+                int lastWindow = arrivals.getAndSet(0);
+                // A lane idle for several windows saw no arrivals in the last one.
+                hot = now - start < 2 * windowNanos && lastWindow >= hotArrivalsPerWindow;
+            }
+            if (arrivals.incrementAndGet() >= hotArrivalsPerWindow) {
+                hot = true;
+            }
+            return hot;
+        }
+    }
+}
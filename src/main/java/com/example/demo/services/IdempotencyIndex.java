@@ -0,0 +1,215 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.IdempotencyKeyEntity;
+import com.example.demo.exceptions.IdempotencyConflictException;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.OrderNotFoundException;
+import com.example.demo.repository.IdempotencyKeyRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates {@code POST /orders} retries that carry the same {@code Idempotency-Key}.
+ *
+ * A bounded in-memory index answers repeats seen by this node, including ones that arrive while the
+ * first request is still running, without touching the database. Behind it, the key is claimed in
+ * the {@code idempotency_keys} table before the order is placed and linked to the order afterwards,
+ * so retries that land on another node or after a restart get the original order back instead of
+ * reserving stock again. Keys expire after {@code ttl-ms} in both places. A claim that has no order
+ * after {@code claim-lease-ms} was left by a request that died, and the next retry takes it over.
+ * Claims are always read from the primary, since a lagging replica would not show one just made.
+ */
+@Service
+public class IdempotencyIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyIndex.class);
+
+    static final int MAX_KEY_LENGTH = 100;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final OrderRepository orderRepository;
+    private final OrderShards orderShards;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration ttl;
+    private final Duration claimLease;
+    private final Cache<String, Entry> entries;
+    private final Counter replays;
+
+    @Autowired
+    public IdempotencyIndex(IdempotencyKeyRepository idempotencyKeyRepository, OrderRepository orderRepository,
+                            OrderShards orderShards, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${orderup.idempotency.max-size:100000}") long maxSize,
+                            @Value("${orderup.idempotency.ttl-ms:86400000}") long ttlMs,
+                            @Value("${orderup.idempotency.claim-lease-ms:30000}") long claimLeaseMs) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.orderRepository = orderRepository;
+        this.orderShards = orderShards;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ttl = Duration.ofMillis(ttlMs);
+        this.claimLease = Duration.ofMillis(claimLeaseMs);
+        this.entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+        this.replays = Counter.builder("orderup.orders.idempotent.replays")
+                .description("Order requests answered from an earlier request with the same Idempotency-Key")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Places the order once per key: the first request runs {@code placeOrder}, repeats get its response.
+     *
+     * @throws IdempotencyConflictException if the key was used for a different request, or its
+     *                                      first request is still running on another node
+     */
+    public OrderResponse placeOnce(String key, OrderRequest request, Supplier<OrderResponse> placeOrder) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new InvalidRequestException("Idempotency-Key must be 1 to " + MAX_KEY_LENGTH + " characters");
+        }
+        String requestDigest = digest(request);
+        Entry mine = new Entry(requestDigest, new CompletableFuture<>());
+        Entry existing = entries.asMap().putIfAbsent(key, mine);
+        if (existing != null) {
+            checkSameRequest(existing.requestDigest(), requestDigest);
+            replays.increment();
+            return await(existing.response());
+        }
+        try {
+            OrderResponse response = placeOrClaimed(key, requestDigest, placeOrder);
+            mine.response().complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            entries.asMap().remove(key, mine);
+            mine.response().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Drops keys older than the TTL from the table; the in-memory index expires them by itself.
+     */
+    @Scheduled(fixedDelayString = "${orderup.idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        idempotencyKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+    }
+
+    private OrderResponse placeOrClaimed(String key, String requestDigest, Supplier<OrderResponse> placeOrder) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<IdempotencyKeyEntity> claimed = findClaim(key);
+        if (claimed.isPresent()) {
+            checkSameRequest(claimed.get().getRequestDigest(), requestDigest);
+            if (!isAbandoned(claimed.get(), now)
+                    || idempotencyKeyRepository.takeOver(key, now, now.minus(claimLease)) == 0) {
+                return replay(claimed.get(), requestDigest);
+            }
+        } else {
+            try {
+                idempotencyKeyRepository.claim(key, requestDigest, now);
+            } catch (DataIntegrityViolationException e) {
+                return replay(findClaim(key).orElseThrow(() -> e), requestDigest);
+            }
+        }
+        OrderResponse response;
+        try {
+            response = placeOrder.get();
+        } catch (RuntimeException e) {
+            // Nothing was reserved, so a retry may run again.
+            idempotencyKeyRepository.deleteById(key);
+            throw e;
+        }
+        try {
+            idempotencyKeyRepository.complete(key, response.getOrderId());
+        } catch (RuntimeException e) {
+            // The order is placed; failing the request now would only invite a retry that places it again.
+            // Repeats on this node are answered from memory, others see the claim in progress until its lease ends.
+            logger.warn("Could not link Idempotency-Key to order {}: {}", response.getOrderId(), e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * Reads the claim in a read-write transaction, which routes to the primary.
+     */
+    private Optional<IdempotencyKeyEntity> findClaim(String key) {
+        return transactionTemplate.execute(status -> idempotencyKeyRepository.findById(key));
+    }
+
+    private boolean isAbandoned(IdempotencyKeyEntity claimed, LocalDateTime now) {
+        return claimed.getOrderId() == null && claimed.getCreatedAt().isBefore(now.minus(claimLease));
+    }
+
+    /**
+     * Answers from the order the claim links to. The response is rebuilt, so it reports the
+     * product's current stock rather than the stock left when the order was placed.
+     */
+    private OrderResponse replay(IdempotencyKeyEntity claimed, String requestDigest) {
+        checkSameRequest(claimed.getRequestDigest(), requestDigest);
+        if (claimed.getOrderId() == null) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        }
+        replays.increment();
+        return (orderShards.isEnabled()
+                ? orderShards.findResponseById(claimed.getOrderId())
+                : orderRepository.findResponseById(claimed.getOrderId()))
+                .orElseThrow(() -> new OrderNotFoundException("Order not found"));
+    }
+
+    private static void checkSameRequest(String expectedDigest, String requestDigest) {
+        if (!expectedDigest.equals(requestDigest)) {
+            throw new IdempotencyConflictException("Idempotency-Key was already used for a different order");
+        }
+    }
+
+    private static OrderResponse await(CompletableFuture<OrderResponse> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Identifies the request a key was first used for, so a reused key can be told apart.
+     */
+    private static String digest(OrderRequest request) {
+        try {
+            byte[] fields = (request.getProductId() + ":" + request.getCustomerName()).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(fields));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private record Entry(String requestDigest, CompletableFuture<OrderResponse> response) {
+    }
+}
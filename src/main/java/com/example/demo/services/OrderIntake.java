@@ -0,0 +1,238 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.dtos.OrderStatusResponse;
+import com.example.demo.dtos.OrderStatusResponse.Status;
+import com.example.demo.exceptions.OrderIntakeStoppedException;
+import com.example.demo.exceptions.OrderQueueFullException;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Asynchronous order intake: {@code POST /orders} enqueues the order and returns a token instead of
+ * holding the request thread through the order transaction.
+ *
+ * Orders wait in a bounded array-backed queue; when it is full, {@link #submit} fails fast with
+ * {@link OrderQueueFullException} (HTTP 429) rather than letting callers pile up. A single consumer
+ * thread drains up to {@code batch-size} orders at a time and commits them together through
+ * {@link OrderService#placeOrderGroup}, so a burst costs a few transactions instead of one per order.
+ * Orders still queued or being placed are tracked until their batch completes; outcomes are then
+ * kept for {@code status-ttl-ms}, up to {@code max-tracked} of them, and read back with
+ * {@link #status}. While shutting down, {@link #submit} fails with
+ * {@link OrderIntakeStoppedException} (HTTP 503).
+ */
+@Service
+public class OrderIntake {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderIntake.class);
+
+    private final OrderService orderService;
+    private final ProductCatalogCache productCatalogCache;
+    private final boolean enabled;
+    private final int batchSize;
+    private final BlockingQueue<QueuedOrder> queue;
+    /**
+     * Pending orders, never evicted: the queue's capacity already bounds them.
+     */
+    private final ConcurrentHashMap<String, OrderStatusResponse> pending = new ConcurrentHashMap<>();
+    private final Cache<String, OrderStatusResponse> statuses;
+    private final DistributionSummary batchSizes;
+    /**
+     * Submitters enqueue under the read lock and shutdown stops intake under the write lock, so no
+     * order can be queued after the consumer has been told to finish.
+     */
+    private final ReentrantReadWriteLock intakeLock = new ReentrantReadWriteLock();
+    private volatile boolean running;
+    private Thread consumer;
+
+    @Autowired
+    public OrderIntake(OrderService orderService, ProductCatalogCache productCatalogCache, MeterRegistry meterRegistry,
+                       @Value("${orderup.orders.async.enabled:false}") boolean enabled,
+                       @Value("${orderup.orders.async.queue-capacity:10000}") int queueCapacity,
+                       @Value("${orderup.orders.async.batch-size:200}") int batchSize,
+                       @Value("${orderup.orders.async.max-tracked:100000}") long maxTracked,
+                       @Value("${orderup.orders.async.status-ttl-ms:600000}") long statusTtlMs) {
+        if (queueCapacity < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("queue-capacity and batch-size must be positive");
+        }
+        this.orderService = orderService;
+        this.productCatalogCache = productCatalogCache;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterWrite(Duration.ofMillis(statusTtlMs))
+                .build();
+        this.batchSizes = DistributionSummary.builder("orderup.orders.intake.batch")
+                .description("Orders committed per intake transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("orderup.orders.intake.queue", queue, BlockingQueue::size)
+                .description("Orders waiting in the intake queue")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        consumer = Thread.ofPlatform().name("order-intake").daemon().start(this::drain);
+    }
+
+    /**
+     * Stops accepting orders, lets the consumer commit what is queued and waits for the last batch.
+     * Orders still queued when the wait runs out are marked failed rather than left pending.
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        intakeLock.writeLock().lock();
+        try {
+            running = false;
+        } finally {
+            intakeLock.writeLock().unlock();
+        }
+        if (consumer != null) {
+            consumer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        List<QueuedOrder> left = new ArrayList<>();
+        queue.drainTo(left);
+        if (!left.isEmpty()) {
+            logger.error("Order intake stopped with {} orders still queued", left.size());
+            for (QueuedOrder order : left) {
+                settle(order.token(), failed(order.token()));
+            }
+        }
+    }
+
+    /**
+     * Validates and enqueues an order.
+     *
+     * @throws ProductNotFoundException if the product does not exist
+     * @throws OrderQueueFullException if the queue has no room
+     * @throws OrderIntakeStoppedException if the intake is shutting down
+     */
+    public OrderStatusResponse submit(OrderRequest request) {
+        if (!running) {
+            throw new OrderIntakeStoppedException("Order intake is not running, retry later");
+        }
+        if (productCatalogCache.get(request.getProductId()).isEmpty()) {
+            throw new ProductNotFoundException("Product not found");
+        }
+        String token = UUID.randomUUID().toString();
+        OrderStatusResponse accepted = OrderStatusResponse.pending(token);
+        intakeLock.readLock().lock();
+        try {
+            if (!running) {
+                throw new OrderIntakeStoppedException("Order intake is not running, retry later");
+            }
+            pending.put(token, accepted);
+            if (!queue.offer(new QueuedOrder(token, request))) {
+                pending.remove(token);
+                throw new OrderQueueFullException("Order queue is full, retry later");
+            }
+        } finally {
+            intakeLock.readLock().unlock();
+        }
+        return accepted;
+    }
+
+    public Optional<OrderStatusResponse> status(String token) {
+        OrderStatusResponse inFlight = pending.get(token);
+        return inFlight != null ? Optional.of(inFlight) : Optional.ofNullable(statuses.getIfPresent(token));
+    }
+
+    /**
+     * Records the outcome before the order stops being pending, so a reader always finds one of them.
+     */
+    private void settle(String token, OrderStatusResponse outcome) {
+        statuses.put(token, outcome);
+        pending.remove(token);
+    }
+
+    private void drain() {
+        List<QueuedOrder> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                QueuedOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<QueuedOrder> batch) {
+        batchSizes.record(batch.size());
+        List<PlacementResult> results;
+        try {
+            results = orderService.placeOrderGroup(batch.stream().map(QueuedOrder::request).toList());
+        } catch (RuntimeException e) {
+            logger.error("Failed to place {} queued orders: {}", batch.size(), e.getMessage());
+            for (QueuedOrder order : batch) {
+                settle(order.token(), failed(order.token()));
+            }
+            return;
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            String token = batch.get(i).token();
+            settle(token, toStatus(token, results.get(i)));
+        }
+    }
+
+    private static OrderStatusResponse toStatus(String token, PlacementResult result) {
+        if (result.isPlaced()) {
+            return new OrderStatusResponse(token, Status.PLACED, null, OrderResponse.from(result.order()));
+        }
+        RuntimeException error = result.error();
+        if (error instanceof OutOfStockException || error instanceof ProductNotFoundException) {
+            return new OrderStatusResponse(token, Status.REJECTED, error.getMessage(), null);
+        }
+        return failed(token);
+    }
+
+    private static OrderStatusResponse failed(String token) {
+        return new OrderStatusResponse(token, Status.FAILED, "An unexpected error occurred", null);
+    }
+
+    private record QueuedOrder(String token, OrderRequest request) {
+    }
+}
@@ -1,50 +1,483 @@
 package com.example.demo.services;
 
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
 import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
 import com.example.demo.entity.OrderEntity;
 import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.InvalidRequestException;
 import com.example.demo.exceptions.OutOfStockException;
 import com.example.demo.exceptions.ProductNotFoundException;
 import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
 import com.example.demo.repository.ProductRepository;
-import jakarta.transaction.Transactional;
 import org.aspectj.weaver.ast.Or;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class OrderService {
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final OrderShards orderShards;
+    private final StockReservationEngine stockReservationEngine;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockLockingPolicy stockLockingPolicy;
+    private final HotProductCombiner hotProductCombiner;
+    private final StockLedger stockLedger;
+    private final CustomerOrderCache customerOrderCache;
+    private final StockSlots stockSlots;
+    private final StockLeases stockLeases;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public OrderService(ProductRepository productRepository, OrderRepository orderRepository) {
+    public OrderService(ProductRepository productRepository, OrderRepository orderRepository, OrderShards orderShards,
+                        StockReservationEngine stockReservationEngine, ProductCatalogCache productCatalogCache,
+                        StockLockingPolicy stockLockingPolicy, HotProductCombiner hotProductCombiner,
+                        StockLedger stockLedger, CustomerOrderCache customerOrderCache, StockSlots stockSlots,
+                        StockLeases stockLeases, PlatformTransactionManager transactionManager) {
         this.orderRepository = orderRepository;
+        this.orderShards = orderShards;
         this.productRepository = productRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.productCatalogCache = productCatalogCache;
+        this.stockLockingPolicy = stockLockingPolicy;
+        this.hotProductCombiner = hotProductCombiner;
+        this.stockLedger = stockLedger;
+        this.customerOrderCache = customerOrderCache;
+        this.stockSlots = stockSlots;
+        this.stockLeases = stockLeases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public List<OrderEntity> getOrders() {
-        return orderRepository.findAll();
+    /**
+     * Returns up to {@code limit} orders with an id greater than {@code afterId}, in id order,
+     * fetched with their product in a single query.
+     */
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrders(int afterId, int limit) {
+        return orderShards.isEnabled()
+                ? orderShards.findPage(afterId, Pages.limit(limit))
+                : orderRepository.findPage(afterId, Pages.limit(limit));
     }
 
-    @Transactional
+    /**
+     * Returns up to {@code limit} orders for one product with an id greater than {@code afterId}, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrdersForProduct(int productId, int afterId, int limit) {
+        return orderShards.isEnabled()
+                ? orderShards.findPageByProduct(productId, afterId, Pages.limit(limit))
+                : orderRepository.findPageByProduct(productId, afterId, Pages.limit(limit));
+    }
+
+    /**
+     * Returns up to {@code limit} of one customer's orders with an id greater than {@code afterId}, in id order.
+     */
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrdersForCustomer(String customerName, int afterId, int limit) {
+        return customerOrderCache.page(customerName, afterId, Pages.limit(limit));
+    }
+
+    /**
+     * Hands every order to {@code consumer} in id order. Rows are read as DTOs, so nothing
+     * accumulates in the persistence context.
+     */
+    @Transactional(readOnly = true)
+    public void streamOrders(Consumer<OrderResponse> consumer) {
+        try (Stream<OrderResponse> orders = orderShards.isEnabled()
+                ? orderShards.streamAll()
+                : orderRepository.streamAll()) {
+            orders.forEach(consumer);
+        }
+    }
+
+    /**
+     * Places one order, each attempt in its own transaction. Products on the optimistic path are
+     * read without a lock and written with a version check; on a conflict the attempt is retried
+     * after a jittered backoff, and after {@link StockLockingPolicy#getMaxAttempts()} conflicts the
+     * order falls back to a row lock so it always makes progress. Orders for a product that
+     * {@link HotProductCombiner} finds hot are instead merged with concurrent orders for the same
+     * product into one {@link #placeOrderGroup} commit.
+     */
     public OrderEntity placeOrder(OrderRequest request) {
-        ProductEntity product = productRepository.findByIdForUpdate(request.getProductId())
+        if (!stockReservationEngine.isEnabled() && !stockLeases.isEnabled()
+                && hotProductCombiner.isHot(request.getProductId())) {
+            return hotProductCombiner.place(request, this::placeOrderGroup);
+        }
+        return placeOrderAlone(request);
+    }
+
+    private OrderEntity placeOrderAlone(OrderRequest request) {
+        if (stockReservationEngine.isEnabled()) {
+            return transactionTemplate.execute(status -> placeOrderInMemory(request));
+        }
+        int productId = request.getProductId();
+        if (stockLeases.isEnabled() && !stockSlots.isSlotted(productId)) {
+            return placeOrderLeased(request);
+        }
+        // The optimistic path writes the product row, which holds none of a slotted product's stock.
+        if (!stockSlots.isSlotted(productId) && stockLockingPolicy.useOptimistic(productId)) {
+            for (int attempt = 1; attempt <= stockLockingPolicy.getMaxAttempts(); attempt++) {
+                try {
+                    OrderEntity order = transactionTemplate.execute(status -> placeOrderOptimistic(request));
+                    stockLockingPolicy.recordOptimisticAttempt(productId, false);
+                    return order;
+                } catch (ConcurrencyFailureException e) {
+                    stockLockingPolicy.recordOptimisticAttempt(productId, true);
+                    stockLockingPolicy.backoff(attempt);
+                }
+            }
+        }
+        return transactionTemplate.execute(status -> placeOrderLocked(request));
+    }
+
+    /**
+     * Reserves the unit with one conditional UPDATE, so the row lock is taken by the decrement
+     * itself and held only until the order INSERT commits. The product is read beforehand without a
+     * lock; that read tells a missing product from a sold-out one, and its stock is read again once
+     * the order has committed.
+     */
+    private OrderEntity placeOrderLocked(OrderRequest request) {
+        int productId = request.getProductId();
+        ProductEntity product = productRepository.findReadOnlyById(productId)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found"));
 
-        boolean reserved = product.reserveStock();
+        long lockStart = System.nanoTime();
+        boolean reserved = stockSlots.reserve(productId, 1);
+        stockLockingPolicy.recordLockWait(productId, System.nanoTime() - lockStart);
+        stockLockingPolicy.recordLockHeldUntilCompletion();
         if (!reserved) {
             throw new OutOfStockException("Product is out of stock");
         }
-        productRepository.save(product);
+        reportStockAfterCommit(List.of(product));
+        productCatalogCache.stockChanged(productId, -1);
+
+        OrderEntity order = new OrderEntity();
+        order.setCustomerName(request.getCustomerName());
+        order.setProduct(product);
+        OrderEntity savedOrder = save(order); // This instance will have the ID set
+        ordersPlaced(List.of(savedOrder));
+        return savedOrder;
+
+    }
+
+    /**
+     * Sets each product's stock to what is left once the surrounding transaction has committed. The
+     * products were read before the decrement, so their copies miss units other orders took in
+     * between. Reading again after the commit keeps the query out of the row lock, at the cost of
+     * also counting orders that committed just after this one.
+     */
+    private void reportStockAfterCommit(Collection<ProductEntity> products) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refreshStock(products);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refreshStock(products);
+            }
+        });
+    }
+
+    private void refreshStock(Collection<ProductEntity> products) {
+        Map<Integer, ProductEntity> byId = new TreeMap<>();
+        for (ProductEntity product : products) {
+            byId.put(product.getProductId(), product);
+        }
+        productRepository.findResponsesById(byId.keySet())
+                .forEach(current -> byId.get(current.getProductId()).setStock(current.getStock()));
+    }
+
+    /**
+     * Takes the unit from this node's stock lease, so the order is a single INSERT and never locks
+     * the product row. The order records its lease, which is how the lease's unsold units are
+     * worked out when it is returned.
+     */
+    private OrderEntity placeOrderLeased(OrderRequest request) {
+        int productId = request.getProductId();
+        StockLeases.Lease lease = stockLeases.take(productId)
+                .orElseThrow(() -> new OutOfStockException("Product is out of stock"));
+        try {
+            return transactionTemplate.execute(status -> {
+                ProductEntity product = productRepository.findReadOnlyById(productId)
+                        .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+                OrderEntity order = new OrderEntity();
+                order.setCustomerName(request.getCustomerName());
+                order.setProduct(product);
+                order.setLeaseId(lease.getLeaseId());
+                OrderEntity savedOrder = save(order);
+                ordersPlaced(List.of(savedOrder));
+                return savedOrder;
+            });
+        } finally {
+            lease.done();
+        }
+    }
+
+    private OrderEntity placeOrderOptimistic(OrderRequest request) {
+        ProductEntity product = productRepository.findById(request.getProductId())
+                .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+        if (!product.reserveStock()) {
+            throw new OutOfStockException("Product is out of stock");
+        }
+        productRepository.saveAndFlush(product);
+        productCatalogCache.stockChanged(product.getProductId(), -1);
+
+        OrderEntity order = new OrderEntity();
+        order.setCustomerName(request.getCustomerName());
+        order.setProduct(product);
+        OrderEntity savedOrder = save(order);
+        ordersPlaced(List.of(savedOrder));
+        return savedOrder;
+    }
+
+    /**
+     * Places a group of independent orders in one transaction, for the asynchronous intake and the
+     * hot-product combiner. Each product is reserved once for all of its orders in the group,
+     * granting as many units as are left; orders are then filled in arrival order and the rest are
+     * rejected as out of stock, so one sold-out product never fails the others. If the group
+     * transaction itself fails, every order is retried in its own transaction.
+     *
+     * @return one result per request, in the same order
+     */
+    public List<PlacementResult> placeOrderGroup(List<OrderRequest> requests) {
+        try {
+            return transactionTemplate.execute(status -> placeGroup(requests));
+        } catch (RuntimeException e) {
+            List<PlacementResult> results = new ArrayList<>(requests.size());
+            for (OrderRequest request : requests) {
+                try {
+                    results.add(PlacementResult.placed(placeOrderAlone(request)));
+                } catch (RuntimeException orderError) {
+                    results.add(PlacementResult.rejected(orderError));
+                }
+            }
+            return results;
+        }
+    }
+
+    private List<PlacementResult> placeGroup(List<OrderRequest> requests) {
+        Map<Integer, Integer> requested = new TreeMap<>();
+        for (OrderRequest request : requests) {
+            requested.merge(request.getProductId(), 1, Integer::sum);
+        }
+        List<ProductEntity> found = stockReservationEngine.isEnabled()
+                ? productRepository.findAllById(requested.keySet())
+                : productRepository.findAllReadOnlyById(requested.keySet());
+        Map<Integer, ProductEntity> products = new TreeMap<>();
+        for (ProductEntity product : found) {
+            products.put(product.getProductId(), product);
+        }
+
+        Map<Integer, Integer> remaining = new TreeMap<>();
+        List<ProductEntity> reserved = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> item : requested.entrySet()) {
+            ProductEntity product = products.get(item.getKey());
+            if (product == null) {
+                continue;
+            }
+            int granted = stockReservationEngine.isEnabled()
+                    ? reserveUpToInMemory(item.getKey(), item.getValue())
+                    : reserveUpToLocked(product, item.getValue());
+            if (granted > 0) {
+                productCatalogCache.stockChanged(item.getKey(), -granted);
+                reserved.add(product);
+            }
+            remaining.put(item.getKey(), granted);
+        }
+        if (!stockReservationEngine.isEnabled() && !reserved.isEmpty()) {
+            reportStockAfterCommit(reserved);
+        }
+
+        List<PlacementResult> results = new ArrayList<>(requests.size());
+        List<OrderEntity> orders = new ArrayList<>();
+        for (OrderRequest request : requests) {
+            ProductEntity product = products.get(request.getProductId());
+            if (product == null) {
+                results.add(PlacementResult.rejected(new ProductNotFoundException("Product not found")));
+            } else if (remaining.merge(request.getProductId(), -1, Integer::sum) < 0) {
+                results.add(PlacementResult.rejected(new OutOfStockException("Product is out of stock")));
+            } else {
+                OrderEntity order = new OrderEntity();
+                order.setCustomerName(request.getCustomerName());
+                order.setProduct(product);
+                orders.add(order);
+                results.add(PlacementResult.placed(order));
+            }
+        }
+        saveAll(orders);
+        ordersPlaced(orders);
+        return results;
+    }
+
+    /**
+     * Takes up to {@code quantity} units with conditional UPDATEs, asking for whatever is left when
+     * the full amount is not available.
+     */
+    private int reserveUpToLocked(ProductEntity product, int quantity) {
+        return stockSlots.reserveUpTo(product.getProductId(), quantity);
+    }
+
+    private int reserveUpToInMemory(int productId, int quantity) {
+        int granted = 0;
+        while (granted < quantity && stockReservationEngine.tryReserve(productId, 1)) {
+            granted++;
+        }
+        if (granted > 0) {
+            stockReservationEngine.bindToTransaction(productId, granted);
+        }
+        return granted;
+    }
+
+    /**
+     * Places every line item of a cart in one transaction: all products are reserved or none are.
+     */
+    @Transactional
+    public List<OrderEntity> placeOrders(BatchOrderRequest request) {
+        if (request.getItems() == null || request.getItems().isEmpty()) {
+            throw new InvalidRequestException("Order must contain at least one item");
+        }
+        Map<Integer, Integer> quantities = new TreeMap<>();
+        for (OrderLineItem item : request.getItems()) {
+            if (item.getQuantity() <= 0) {
+                throw new InvalidRequestException("Quantity must be positive");
+            }
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        List<ProductEntity> products = stockReservationEngine.isEnabled()
+                ? reserveInMemory(quantities)
+                : reserveLocked(quantities);
+        quantities.forEach((productId, quantity) -> productCatalogCache.stockChanged(productId, -quantity));
+
+        Map<Integer, ProductEntity> productsById = new TreeMap<>();
+        for (ProductEntity product : products) {
+            productsById.put(product.getProductId(), product);
+        }
+        List<OrderEntity> orders = new ArrayList<>();
+        for (OrderLineItem item : request.getItems()) {
+            for (int i = 0; i < item.getQuantity(); i++) {
+                OrderEntity order = new OrderEntity();
+                order.setCustomerName(request.getCustomerName());
+                order.setProduct(productsById.get(item.getProductId()));
+                orders.add(order);
+            }
+        }
+        List<OrderEntity> savedOrders = saveAll(orders);
+        ordersPlaced(savedOrders);
+        return savedOrders;
+    }
+
+    /**
+     * Decrements each product with its own conditional UPDATE in ascending id order, so concurrent
+     * carts take row locks in the same sequence and cannot deadlock each other.
+     */
+    private List<ProductEntity> reserveLocked(Map<Integer, Integer> quantities) {
+        List<ProductEntity> products = productRepository.findAllReadOnlyById(quantities.keySet());
+        if (products.size() != quantities.size()) {
+            throw new ProductNotFoundException("Product not found");
+        }
+        for (Map.Entry<Integer, Integer> item : quantities.entrySet()) {
+            if (!stockSlots.reserve(item.getKey(), item.getValue())) {
+                throw new OutOfStockException("Product is out of stock");
+            }
+        }
+        reportStockAfterCommit(products);
+        return products;
+    }
+
+    private List<ProductEntity> reserveInMemory(Map<Integer, Integer> quantities) {
+        if (!stockReservationEngine.tryReserveAll(quantities)) {
+            throw new OutOfStockException("Product is out of stock");
+        }
+        quantities.forEach(stockReservationEngine::bindToTransaction);
+
+        List<ProductEntity> products = productRepository.findAllById(quantities.keySet());
+        if (products.size() != quantities.size()) {
+            throw new ProductNotFoundException("Product not found");
+        }
+        return products;
+    }
+
+    private OrderEntity placeOrderInMemory(OrderRequest request) {
+        int productId = request.getProductId();
+        if (!stockReservationEngine.tryReserve(productId, 1)) {
+            throw new OutOfStockException("Product is out of stock");
+        }
+        stockReservationEngine.bindToTransaction(productId, 1);
+        productCatalogCache.stockChanged(productId, -1);
 
+        ProductEntity product = productRepository.findById(productId)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found"));
         OrderEntity order = new OrderEntity();
         order.setCustomerName(request.getCustomerName());
         order.setProduct(product);
-        OrderEntity savedOrder = orderRepository.save(order); // This instance will have the ID set
+        OrderEntity savedOrder = save(order);
+        ordersPlaced(List.of(savedOrder));
         return savedOrder;
+    }
+
+    /**
+     * Places {@code quantity} orders for units that a confirmed hold already took off stock, so
+     * nothing is reserved again. Runs in the caller's transaction, which removes the hold.
+     */
+    public List<OrderEntity> placeHeldOrders(int productId, String customerName, int quantity) {
+        ProductEntity product = productRepository.findReadOnlyById(productId)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+        List<OrderEntity> orders = new ArrayList<>(quantity);
+        for (int i = 0; i < quantity; i++) {
+            OrderEntity order = new OrderEntity();
+            order.setCustomerName(customerName);
+            order.setProduct(product);
+            orders.add(order);
+        }
+        List<OrderEntity> savedOrders = saveAll(orders);
+        ordersPlaced(savedOrders);
+        return savedOrders;
+    }
+
+    /**
+     * Inserts the order into the primary's {@code orders} table, or into its shard.
+     */
+    private OrderEntity save(OrderEntity order) {
+        if (orderShards.isEnabled()) {
+            orderShards.insert(List.of(order));
+            return order;
+        }
+        return orderRepository.save(order);
+    }
+
+    private List<OrderEntity> saveAll(List<OrderEntity> orders) {
+        if (orderShards.isEnabled()) {
+            orderShards.insert(orders);
+            return orders;
+        }
+        return orderRepository.saveAll(orders);
+    }
 
+    /**
+     * Records newly inserted orders in the ledger and the customer cache, within the transaction
+     * that inserts them.
+     */
+    private void ordersPlaced(List<OrderEntity> orders) {
+        stockLedger.ordersPlaced(orders);
+        customerOrderCache.ordersPlaced(orders);
     }
 }
@@ -0,0 +1,19 @@
+package com.example.demo.services;
+
+import com.example.demo.exceptions.InvalidRequestException;
+import org.springframework.data.domain.Limit;
+
+final class Pages {
+
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private Pages() {
+    }
+
+    static Limit limit(int limit) {
+        if (limit <= 0) {
+            throw new InvalidRequestException("Limit must be positive");
+        }
+        return Limit.of(Math.min(limit, MAX_PAGE_SIZE));
+    }
+}
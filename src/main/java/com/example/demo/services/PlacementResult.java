@@ -0,0 +1,21 @@
+package com.example.demo.services;
+
+import com.example.demo.entity.OrderEntity;
+
+/**
+ * Outcome of one order in a group commit: the saved order, or the exception that rejected it.
+ */
+public record PlacementResult(OrderEntity order, RuntimeException error) {
+
+    public static PlacementResult placed(OrderEntity order) {
+        return new PlacementResult(order, null);
+    }
+
+    public static PlacementResult rejected(RuntimeException error) {
+        return new PlacementResult(null, error);
+    }
+
+    public boolean isPlaced() {
+        return order != null;
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.repository.ProductRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through cache of the product catalog in front of {@link ProductRepository}.
+ *
+ * Products are cached by id and pages are cached as lists of ids, so a stock change only touches
+ * the one product entry and every cached page picks it up. Both caches are bounded (Caffeine's
+ * W-TinyLFU eviction) and expire after a TTL. Writes are applied once their transaction commits:
+ * by default the product entry is evicted; in stale-stock mode the cached stock is patched by the
+ * committed delta instead and entries are reloaded in the background, so display reads on a busy
+ * product never hit the database but may lag by up to the refresh interval.
+ *
+ * Cached stock is for display only; orders always reserve against the database or the
+ * {@link StockReservationEngine}.
+ */
+@Service
+public class ProductCatalogCache {
+
+    private final ProductRepository productRepository;
+    private final boolean enabled;
+    private final boolean staleStock;
+    private final LoadingCache<Integer, ProductResponse> products;
+    private final Cache<PageKey, List<Integer>> pages;
+
+    @Autowired
+    public ProductCatalogCache(ProductRepository productRepository, MeterRegistry meterRegistry,
+                               @Value("${orderup.cache.products.enabled:false}") boolean enabled,
+                               @Value("${orderup.cache.products.max-size:10000}") long maxSize,
+                               @Value("${orderup.cache.products.max-pages:1000}") long maxPages,
+                               @Value("${orderup.cache.products.ttl-ms:60000}") long ttlMs,
+                               @Value("${orderup.cache.products.stale-stock.enabled:false}") boolean staleStock,
+                               @Value("${orderup.cache.products.stale-stock.refresh-ms:1000}") long refreshMs) {
+        this(productRepository, meterRegistry, enabled, maxSize, maxPages, ttlMs, staleStock, refreshMs,
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs Caffeine's eviction and refresh work
+     */
+    ProductCatalogCache(ProductRepository productRepository, MeterRegistry meterRegistry, boolean enabled,
+                        long maxSize, long maxPages, long ttlMs, boolean staleStock, long refreshMs,
+                        Executor executor) {
+        this.productRepository = productRepository;
+        this.enabled = enabled;
+        this.staleStock = staleStock;
+
+        Caffeine<Object, Object> productsBuilder = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats();
+        if (staleStock) {
+            productsBuilder.refreshAfterWrite(Duration.ofMillis(refreshMs));
+        }
+        this.products = productsBuilder.build(new ProductLoader());
+        this.pages = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(maxPages)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .recordStats()
+                .build();
+
+        if (enabled) {
+            CaffeineCacheMetrics.monitor(meterRegistry, products, "products");
+            CaffeineCacheMetrics.monitor(meterRegistry, pages, "productPages");
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Optional<ProductResponse> get(int productId) {
+        if (!enabled) {
+            return productRepository.findResponseById(productId);
+        }
+        return Optional.ofNullable(products.get(productId));
+    }
+
+    /**
+     * Returns up to {@code limit} products with an id greater than {@code afterId}, in id order.
+     */
+    public List<ProductResponse> page(int afterId, Limit limit) {
+        if (!enabled) {
+            return productRepository.findPage(afterId, limit);
+        }
+        PageKey key = new PageKey(afterId, limit.max());
+        List<Integer> ids = pages.getIfPresent(key);
+        if (ids == null) {
+            List<ProductResponse> page = productRepository.findPage(afterId, limit);
+            pages.put(key, page.stream().map(ProductResponse::getProductId).toList());
+            return page;
+        }
+        Map<Integer, ProductResponse> byId = products.getAll(ids);
+        List<ProductResponse> page = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            ProductResponse product = byId.get(id);
+            if (product != null) {
+                page.add(product);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Records that a product's stock changed by {@code delta}, effective when the current
+     * transaction commits (or immediately outside a transaction).
+     */
+    public void stockChanged(int productId, int delta) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            if (staleStock) {
+                products.asMap().computeIfPresent(productId,
+                        (id, product) -> product.withStock(product.getStock() + delta));
+            } else {
+                products.invalidate(productId);
+            }
+        });
+    }
+
+    /**
+     * Records a new product. Page membership changes, so cached pages are dropped.
+     */
+    public void productAdded(ProductResponse product) {
+        if (!enabled) {
+            return;
+        }
+        afterCommit(() -> {
+            products.put(product.getProductId(), product);
+            pages.invalidateAll();
+        });
+    }
+
+    public void invalidateAll() {
+        products.invalidateAll();
+        pages.invalidateAll();
+    }
+
+    public CacheStats productStats() {
+        return products.stats();
+    }
+
+    public CacheStats pageStats() {
+        return pages.stats();
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record PageKey(int afterId, int limit) {
+    }
+
+    private final class ProductLoader implements CacheLoader<Integer, ProductResponse> {
+        @Override
+        public ProductResponse load(Integer productId) {
+            return productRepository.findResponseById(productId).orElse(null);
+        }
+
+        @Override
+        public Map<Integer, ProductResponse> loadAll(Set<? extends Integer> productIds) {
+            return productRepository.findResponsesById(List.copyOf(productIds)).stream()
+                    .collect(Collectors.toMap(ProductResponse::getProductId, Function.identity()));
+        }
+    }
+}
@@ -1,38 +1,150 @@
 package com.example.demo.services;
 
 import com.example.demo.dtos.ProductRequest;
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.dtos.ProductSalesResponse;
 import com.example.demo.entity.ProductEntity;
 import com.example.demo.exceptions.ProductNotFoundException;
 import com.example.demo.repository.ProductRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class ProductService {
     private final ProductRepository productRepository;
+    private final StockReservationEngine stockReservationEngine;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockLedger stockLedger;
+    private final StockSlots stockSlots;
+    private final TransactionTemplate transactionTemplate;
 
     @Autowired
-    public ProductService(ProductRepository productRepository){
+    public ProductService(ProductRepository productRepository, StockReservationEngine stockReservationEngine,
+                          ProductCatalogCache productCatalogCache, StockLedger stockLedger, StockSlots stockSlots,
+                          PlatformTransactionManager transactionManager){
         this.productRepository = productRepository;
+        this.stockReservationEngine = stockReservationEngine;
+        this.productCatalogCache = productCatalogCache;
+        this.stockLedger = stockLedger;
+        this.stockSlots = stockSlots;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
-    public List<ProductEntity> getAllProducts(){
-        return productRepository.findAll();
+    /**
+     * Returns up to {@code limit} products with an id greater than {@code afterId}, in id order.
+     * With the ledger on they come from its stock projection.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductResponse> getProducts(int afterId, int limit){
+        if (stockLedger.isEnabled()) {
+            return stockLedger.getProducts(afterId, limit);
+        }
+        List<ProductResponse> products = productCatalogCache.page(afterId, Pages.limit(limit));
+        if (!stockReservationEngine.isEnabled()) {
+            return products;
+        }
+        return products.stream().map(this::withReservedStock).toList();
     }
+
+    /**
+     * With the ledger on, a product added since the last projector run is read from the table.
+     */
+    @Transactional(readOnly = true)
+    public ProductResponse getProduct(int productId){
+        if (stockLedger.isEnabled()) {
+            Optional<ProductResponse> projected = stockLedger.getProduct(productId);
+            if (projected.isPresent()) {
+                return projected.get();
+            }
+        }
+        return productCatalogCache.get(productId)
+                .map(this::withReservedStock)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+    }
+
+    /**
+     * Reads the product's sales counter; its orders are never loaded.
+     */
+    @Transactional(readOnly = true)
+    public ProductSalesResponse getSales(int productId){
+        return productRepository.findSalesById(productId)
+                .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+    }
+
+    /**
+     * Hands every product to {@code consumer} in id order. Rows are read as DTOs, so nothing
+     * accumulates in the persistence context.
+     */
+    @Transactional(readOnly = true)
+    public void streamProducts(Consumer<ProductResponse> consumer){
+        try (Stream<ProductResponse> products = productRepository.streamAll()) {
+            products.forEach(consumer);
+        }
+    }
+
     public ProductEntity addProduct(ProductRequest productRequest) {
         ProductEntity product = new ProductEntity();
         product.setProductName(productRequest.getProductName());
         product.setStock(productRequest.getStock());
-        return productRepository.save(product);
+        ProductEntity saved = transactionTemplate.execute(status -> {
+            ProductEntity inserted = productRepository.save(product);
+            stockLedger.productAdded(inserted.getProductId(), inserted.getProductName(), inserted.getStock());
+            return inserted;
+        });
+        productCatalogCache.productAdded(ProductResponse.from(saved));
+        return saved;
     }
     public ProductEntity updateStock(int productId, int quantityToAdd) {
-        ProductEntity product = productRepository.findById(productId)
+        ProductEntity product = stockReservationEngine.isEnabled()
+                ? stockReservationEngine.restock(productId, quantityToAdd, () -> addStock(productId, quantityToAdd))
+                : addStock(productId, quantityToAdd);
+        productCatalogCache.stockChanged(productId, quantityToAdd);
+        if (stockSlots.isSlotted(productId)) {
+            // The restock lands on the product row; report the slots too.
+            productRepository.findResponseById(productId).ifPresent(summed -> product.setStock(summed.getStock()));
+        }
+        return product;
+    }
+
+    /**
+     * Spreads the product's stock over {@code slots} rows, or with 1 merges it back into its row.
+     */
+    public ProductResponse setStockSlots(int productId, int slots) {
+        stockSlots.setSlots(productId, slots);
+        return productRepository.findResponseById(productId)
                 .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+    }
+
+    /**
+     * With the in-memory engine on, the {@code products} table lags behind reservations until the
+     * next flush, so the engine's counter is the better figure to show.
+     */
+    private ProductResponse withReservedStock(ProductResponse product) {
+        if (!stockReservationEngine.isEnabled()) {
+            return product;
+        }
+        return stockReservationEngine.availableStock(product.getProductId())
+                .map(product::withStock)
+                .orElse(product);
+    }
 
-        product.setStock(product.getStock() + quantityToAdd);
-        return productRepository.save(product);
+    private ProductEntity addStock(int productId, int quantityToAdd) {
+        return transactionTemplate.execute(status -> {
+            if (productRepository.incrementStock(productId, quantityToAdd) == 0) {
+                throw new ProductNotFoundException("Product not found");
+            }
+            stockLedger.restocked(productId, quantityToAdd);
+            return productRepository.findById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+        });
     }
 
 }
@@ -0,0 +1,307 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.exceptions.HoldNotFoundException;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StockHoldRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timed stock holds, e.g. for the items in a customer's cart during checkout.
+ *
+ * A hold takes its units off stock the way an order does, through the in-memory engine or the
+ * product row and its slots, and records a {@code stock_holds} row. Confirming it deletes the row
+ * and inserts the orders without reserving again. Releasing it, or letting it expire, deletes the
+ * row and puts the units back. The delete is conditional, so when a confirm and an expiry race only
+ * the one that removes the row acts on the units.
+ *
+ * Expiry times sit in a {@link TimingWheel} ticked every {@code tick-ms}, so each tick touches only
+ * the holds that are due rather than scanning every outstanding hold. The wheel is rebuilt from the
+ * table on startup. Holds the wheel never saw, such as those of a node that went down, are
+ * released by a sweep over the {@code expires_at} index once they are {@code orphan-grace-ms} past
+ * their expiry.
+ */
+@Service
+public class StockHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldService.class);
+    private static final int BATCH = 500;
+
+    private final StockHoldRepository stockHoldRepository;
+    private final ProductRepository productRepository;
+    private final OrderService orderService;
+    private final StockReservationEngine stockReservationEngine;
+    private final StockSlots stockSlots;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final long defaultTtlMs;
+    private final long maxTtlMs;
+    private final long orphanGraceMs;
+    private final TimingWheel<Hold> wheel;
+    private final ConcurrentHashMap<Integer, TimingWheel.Timeout<Hold>> scheduled = new ConcurrentHashMap<>();
+    private final Counter expired;
+
+    @Autowired
+    public StockHoldService(StockHoldRepository stockHoldRepository, ProductRepository productRepository,
+                            OrderService orderService, StockReservationEngine stockReservationEngine,
+                            StockSlots stockSlots, ProductCatalogCache productCatalogCache,
+                            StockLedger stockLedger, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                            @Value("${orderup.holds.ttl-ms:600000}") long defaultTtlMs,
+                            @Value("${orderup.holds.max-ttl-ms:3600000}") long maxTtlMs,
+                            @Value("${orderup.holds.tick-ms:100}") long tickMs,
+                            @Value("${orderup.holds.wheel-size:4096}") int wheelSize,
+                            @Value("${orderup.holds.orphan-grace-ms:30000}") long orphanGraceMs) {
+        this.stockHoldRepository = stockHoldRepository;
+        this.productRepository = productRepository;
+        this.orderService = orderService;
+        this.stockReservationEngine = stockReservationEngine;
+        this.stockSlots = stockSlots;
+        this.productCatalogCache = productCatalogCache;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtlMs = defaultTtlMs;
+        this.maxTtlMs = maxTtlMs;
+        this.orphanGraceMs = orphanGraceMs;
+        this.wheel = new TimingWheel<>(TimeUnit.MILLISECONDS.toNanos(tickMs), wheelSize, System.nanoTime());
+        this.expired = Counter.builder("orderup.holds.expired")
+                .description("Stock holds released because they expired")
+                .register(meterRegistry);
+        Gauge.builder("orderup.holds.scheduled", scheduled, Map::size)
+                .description("Stock holds waiting in this node's timing wheel")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Puts every outstanding hold on the wheel, so holds made before a restart still expire on time.
+     */
+    @PostConstruct
+    public void load() {
+        int afterId = 0;
+        List<StockHoldEntity> page;
+        while (!(page = stockHoldRepository.findPage(afterId, Limit.of(BATCH))).isEmpty()) {
+            page.forEach(this::schedule);
+            afterId = page.get(page.size() - 1).getHoldId();
+        }
+        if (!scheduled.isEmpty()) {
+            logger.info("Scheduled expiry of {} outstanding stock holds", scheduled.size());
+        }
+    }
+
+    /**
+     * Takes the units off stock and holds them for the request's TTL.
+     *
+     * @throws OutOfStockException if fewer units are left than requested
+     */
+    public StockHoldEntity hold(HoldRequest request) {
+        if (request.getQuantity() <= 0) {
+            throw new InvalidRequestException("Quantity must be positive");
+        }
+        long ttlMs = request.getTtlSeconds() == null ? defaultTtlMs : request.getTtlSeconds() * 1000L;
+        if (ttlMs <= 0 || ttlMs > maxTtlMs) {
+            throw new InvalidRequestException("Hold TTL must be between 1 and " + maxTtlMs / 1000 + " seconds");
+        }
+        int productId = request.getProductId();
+        int quantity = request.getQuantity();
+        StockHoldEntity saved = transactionTemplate.execute(status -> {
+            if (stockReservationEngine.isEnabled()) {
+                if (!stockReservationEngine.tryReserve(productId, quantity)) {
+                    throw new OutOfStockException("Product is out of stock");
+                }
+                stockReservationEngine.bindToTransaction(productId, quantity);
+            } else {
+                productRepository.findReadOnlyById(productId)
+                        .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+                if (!stockSlots.reserve(productId, quantity)) {
+                    throw new OutOfStockException("Product is out of stock");
+                }
+            }
+            productCatalogCache.stockChanged(productId, -quantity);
+            stockLedger.held(productId, quantity);
+
+            LocalDateTime now = LocalDateTime.now();
+            StockHoldEntity hold = new StockHoldEntity();
+            hold.setProductId(productId);
+            hold.setQuantity(quantity);
+            hold.setCustomerName(request.getCustomerName());
+            hold.setCreatedAt(now);
+            hold.setExpiresAt(now.plus(Duration.ofMillis(ttlMs)));
+            return stockHoldRepository.save(hold);
+        });
+        schedule(saved);
+        return saved;
+    }
+
+    /**
+     * Turns a hold into one order per held unit.
+     *
+     * @throws HoldNotFoundException if the hold was already confirmed, released or has expired
+     */
+    public List<OrderEntity> confirm(int holdId) {
+        List<OrderEntity> orders = transactionTemplate.execute(status -> {
+            StockHoldEntity hold = stockHoldRepository.findById(holdId)
+                    .filter(h -> h.getExpiresAt().isAfter(LocalDateTime.now()))
+                    .orElseThrow(() -> new HoldNotFoundException("Hold not found or expired"));
+            if (stockHoldRepository.deleteHold(holdId) == 0) {
+                throw new HoldNotFoundException("Hold not found or expired");
+            }
+            // The held units pass to the orders, which record taking them.
+            stockLedger.holdReleased(hold.getProductId(), hold.getQuantity());
+            return orderService.placeHeldOrders(hold.getProductId(), hold.getCustomerName(), hold.getQuantity());
+        });
+        unschedule(holdId);
+        return orders;
+    }
+
+    /**
+     * Gives a hold's units back before it expires.
+     *
+     * @throws HoldNotFoundException if the hold was already confirmed, released or has expired
+     */
+    public void release(int holdId) {
+        // A read-write transaction keeps the lookup on the primary; the replica may not have the hold yet.
+        StockHoldEntity hold = transactionTemplate.execute(status -> stockHoldRepository.findById(holdId))
+                .orElseThrow(() -> new HoldNotFoundException("Hold not found or expired"));
+        if (releaseAll(List.of(new Hold(hold.getHoldId(), hold.getProductId(), hold.getQuantity()))) == 0) {
+            throw new HoldNotFoundException("Hold not found or expired");
+        }
+    }
+
+    /**
+     * Releases the holds whose expiry has passed on the wheel.
+     */
+    @Scheduled(fixedDelayString = "${orderup.holds.tick-ms:100}")
+    public void expireDue() {
+        List<Hold> due = new ArrayList<>();
+        synchronized (wheel) {
+            wheel.advance(System.nanoTime(), due::add);
+        }
+        for (int from = 0; from < due.size(); from += BATCH) {
+            List<Hold> batch = due.subList(from, Math.min(from + BATCH, due.size()));
+            try {
+                expired.increment(releaseAll(batch));
+            } catch (RuntimeException e) {
+                // Left in the table for the orphan sweep.
+                logger.warn("Could not release {} expired stock holds: {}", batch.size(), e.getMessage());
+                batch.forEach(hold -> scheduled.remove(hold.holdId()));
+            }
+        }
+    }
+
+    /**
+     * Releases holds that expired more than {@code orphan-grace-ms} ago but were never released,
+     * e.g. because the node that made them went down.
+     */
+    @Scheduled(fixedDelayString = "${orderup.holds.orphan-sweep-interval-ms:60000}")
+    public void sweepOrphans() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(orphanGraceMs));
+        List<StockHoldEntity> page;
+        int released = 0;
+        do {
+            page = stockHoldRepository.findExpired(before, Limit.of(BATCH));
+            List<Hold> holds = page.stream()
+                    .map(h -> new Hold(h.getHoldId(), h.getProductId(), h.getQuantity()))
+                    .toList();
+            int count = releaseAll(holds);
+            released += count;
+            if (count == 0) {
+                break;
+            }
+        } while (page.size() == BATCH);
+        if (released > 0) {
+            expired.increment(released);
+            logger.info("Released {} orphaned stock holds", released);
+        }
+    }
+
+    /**
+     * Deletes the holds and puts back the units of those this call removed, one transaction per
+     * product in ascending id order. With the in-memory engine the database update runs under the
+     * engine's restock lock, so its counter and its journal are corrected in the same step.
+     *
+     * @return the number of holds released
+     */
+    private int releaseAll(List<Hold> holds) {
+        Map<Integer, List<Hold>> byProduct = new TreeMap<>();
+        for (Hold hold : holds) {
+            byProduct.computeIfAbsent(hold.productId(), id -> new ArrayList<>()).add(hold);
+        }
+        int released = 0;
+        for (Map.Entry<Integer, List<Hold>> entry : byProduct.entrySet()) {
+            int productId = entry.getKey();
+            int[] count = new int[1];
+            int quantity = stockReservationEngine.isEnabled()
+                    ? stockReservationEngine.restore(productId, () -> restore(productId, entry.getValue(), count))
+                    : restore(productId, entry.getValue(), count);
+            if (quantity > 0) {
+                productCatalogCache.stockChanged(productId, quantity);
+            }
+            released += count[0];
+            entry.getValue().forEach(hold -> unschedule(hold.holdId()));
+        }
+        return released;
+    }
+
+    private int restore(int productId, List<Hold> holds, int[] count) {
+        Integer quantity = transactionTemplate.execute(status -> {
+            int units = 0;
+            for (Hold hold : holds) {
+                if (stockHoldRepository.deleteHold(hold.holdId()) == 1) {
+                    units += hold.quantity();
+                    count[0]++;
+                }
+            }
+            if (units > 0) {
+                productRepository.restoreStock(productId, units);
+                stockLedger.holdReleased(productId, units);
+                if (stockReservationEngine.isEnabled()) {
+                    stockReservationEngine.bindReturnToTransaction(productId, units);
+                }
+            }
+            return units;
+        });
+        return quantity == null ? 0 : quantity;
+    }
+
+    private void schedule(StockHoldEntity hold) {
+        long delayNanos = Duration.between(LocalDateTime.now(), hold.getExpiresAt()).toNanos();
+        Hold value = new Hold(hold.getHoldId(), hold.getProductId(), hold.getQuantity());
+        scheduled.put(hold.getHoldId(), wheel.schedule(value, System.nanoTime() + delayNanos));
+    }
+
+    private void unschedule(int holdId) {
+        TimingWheel.Timeout<Hold> timeout = scheduled.remove(holdId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private record Hold(int holdId, int productId, int quantity) {
+    }
+}
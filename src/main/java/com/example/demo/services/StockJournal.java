@@ -0,0 +1,292 @@
+package com.example.demo.services;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead journal of the in-memory stock engine, so committed reservations survive a
+ * crash before they are flushed to the {@code products} table.
+ *
+ * The journal keeps, per product, the {@code units_sold} value the table will hold once every
+ * committed reservation is flushed. Each change appends a 20-byte record (product, delta, units
+ * sold after it, CRC32C) to {@code stock.log} before the order commits. Every
+ * {@code snapshot-interval-ms} the whole map is written to {@code stock.snapshot}: 12 bytes per
+ * product, replaced atomically. The log is then truncated. On startup the snapshot is memory-mapped,
+ * the log tail is replayed up to the first torn or corrupt record, and
+ * {@link StockReservationEngine} compares the result with the table. Units sold by the journal but
+ * not by the table are the ones lost in the crash, and are flushed again.
+ *
+ * Records are written to the file on every append, so a killed process loses nothing. They are
+ * forced to disk every {@code sync-interval-ms}, or on every append when it is 0.
+ */
+@Service
+public class StockJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockJournal.class);
+
+    static final String SNAPSHOT_FILE = "stock.snapshot";
+    static final String LOG_FILE = "stock.log";
+    private static final int SNAPSHOT_MAGIC = 0x53544B31;
+    private static final int SNAPSHOT_HEADER = 8;
+    private static final int SNAPSHOT_ENTRY = 12;
+    private static final int RECORD = 20;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long syncIntervalMs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Integer, Long> unitsSold = new HashMap<>();
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD);
+    private final CRC32C crc = new CRC32C();
+    private Map<Integer, Long> recovered = Map.of();
+    private FileChannel log;
+    private long appendedSinceSnapshot;
+    private boolean unsynced;
+
+    @Autowired
+    public StockJournal(@Value("${orderup.stock.in-memory.enabled:false}") boolean engineEnabled,
+                        @Value("${orderup.stock.journal.enabled:false}") boolean enabled,
+                        @Value("${orderup.stock.journal.dir:data/stock-journal}") String directory,
+                        @Value("${orderup.stock.journal.sync-interval-ms:100}") long syncIntervalMs) {
+        this.enabled = engineEnabled && enabled;
+        this.directory = Path.of(directory);
+        this.syncIntervalMs = syncIntervalMs;
+        if (this.enabled) {
+            open();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Units sold per product as journaled before the last shutdown or crash, for the engine to
+     * check against the table once at startup.
+     */
+    public Map<Integer, Long> recovered() {
+        return recovered;
+    }
+
+    /**
+     * Starts journaling a product whose table row shows {@code unitsSold}.
+     */
+    public void track(int productId, long unitsSold) {
+        lock.lock();
+        try {
+            this.unitsSold.putIfAbsent(productId, unitsSold);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops journaling a product that no longer exists.
+     */
+    public void forget(int productId) {
+        lock.lock();
+        try {
+            unitsSold.remove(productId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Journals {@code quantity} units of a product as sold; negative quantities take back units
+     * journaled for a transaction that then failed to commit.
+     */
+    public void append(int productId, int quantity) {
+        lock.lock();
+        try {
+            Long before = unitsSold.get(productId);
+            if (before == null) {
+                throw new IllegalStateException("Product " + productId + " is not journaled");
+            }
+            long after = before + quantity;
+            unitsSold.put(productId, after);
+            record.clear();
+            record.putInt(productId).putInt(quantity).putLong(after);
+            crc.reset();
+            crc.update(record.array(), 0, RECORD - 4);
+            record.putInt((int) crc.getValue()).flip();
+            while (record.hasRemaining()) {
+                log.write(record);
+            }
+            appendedSinceSnapshot++;
+            if (syncIntervalMs == 0) {
+                log.force(false);
+            } else {
+                unsynced = true;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not append to the stock journal", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orderup.stock.journal.sync-interval-ms:100}")
+    public void sync() {
+        if (!enabled || !unsynced) {
+            return;
+        }
+        lock.lock();
+        try {
+            log.force(false);
+            unsynced = false;
+        } catch (IOException e) {
+            logger.error("Could not sync the stock journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes every product's units sold to a new snapshot and starts an empty log.
+     */
+    @Scheduled(fixedDelayString = "${orderup.stock.journal.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        if (!enabled) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (appendedSinceSnapshot == 0 && Files.exists(directory.resolve(SNAPSHOT_FILE))) {
+                return;
+            }
+            writeSnapshot(unitsSold);
+            log.truncate(0);
+            log.force(true);
+            appendedSinceSnapshot = 0;
+            unsynced = false;
+        } catch (IOException e) {
+            logger.error("Could not write the stock snapshot: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        snapshot();
+        lock.lock();
+        try {
+            log.close();
+        } catch (IOException e) {
+            logger.error("Could not close the stock journal: {}", e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(directory);
+            Map<Integer, Long> state = readSnapshot();
+            log = FileChannel.open(directory.resolve(LOG_FILE),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            int replayed = replay(state);
+            unitsSold.putAll(state);
+            recovered = Map.copyOf(state);
+            // Fold the tail into a fresh snapshot so the next start replays nothing twice.
+            writeSnapshot(unitsSold);
+            log.truncate(0);
+            log.force(true);
+            if (replayed > 0) {
+                logger.info("Replayed {} stock journal records over a snapshot of {} products", replayed, state.size());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the stock journal in " + directory, e);
+        }
+    }
+
+    private Map<Integer, Long> readSnapshot() throws IOException {
+        Map<Integer, Long> state = new HashMap<>();
+        Path file = directory.resolve(SNAPSHOT_FILE);
+        if (!Files.exists(file)) {
+            return state;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < SNAPSHOT_HEADER || buffer.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(file + " is not a stock snapshot");
+            }
+            int products = buffer.getInt();
+            if (buffer.remaining() != (long) products * SNAPSHOT_ENTRY) {
+                throw new IOException(file + " is truncated");
+            }
+            for (int i = 0; i < products; i++) {
+                state.put(buffer.getInt(), buffer.getLong());
+            }
+        }
+        return state;
+    }
+
+    private int replay(Map<Integer, Long> state) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD);
+        long position = 0;
+        int replayed = 0;
+        while (true) {
+            buffer.clear();
+            if (log.read(buffer, position) < RECORD || buffer.hasRemaining()) {
+                break;
+            }
+            crc.reset();
+            crc.update(buffer.array(), 0, RECORD - 4);
+            buffer.flip();
+            int productId = buffer.getInt();
+            buffer.getInt();
+            long after = buffer.getLong();
+            if (buffer.getInt() != (int) crc.getValue()) {
+                break;
+            }
+            state.put(productId, after);
+            position += RECORD;
+            replayed++;
+        }
+        if (position < log.size()) {
+            logger.warn("Discarding {} bytes of torn stock journal tail", log.size() - position);
+        }
+        return replayed;
+    }
+
+    private void writeSnapshot(Map<Integer, Long> state) throws IOException {
+        Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        ByteBuffer buffer = ByteBuffer.allocate(SNAPSHOT_HEADER + state.size() * SNAPSHOT_ENTRY);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(state.size());
+        state.forEach((productId, sold) -> buffer.putInt(productId).putLong(sold));
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, directory.resolve(SNAPSHOT_FILE),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,506 @@
+package com.example.demo.services;
+
+import com.example.demo.entity.StockLeaseEntity;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StockLeaseRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-node stock leases for deployments with several application nodes.
+ *
+ * Instead of every order decrementing the shared {@code products} row, a node leases a block of
+ * up to {@code block-size} units with one conditional UPDATE, never more than {@code max-share} of
+ * what is left, and records it in {@code stock_leases}. Orders then take units from the block in
+ * memory and are a single INSERT each, stamped with the lease id. When a product's leases drop
+ * below {@code refill-at} of a block, the next order leases another block.
+ *
+ * Each lease's row is the durable record: units granted, with the lease's orders as units sold.
+ * A lease that is used up, or every lease on shutdown, is returned by deleting its row and putting
+ * back the units granted minus its orders. Nodes renew their leases every
+ * {@code renew-interval-ms} and stop selling from a lease {@code ttl-ms} after its last renewal.
+ * Any node reclaims leases {@code grace-ms} past their expiry the same way, so the stock of a node
+ * that went down comes back. Stock read from the table excludes leased units until they are sold
+ * or returned. A product's units can therefore sit unused on one node while another node reports
+ * it sold out; the share cap keeps that small as stock runs low. A product with no orders on this
+ * node for {@code ttl-ms} is forgotten and its leases are returned.
+ */
+@Service
+public class StockLeases {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLeases.class);
+    private static final int RECLAIM_BATCH = 100;
+
+    private final ProductRepository productRepository;
+    private final StockLeaseRepository stockLeaseRepository;
+    private final OrderRepository orderRepository;
+    private final OrderShards orderShards;
+    private final ProductCatalogCache productCatalogCache;
+    private final StockLedger stockLedger;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+    private final int blockSize;
+    private final double maxShare;
+    private final int refillBelow;
+    private final long ttlMs;
+    private final long graceMs;
+    private final Cache<Integer, ProductLeases> products;
+    private final Queue<Lease> retiring = new ConcurrentLinkedQueue<>();
+    private final Counter acquired;
+    private final Counter returned;
+    private volatile boolean closed;
+
+    @Autowired
+    public StockLeases(ProductRepository productRepository, StockLeaseRepository stockLeaseRepository,
+                       OrderRepository orderRepository, OrderShards orderShards,
+                       ProductCatalogCache productCatalogCache, StockLedger stockLedger,
+                       PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                       @Value("${orderup.stock.in-memory.enabled:false}") boolean engineEnabled,
+                       @Value("${orderup.stock.leases.enabled:false}") boolean enabled,
+                       @Value("${orderup.node-id:}") String nodeId,
+                       @Value("${orderup.stock.leases.block-size:50}") int blockSize,
+                       @Value("${orderup.stock.leases.max-share:0.25}") double maxShare,
+                       @Value("${orderup.stock.leases.refill-at:0.2}") double refillAt,
+                       @Value("${orderup.stock.leases.ttl-ms:30000}") long ttlMs,
+                       @Value("${orderup.stock.leases.grace-ms:10000}") long graceMs) {
+        this(productRepository, stockLeaseRepository, orderRepository, orderShards, productCatalogCache, stockLedger,
+                transactionManager, meterRegistry, engineEnabled, enabled, nodeId, blockSize, maxShare, refillAt,
+                ttlMs, graceMs, Ticker.systemTicker());
+    }
+
+    StockLeases(ProductRepository productRepository, StockLeaseRepository stockLeaseRepository,
+                OrderRepository orderRepository, OrderShards orderShards, ProductCatalogCache productCatalogCache,
+                StockLedger stockLedger, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                boolean engineEnabled, boolean enabled, String nodeId, int blockSize, double maxShare, double refillAt,
+                long ttlMs, long graceMs, Ticker ticker) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("Lease block size must be positive");
+        }
+        this.productRepository = productRepository;
+        this.stockLeaseRepository = stockLeaseRepository;
+        this.orderRepository = orderRepository;
+        this.orderShards = orderShards;
+        this.productCatalogCache = productCatalogCache;
+        this.stockLedger = stockLedger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The in-memory engine already keeps orders off the product row on a single node.
+        this.enabled = enabled && !engineEnabled;
+        this.nodeId = nodeId == null || nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        this.blockSize = blockSize;
+        this.maxShare = maxShare;
+        this.refillBelow = (int) Math.ceil(blockSize * refillAt);
+        this.ttlMs = ttlMs;
+        this.graceMs = graceMs;
+        // Retiring an idle product's leases only queues them, so it is done on the calling thread.
+        this.products = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(ttlMs))
+                .executor(Runnable::run)
+                .ticker(ticker)
+                .<Integer, ProductLeases>removalListener((productId, leases, cause) -> {
+                    if (leases != null && cause == RemovalCause.EXPIRED) {
+                        retire(leases);
+                    }
+                })
+                .build();
+        this.acquired = Counter.builder("orderup.stock.leases.acquired")
+                .description("Stock leases granted to this node")
+                .register(meterRegistry);
+        this.returned = Counter.builder("orderup.stock.leases.returned")
+                .description("Unsold leased units put back on the product row by this node")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled && !closed;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Takes one unit of a product from this node's leases, leasing a new block when they have run
+     * out or are running low. Call it before the order's transaction, and {@link Lease#done} once
+     * that transaction has finished, whether or not it committed. A unit whose order did not commit
+     * is not reused; it goes back to the product when the lease is returned.
+     *
+     * @return the lease the unit came from, or empty if the product is out of stock
+     * @throws ProductNotFoundException if the product does not exist
+     */
+    public Optional<Lease> take(int productId) {
+        Optional<Lease> lease;
+        do {
+            lease = take(productId, products.get(productId, id -> new ProductLeases()));
+        } while (lease == null);
+        return lease;
+    }
+
+    /**
+     * @return null if the product's entry was evicted while this thread held it
+     */
+    private Optional<Lease> take(int productId, ProductLeases leases) {
+        Lease lease;
+        while ((lease = take(leases)) == null) {
+            leases.lock.lock();
+            try {
+                if (leases.evicted) {
+                    return null;
+                }
+                // Another thread may have leased a block while this one waited for the lock.
+                if (usable(leases) == 0) {
+                    Lease fresh = acquire(productId);
+                    if (fresh == null) {
+                        return Optional.empty();
+                    }
+                    leases.open.add(fresh);
+                }
+            } finally {
+                leases.lock.unlock();
+            }
+        }
+        if (usable(leases) < refillBelow && leases.lock.tryLock()) {
+            try {
+                if (!leases.evicted && usable(leases) < refillBelow) {
+                    Lease fresh = acquire(productId);
+                    if (fresh != null) {
+                        leases.open.add(fresh);
+                    }
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Could not refill stock lease of product {}: {}", productId, e.getMessage());
+            } finally {
+                leases.lock.unlock();
+            }
+        }
+        return Optional.of(lease);
+    }
+
+    private Lease take(ProductLeases leases) {
+        long now = System.nanoTime();
+        for (Lease lease : leases.open) {
+            if (lease.tryTake(now)) {
+                return lease;
+            }
+            if (lease.isSpent(now) && leases.open.remove(lease)) {
+                retiring.add(lease);
+            }
+        }
+        return null;
+    }
+
+    private static int usable(ProductLeases leases) {
+        long now = System.nanoTime();
+        int units = 0;
+        for (Lease lease : leases.open) {
+            if (!lease.isSpent(now)) {
+                units += lease.remaining.get();
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Leases up to a block of units off the product row, fewer when stock is low.
+     *
+     * @return the lease, or null if the product has no stock left
+     */
+    private Lease acquire(int productId) {
+        Lease lease = transactionTemplate.execute(status -> {
+            int stock = productRepository.findStockById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+            while (stock > 0) {
+                int wanted = Math.min(blockSize, Math.max(1, (int) (stock * maxShare)));
+                if (productRepository.decrementStock(productId, wanted) == 1) {
+                    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs);
+                    LocalDateTime now = LocalDateTime.now();
+                    StockLeaseEntity entity = new StockLeaseEntity();
+                    entity.setNodeId(nodeId);
+                    entity.setProductId(productId);
+                    entity.setUnits(wanted);
+                    entity.setCreatedAt(now);
+                    entity.setExpiresAt(now.plus(Duration.ofMillis(ttlMs)));
+                    stockLeaseRepository.save(entity);
+                    productCatalogCache.stockChanged(productId, -wanted);
+                    stockLedger.leased(productId, wanted);
+                    return new Lease(entity.getLeaseId(), productId, wanted, deadline);
+                }
+                stock = productRepository.findStockById(productId).orElse(0);
+            }
+            return null;
+        });
+        if (lease != null) {
+            acquired.increment();
+        }
+        return lease;
+    }
+
+    /**
+     * Renews this node's leases, returns those that are used up, and reclaims leases of other
+     * nodes that stopped renewing them.
+     */
+    @Scheduled(fixedDelayString = "${orderup.stock.leases.renew-interval-ms:5000}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        renew();
+        retireSpent();
+        reclaimExpired();
+    }
+
+    private void renew() {
+        if (products.asMap().isEmpty()) {
+            return;
+        }
+        // Only leases opened before the renewal are judged by it; later ones have a fresh deadline
+        // and may not be among the ids read back.
+        List<Lease> known = new ArrayList<>();
+        for (ProductLeases leases : products.asMap().values()) {
+            known.addAll(leases.open);
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMs);
+        try {
+            stockLeaseRepository.renew(nodeId, LocalDateTime.now().plus(Duration.ofMillis(ttlMs)));
+            Set<Integer> held = new HashSet<>(stockLeaseRepository.findIdsByNode(nodeId));
+            for (Lease lease : known) {
+                if (held.contains(lease.leaseId)) {
+                    lease.deadlineNanos = deadline;
+                } else {
+                    // Reclaimed by another node while this one was not renewing.
+                    lease.retired = true;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not renew stock leases of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    private void retireSpent() {
+        products.cleanUp();
+        long now = System.nanoTime();
+        for (ProductLeases leases : products.asMap().values()) {
+            for (Lease lease : leases.open) {
+                if (lease.isSpent(now) && leases.open.remove(lease)) {
+                    retiring.add(lease);
+                }
+            }
+        }
+        List<Lease> waiting = new ArrayList<>();
+        Lease lease;
+        while ((lease = retiring.poll()) != null) {
+            if (!giveBack(lease)) {
+                waiting.add(lease);
+            }
+        }
+        retiring.addAll(waiting);
+    }
+
+    /**
+     * Returns a lease once no order that took a unit from it is still running.
+     *
+     * @return false if orders are still running
+     */
+    private boolean giveBack(Lease lease) {
+        lease.retired = true;
+        if (lease.inFlight.get() > 0) {
+            return false;
+        }
+        try {
+            int unused = returnUnused(lease.leaseId, lease.productId, lease.granted, null);
+            logger.debug("Returned stock lease {} with {} unused units", lease.leaseId, unused);
+        } catch (RuntimeException e) {
+            // Reclaimed by this or another node after it expires.
+            logger.warn("Could not return stock lease {}: {}", lease.leaseId, e.getMessage());
+        }
+        return true;
+    }
+
+    private void reclaimExpired() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(graceMs));
+        for (StockLeaseEntity lease : stockLeaseRepository.findExpired(before, Limit.of(RECLAIM_BATCH))) {
+            try {
+                int unused = returnUnused(lease.getLeaseId(), lease.getProductId(), lease.getUnits(), before);
+                logger.info("Reclaimed stock lease {} of node {} with {} unused units", lease.getLeaseId(),
+                        lease.getNodeId(), unused);
+            } catch (RuntimeException e) {
+                logger.warn("Could not reclaim stock lease {}: {}", lease.getLeaseId(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Deletes a lease's row and puts back the units granted minus its orders, in one transaction.
+     * With {@code expiredBefore} the lease is only deleted if it has not been renewed since.
+     *
+     * @return the units put back
+     */
+    private int returnUnused(int leaseId, int productId, int granted, LocalDateTime expiredBefore) {
+        Integer unused = transactionTemplate.execute(status -> {
+            int deleted = expiredBefore == null
+                    ? stockLeaseRepository.deleteLease(leaseId)
+                    : stockLeaseRepository.deleteExpiredLease(leaseId, expiredBefore);
+            if (deleted == 0) {
+                return 0;
+            }
+            int units = granted - (int) (orderShards.isEnabled()
+                    ? orderShards.countByLease(leaseId)
+                    : orderRepository.countByLease(leaseId));
+            if (units > 0) {
+                productRepository.restoreStock(productId, units);
+                productCatalogCache.stockChanged(productId, units);
+                stockLedger.leaseReturned(productId, units);
+            }
+            return Math.max(units, 0);
+        });
+        int units = unused == null ? 0 : unused;
+        returned.increment(units);
+        return units;
+    }
+
+    /**
+     * Stops leasing and returns every lease this node holds, waiting briefly for running orders.
+     */
+    @PreDestroy
+    public void close() {
+        if (!enabled || closed) {
+            return;
+        }
+        closed = true;
+        for (ProductLeases leases : products.asMap().values()) {
+            Lease lease;
+            while ((lease = leases.open.poll()) != null) {
+                lease.retired = true;
+                retiring.add(lease);
+            }
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!retiring.isEmpty() && System.nanoTime() < deadline) {
+            retireSpent();
+            if (!retiring.isEmpty()) {
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (!retiring.isEmpty()) {
+            logger.warn("{} stock leases still had orders running; they will be reclaimed after expiry",
+                    retiring.size());
+        }
+    }
+
+    /**
+     * Queues an idle product's leases for return. Under the product's lock, so no thread adds a
+     * lease to it afterwards.
+     */
+    private void retire(ProductLeases leases) {
+        leases.lock.lock();
+        try {
+            leases.evicted = true;
+            Lease lease;
+            while ((lease = leases.open.poll()) != null) {
+                lease.retired = true;
+                retiring.add(lease);
+            }
+        } finally {
+            leases.lock.unlock();
+        }
+    }
+
+    private static final class ProductLeases {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Queue<Lease> open = new ConcurrentLinkedQueue<>();
+        private boolean evicted;
+    }
+
+    /**
+     * This node's view of one lease: units not yet handed to an order, and orders still running.
+     */
+    public static final class Lease {
+        private final int leaseId;
+        private final int productId;
+        private final int granted;
+        private final AtomicInteger remaining;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long deadlineNanos;
+        private volatile boolean retired;
+
+        private Lease(int leaseId, int productId, int granted, long deadlineNanos) {
+            this.leaseId = leaseId;
+            this.productId = productId;
+            this.granted = granted;
+            this.remaining = new AtomicInteger(granted);
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public int getLeaseId() {
+            return leaseId;
+        }
+
+        /**
+         * Marks the order that took a unit as finished, so the lease can be returned.
+         */
+        public void done() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * Counts the order as running before checking the lease, so a retiring lease either sees
+         * it running or it sees the lease retired.
+         */
+        private boolean tryTake(long now) {
+            inFlight.incrementAndGet();
+            if (!isSpent(now)) {
+                while (true) {
+                    int units = remaining.get();
+                    if (units == 0) {
+                        break;
+                    }
+                    if (remaining.compareAndSet(units, units - 1)) {
+                        return true;
+                    }
+                }
+            }
+            inFlight.decrementAndGet();
+            return false;
+        }
+
+        private boolean isSpent(long now) {
+            return retired || remaining.get() == 0 || now - deadlineNanos >= 0;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.entity.CustomerOrdersViewEntity;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.QueuedStockEventEntity;
+import com.example.demo.entity.StockEventEntity;
+import com.example.demo.repository.CustomerOrdersViewRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.ProductStockViewRepository;
+import com.example.demo.repository.QueuedStockEventRepository;
+import com.example.demo.repository.StockEventRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Append-only ledger of stock movements. Every product added, restock and order, and every unit a
+ * stock hold or lease takes or gives back, is written to {@code stock_events} in the transaction
+ * that makes the change, together with a row in
+ * {@code stock_event_queue} for {@link StockProjector} to pick up. Event ids come from
+ * {@code @BlockId} blocks, so inserts are batched and land at the end of the primary key.
+ *
+ * With the ledger on, catalog reads are served from the {@code product_stock_view} projection
+ * and never touch the {@code products} rows that orders lock. The projection trails the ledger by
+ * up to one projector run.
+ */
+@Service
+public class StockLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLedger.class);
+    private static final int OPENING_BATCH = 1000;
+
+    private final StockEventRepository stockEventRepository;
+    private final QueuedStockEventRepository queuedStockEventRepository;
+    private final ProductStockViewRepository productStockViewRepository;
+    private final CustomerOrdersViewRepository customerOrdersViewRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    @Autowired
+    public StockLedger(StockEventRepository stockEventRepository,
+                       QueuedStockEventRepository queuedStockEventRepository,
+                       ProductStockViewRepository productStockViewRepository,
+                       CustomerOrdersViewRepository customerOrdersViewRepository,
+                       ProductRepository productRepository, PlatformTransactionManager transactionManager,
+                       @Value("${orderup.ledger.enabled:false}") boolean enabled) {
+        this.stockEventRepository = stockEventRepository;
+        this.queuedStockEventRepository = queuedStockEventRepository;
+        this.productStockViewRepository = productStockViewRepository;
+        this.customerOrdersViewRepository = customerOrdersViewRepository;
+        this.productRepository = productRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * When the ledger is switched on over existing data, records each product's current stock as
+     * its opening balance so the projection starts from the right figures. Each page is read in the
+     * transaction that records it, so with read routing on the figures come from the primary.
+     */
+    @PostConstruct
+    public void open() {
+        if (!enabled) {
+            return;
+        }
+        if (!transactionTemplate.execute(status -> stockEventRepository.findPage(0, Limit.of(1)).isEmpty())) {
+            return;
+        }
+        int afterId = 0;
+        int products = 0;
+        List<ProductResponse> page;
+        while (!(page = recordOpening(afterId)).isEmpty()) {
+            afterId = page.get(page.size() - 1).getProductId();
+            products += page.size();
+        }
+        if (products > 0) {
+            logger.info("Recorded opening stock of {} products in the ledger", products);
+        }
+    }
+
+    private List<ProductResponse> recordOpening(int afterId) {
+        return transactionTemplate.execute(status -> {
+            List<ProductResponse> page = productRepository.findPage(afterId, Limit.of(OPENING_BATCH));
+            append(page.stream()
+                    .map(p -> StockEventEntity.productAdded(p.getProductId(), p.getProductName(), p.getStock()))
+                    .toList());
+            return page;
+        });
+    }
+
+    /**
+     * Records one unit leaving stock per order. Call inside the transaction that inserts them.
+     */
+    public void ordersPlaced(List<OrderEntity> orders) {
+        if (!enabled || orders.isEmpty()) {
+            return;
+        }
+        append(orders.stream().map(StockEventEntity::orderPlaced).toList());
+    }
+
+    public void productAdded(int productId, String productName, int stock) {
+        if (enabled) {
+            append(List.of(StockEventEntity.productAdded(productId, productName, stock)));
+        }
+    }
+
+    public void restocked(int productId, int quantity) {
+        if (enabled) {
+            append(List.of(StockEventEntity.restocked(productId, quantity)));
+        }
+    }
+
+    /**
+     * Records units a hold takes off stock. Call inside the transaction that records the hold.
+     */
+    public void held(int productId, int quantity) {
+        if (enabled) {
+            append(List.of(StockEventEntity.held(productId, quantity)));
+        }
+    }
+
+    /**
+     * Records a hold's units coming back, either to stock or to the orders confirming it.
+     */
+    public void holdReleased(int productId, int quantity) {
+        if (enabled && quantity > 0) {
+            append(List.of(StockEventEntity.holdReleased(productId, quantity)));
+        }
+    }
+
+    public void leased(int productId, int units) {
+        if (enabled) {
+            append(List.of(StockEventEntity.leased(productId, units)));
+        }
+    }
+
+    public void leaseReturned(int productId, int units) {
+        if (enabled && units > 0) {
+            append(List.of(StockEventEntity.leaseReturned(productId, units)));
+        }
+    }
+
+    public List<StockEventEntity> getEvents(int afterId, int limit) {
+        return stockEventRepository.findPage(afterId, Pages.limit(limit));
+    }
+
+    public List<StockEventEntity> getEventsForProduct(int productId, int afterId, int limit) {
+        return stockEventRepository.findPageByProduct(productId, afterId, Pages.limit(limit));
+    }
+
+    public List<ProductResponse> getProducts(int afterId, int limit) {
+        return productStockViewRepository.findPage(afterId, Pages.limit(limit));
+    }
+
+    public Optional<ProductResponse> getProduct(int productId) {
+        return productStockViewRepository.findResponseById(productId);
+    }
+
+    /**
+     * A customer's order count from the projection; a name with no orders yet reads as zero.
+     */
+    public CustomerOrdersViewEntity getCustomerOrders(String customerName) {
+        return customerOrdersViewRepository.findById(customerName)
+                .orElseGet(() -> new CustomerOrdersViewEntity(customerName));
+    }
+
+    private void append(List<StockEventEntity> events) {
+        stockEventRepository.saveAll(events);
+        queuedStockEventRepository.saveAll(events.stream()
+                .map(event -> new QueuedStockEventEntity(event.getEventId()))
+                .toList());
+    }
+}
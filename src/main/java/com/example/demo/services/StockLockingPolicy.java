@@ -0,0 +1,212 @@
+package com.example.demo.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chooses between row locks and optimistic version checks for each product's order path.
+ *
+ * In {@code adaptive} mode every order feeds a per-product moving average of how often it
+ * contended: a version conflict on the optimistic path, or a lock wait longer than
+ * {@code contended-wait-ms} on the pessimistic path. A product switches to row locks when the rate
+ * rises above {@code pessimistic-above} and back to optimistic once it falls below
+ * {@code optimistic-below}; the gap between the two keeps it from flapping. A product with no
+ * orders for {@code rate-idle-ms} is forgotten and starts optimistic again, as a new one would.
+ */
+@Service
+public class StockLockingPolicy {
+
+    public enum Mode { PESSIMISTIC, OPTIMISTIC, ADAPTIVE }
+
+    private static final double SMOOTHING = 0.1;
+
+    private final Mode mode;
+    private final int maxAttempts;
+    private final long baseBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double pessimisticAbove;
+    private final double optimisticBelow;
+    private final long contendedWaitNanos;
+    private final Cache<Integer, ConflictRate> conflictRates;
+    private final Timer lockWait;
+    private final Timer lockHold;
+
+    @Autowired
+    public StockLockingPolicy(MeterRegistry meterRegistry,
+                              @Value("${orderup.stock.locking.mode:pessimistic}") String mode,
+                              @Value("${orderup.stock.locking.max-attempts:5}") int maxAttempts,
+                              @Value("${orderup.stock.locking.backoff-ms:2}") long backoffMs,
+                              @Value("${orderup.stock.locking.max-backoff-ms:50}") long maxBackoffMs,
+                              @Value("${orderup.stock.locking.pessimistic-above:0.3}") double pessimisticAbove,
+                              @Value("${orderup.stock.locking.optimistic-below:0.1}") double optimisticBelow,
+                              @Value("${orderup.stock.locking.contended-wait-ms:5}") long contendedWaitMs,
+                              @Value("${orderup.stock.locking.rate-idle-ms:600000}") long rateIdleMs) {
+        this(meterRegistry, mode, maxAttempts, backoffMs, maxBackoffMs, pessimisticAbove, optimisticBelow,
+                contendedWaitMs, rateIdleMs, Ticker.systemTicker());
+    }
+
+    StockLockingPolicy(MeterRegistry meterRegistry, String mode, int maxAttempts, long backoffMs, long maxBackoffMs,
+                       double pessimisticAbove, double optimisticBelow, long contendedWaitMs, long rateIdleMs,
+                       Ticker ticker) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be positive");
+        }
+        if (optimisticBelow > pessimisticAbove) {
+            throw new IllegalArgumentException("optimistic-below must not exceed pessimistic-above");
+        }
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffNanos = TimeUnit.MILLISECONDS.toNanos(backoffMs);
+        this.maxBackoffNanos = TimeUnit.MILLISECONDS.toNanos(maxBackoffMs);
+        this.pessimisticAbove = pessimisticAbove;
+        this.optimisticBelow = optimisticBelow;
+        this.contendedWaitNanos = TimeUnit.MILLISECONDS.toNanos(contendedWaitMs);
+        // Evicting a rate is cheap, so it is done on the calling thread.
+        this.conflictRates = Caffeine.newBuilder()
+                .expireAfterAccess(Duration.ofMillis(rateIdleMs))
+                .executor(Runnable::run)
+                .ticker(ticker)
+                .build();
+        Gauge.builder("orderup.stock.locking.tracked", conflictRates, Cache::estimatedSize)
+                .description("Products with a tracked conflict rate")
+                .register(meterRegistry);
+        this.lockWait = Timer.builder("orderup.stock.lock.wait")
+                .description("Time for the statement that takes a product's row lock to return")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.lockHold = Timer.builder("orderup.stock.lock.hold")
+                .description("Time from taking a product's row lock to the end of the transaction")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Whether the next order for this product should try the optimistic path first.
+     */
+    public boolean useOptimistic(int productId) {
+        return switch (mode) {
+            case PESSIMISTIC -> false;
+            case OPTIMISTIC -> true;
+            case ADAPTIVE -> {
+                ConflictRate rate = conflictRates.getIfPresent(productId);
+                yield rate == null || rate.optimistic;
+            }
+        };
+    }
+
+    /**
+     * Optimistic attempts allowed before the order falls back to a row lock.
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void recordOptimisticAttempt(int productId, boolean conflicted) {
+        record(productId, conflicted);
+    }
+
+    public void recordLockWait(int productId, long waitNanos) {
+        lockWait.record(waitNanos, TimeUnit.NANOSECONDS);
+        record(productId, waitNanos > contendedWaitNanos);
+    }
+
+    /**
+     * Records how long the row lock is held once the surrounding transaction completes.
+     */
+    public void recordLockHeldUntilCompletion() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        long acquired = System.nanoTime();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lockHold.record(System.nanoTime() - acquired, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    /**
+     * Total time orders have spent waiting for row locks since startup.
+     */
+    public long totalLockWaitNanos() {
+        return (long) lockWait.totalTime(TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Conflict rate currently observed for a product, between 0 and 1.
+     */
+    public double conflictRate(int productId) {
+        ConflictRate rate = conflictRates.getIfPresent(productId);
+        return rate == null ? 0 : rate.get();
+    }
+
+    /**
+     * Sleeps before retry number {@code attempt} (1-based): a uniformly random time up to
+     * {@code backoff-ms * 2^(attempt-1)}, capped at {@code max-backoff-ms}.
+     */
+    public void backoff(int attempt) {
+        long ceiling = Math.min(maxBackoffNanos, baseBackoffNanos << Math.min(attempt - 1, 20));
+        if (ceiling <= 0) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void record(int productId, boolean contended) {
+        if (mode != Mode.ADAPTIVE) {
+            return;
+        }
+        ConflictRate rate = conflictRates.get(productId, id -> new ConflictRate());
+        double current = rate.update(contended ? 1 : 0);
+        if (rate.optimistic && current > pessimisticAbove) {
+            rate.optimistic = false;
+        } else if (!rate.optimistic && current < optimisticBelow) {
+            rate.optimistic = true;
+        }
+    }
+
+    /**
+     * Exponentially weighted moving average stored as the bits of a double, updated by CAS.
+     */
+    private static final class ConflictRate {
+        private final AtomicLong bits = new AtomicLong(Double.doubleToLongBits(0));
+        private volatile boolean optimistic = true;
+
+        double get() {
+            return Double.longBitsToDouble(bits.get());
+        }
+
+        double update(double sample) {
+            while (true) {
+                long current = bits.get();
+                double next = Double.longBitsToDouble(current) * (1 - SMOOTHING) + sample * SMOOTHING;
+                if (bits.compareAndSet(current, Double.doubleToLongBits(next))) {
+                    return next;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.demo.services;
+
+import com.example.demo.entity.CustomerOrdersViewEntity;
+import com.example.demo.entity.ProductStockViewEntity;
+import com.example.demo.entity.StockEventEntity;
+import com.example.demo.repository.CustomerOrdersViewRepository;
+import com.example.demo.repository.ProductStockViewRepository;
+import com.example.demo.repository.QueuedStockEventRepository;
+import com.example.demo.repository.StockEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Applies ledger events to the read models. Each run takes the oldest queued events, deletes
+ * their queue rows and updates {@code product_stock_view} and {@code customer_orders_view} in one
+ * transaction, so an event is applied exactly once even with several nodes projecting. A batch
+ * whose queue rows another node already deleted is rolled back and left to that node.
+ *
+ * The queue is what orders the work, not event ids: ids come from per-node blocks, so an event
+ * with a lower id can commit after one with a higher id.
+ */
+@Service
+public class StockProjector {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockProjector.class);
+
+    private final StockEventRepository stockEventRepository;
+    private final QueuedStockEventRepository queuedStockEventRepository;
+    private final ProductStockViewRepository productStockViewRepository;
+    private final CustomerOrdersViewRepository customerOrdersViewRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter projected;
+
+    @Autowired
+    public StockProjector(StockEventRepository stockEventRepository,
+                          QueuedStockEventRepository queuedStockEventRepository,
+                          ProductStockViewRepository productStockViewRepository,
+                          CustomerOrdersViewRepository customerOrdersViewRepository,
+                          EntityManager entityManager, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${orderup.ledger.enabled:false}") boolean enabled,
+                          @Value("${orderup.ledger.projection-batch-size:1000}") int batchSize) {
+        this.stockEventRepository = stockEventRepository;
+        this.queuedStockEventRepository = queuedStockEventRepository;
+        this.productStockViewRepository = productStockViewRepository;
+        this.customerOrdersViewRepository = customerOrdersViewRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.projected = Counter.builder("orderup.ledger.projected")
+                .description("Ledger events applied to the read models")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Projects queued events in batches until the queue is drained or another node takes over.
+     *
+     * @return the number of events applied
+     */
+    @Scheduled(fixedDelayString = "${orderup.ledger.projection-interval-ms:200}")
+    public int project() {
+        if (!enabled) {
+            return 0;
+        }
+        lock.lock();
+        int applied = 0;
+        try {
+            while (true) {
+                int batch = transactionTemplate.execute(this::projectBatch);
+                applied += batch;
+                if (batch < batchSize) {
+                    return applied;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Stock projection failed, will retry: {}", e.getMessage());
+            return applied;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rebuilds both read models from the whole ledger in one transaction, e.g. to check them
+     * against the incremental projection or after the projection logic changes.
+     */
+    public void rebuild() {
+        lock.lock();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                productStockViewRepository.deleteAllInBatch();
+                customerOrdersViewRepository.deleteAllInBatch();
+                int afterId = 0;
+                List<StockEventEntity> events;
+                while (!(events = stockEventRepository.findPage(afterId, Limit.of(batchSize))).isEmpty()) {
+                    queuedStockEventRepository.dequeue(eventIds(events));
+                    apply(events);
+                    afterId = events.get(events.size() - 1).getEventId();
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            });
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int projectBatch(TransactionStatus status) {
+        List<StockEventEntity> events = stockEventRepository.findQueued(Limit.of(batchSize));
+        if (events.isEmpty()) {
+            return 0;
+        }
+        List<Integer> ids = eventIds(events);
+        if (queuedStockEventRepository.dequeue(ids) != ids.size()) {
+            status.setRollbackOnly();
+            return 0;
+        }
+        apply(events);
+        projected.increment(events.size());
+        return events.size();
+    }
+
+    private static List<Integer> eventIds(List<StockEventEntity> events) {
+        return events.stream().map(StockEventEntity::getEventId).toList();
+    }
+
+    private void apply(List<StockEventEntity> events) {
+        Map<Integer, Integer> stockChanges = new HashMap<>();
+        Map<Integer, String> names = new HashMap<>();
+        Map<String, List<StockEventEntity>> ordersByCustomer = new HashMap<>();
+        for (StockEventEntity event : events) {
+            stockChanges.merge(event.getProductId(), event.getQuantity(), Integer::sum);
+            if (event.getProductName() != null) {
+                names.put(event.getProductId(), event.getProductName());
+            }
+            if (event.getType() == StockEventEntity.Type.ORDER_PLACED && event.getCustomerName() != null) {
+                ordersByCustomer.computeIfAbsent(event.getCustomerName(), name -> new ArrayList<>()).add(event);
+            }
+        }
+
+        Map<Integer, ProductStockViewEntity> products = new HashMap<>();
+        for (ProductStockViewEntity product : productStockViewRepository.findAllById(stockChanges.keySet())) {
+            products.put(product.getProductId(), product);
+        }
+        stockChanges.forEach((productId, change) -> {
+            ProductStockViewEntity product = products.computeIfAbsent(productId, ProductStockViewEntity::new);
+            if (names.containsKey(productId)) {
+                product.setProductName(names.get(productId));
+            }
+            product.addStock(change);
+        });
+        productStockViewRepository.saveAll(products.values());
+
+        if (ordersByCustomer.isEmpty()) {
+            return;
+        }
+        Map<String, CustomerOrdersViewEntity> customers = new HashMap<>();
+        for (CustomerOrdersViewEntity customer : customerOrdersViewRepository.findAllById(ordersByCustomer.keySet())) {
+            customers.put(customer.getCustomerName(), customer);
+        }
+        ordersByCustomer.forEach((customerName, orders) -> {
+            CustomerOrdersViewEntity customer = customers.computeIfAbsent(customerName, CustomerOrdersViewEntity::new);
+            for (StockEventEntity order : orders) {
+                customer.addOrder(order.getOrderId(), order.getCreatedAt());
+            }
+        });
+        customerOrdersViewRepository.saveAll(customers.values());
+    }
+}
@@ -0,0 +1,488 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.StockLevel;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-memory stock counters that admit or reject reservations without touching the database.
+ *
+ * Each product has a single {@link AtomicLong} packing two 32-bit halves: units still available
+ * and units reserved but not yet written to the {@code products} table. Reservations move units
+ * from one half to the other with one CAS, so the sum of both halves always equals the stock the
+ * database holds until pending decrements are flushed. Only units whose order has committed are
+ * flushed; they are counted separately when the transaction commits, so a reservation that rolls
+ * back is simply returned to the available half. Counters are spread over shards by
+ * {@code productId}; the shard lock is only taken by the background flush, reconciliation and
+ * restocks, never on the reservation path. With {@link StockJournal} enabled, committed
+ * reservations are journaled locally so a crash before the next flush loses none of them.
+ *
+ * Counters are loaded and checked inside read-write transactions, so with read routing on they
+ * are read from the primary rather than a replica that may trail it.
+ */
+@Service
+public class StockReservationEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationEngine.class);
+
+    private static final int RECOVERY_BATCH = 1000;
+
+    private final ProductRepository productRepository;
+    private final StockJournal stockJournal;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Shard[] shards;
+
+    @Autowired
+    public StockReservationEngine(ProductRepository productRepository, StockJournal stockJournal,
+                                  PlatformTransactionManager transactionManager,
+                                  @Value("${orderup.stock.in-memory.enabled:false}") boolean enabled,
+                                  @Value("${orderup.stock.in-memory.shards:16}") int shardCount) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("shardCount must be positive");
+        }
+        this.productRepository = productRepository;
+        this.stockJournal = stockJournal;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Rebuilds counters from the {@link StockJournal} after a restart. Products are read from the
+     * table in batches; units the journal counts as sold but the table does not were committed and
+     * never flushed, so they come back as pending and are flushed right away. A negative gap (units
+     * flushed for orders that never committed) is given back the same way.
+     */
+    @PostConstruct
+    public void recover() {
+        if (!enabled || !stockJournal.isEnabled() || stockJournal.recovered().isEmpty()) {
+            return;
+        }
+        Map<Integer, Long> journaled = stockJournal.recovered();
+        List<Integer> productIds = new ArrayList<>(journaled.keySet());
+        Set<Integer> missing = new HashSet<>(productIds);
+        int corrected = 0;
+        for (int from = 0; from < productIds.size(); from += RECOVERY_BATCH) {
+            List<Integer> batch = productIds.subList(from, Math.min(productIds.size(), from + RECOVERY_BATCH));
+            List<StockLevel> levels = transactionTemplate.execute(
+                    status -> productRepository.findStockLevelsById(batch));
+            for (StockLevel level : levels) {
+                int productId = level.getProductId();
+                int unflushed = (int) (journaled.get(productId) - level.getUnitsSold());
+                shard(productId).counters.put(productId, new StockCounter(level.getStock() - unflushed, unflushed));
+                missing.remove(productId);
+                if (unflushed != 0) {
+                    logger.warn("Recovered {} unflushed units of product {} from the stock journal", unflushed, productId);
+                    corrected++;
+                }
+            }
+        }
+        missing.forEach(stockJournal::forget);
+        logger.info("Loaded {} stock counters from the journal, {} needed recovery", productIds.size() - missing.size(),
+                corrected);
+        flush();
+    }
+
+    /**
+     * Reserves {@code quantity} units of a product, loading its counter from the database on first use.
+     *
+     * @return false if not enough units are available
+     * @throws ProductNotFoundException if the product does not exist
+     */
+    public boolean tryReserve(int productId, int quantity) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity must be positive");
+        }
+        AtomicLong counter = counter(productId).state;
+        while (true) {
+            long state = counter.get();
+            int available = available(state);
+            if (available < quantity) {
+                return false;
+            }
+            if (counter.compareAndSet(state, pack(available - quantity, pending(state) + quantity))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Reserves several products all or nothing.
+     *
+     * @return false if any product is short; nothing stays reserved in that case
+     */
+    public boolean tryReserveAll(Map<Integer, Integer> quantities) {
+        Map<Integer, Integer> reserved = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<Integer, Integer> item : quantities.entrySet()) {
+                if (!tryReserve(item.getKey(), item.getValue())) {
+                    reserved.forEach(this::release);
+                    return false;
+                }
+                reserved.put(item.getKey(), item.getValue());
+            }
+        } catch (RuntimeException e) {
+            reserved.forEach(this::release);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back units taken by {@link #tryReserve} whose order was never committed.
+     */
+    public void release(int productId, int quantity) {
+        StockCounter counter = shard(productId).counters.get(productId);
+        if (counter == null) {
+            return;
+        }
+        while (true) {
+            long state = counter.state.get();
+            if (counter.state.compareAndSet(state, pack(available(state) + quantity, pending(state) - quantity))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Lets the flush write units whose order has committed.
+     */
+    private void committed(int productId, int quantity) {
+        StockCounter counter = shard(productId).counters.get(productId);
+        if (counter != null) {
+            counter.committed.addAndGet(quantity);
+        }
+    }
+
+    /**
+     * Ties the reservation to the surrounding transaction: it is journaled just before the
+     * transaction commits, becomes flushable once it has committed and is released if the
+     * transaction does not commit. Outside a transaction it counts as committed straight away.
+     */
+    public void bindToTransaction(int productId, int quantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            if (stockJournal.isEnabled()) {
+                stockJournal.append(productId, quantity);
+            }
+            committed(productId, quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean journaled;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                if (stockJournal.isEnabled()) {
+                    stockJournal.append(productId, quantity);
+                    journaled = true;
+                }
+            }
+
+            @Override
+            public void afterCommit() {
+                committed(productId, quantity);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    release(productId, quantity);
+                    if (journaled) {
+                        stockJournal.append(productId, -quantity);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Journals units that a database update in the surrounding transaction takes back off the units
+     * sold, such as released holds, just before that transaction commits. Without it the journal
+     * would count them as sold and recovery would take them off the stock again. Call it from the
+     * update passed to {@link #restore}, so it happens in the same step as the update.
+     */
+    public void bindReturnToTransaction(int productId, int quantity) {
+        if (!stockJournal.isEnabled()) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            journalReturn(productId, quantity);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean journaled;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                journaled = journalReturn(productId, quantity);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED && journaled) {
+                    stockJournal.append(productId, quantity);
+                }
+            }
+        });
+    }
+
+    /**
+     * A product this node has not loaded is not journaled; it is tracked from the table once loaded.
+     */
+    private boolean journalReturn(int productId, int quantity) {
+        if (shard(productId).counters.get(productId) == null) {
+            return false;
+        }
+        stockJournal.append(productId, -quantity);
+        return true;
+    }
+
+    /**
+     * Units the engine will still admit for a product, or empty if its counter is not loaded.
+     */
+    public Optional<Integer> availableStock(int productId) {
+        StockCounter counter = shard(productId).counters.get(productId);
+        return counter == null ? Optional.empty() : Optional.of(available(counter.state.get()));
+    }
+
+    /**
+     * Applies a restock to the database and the in-memory counter as one step, so reconciliation
+     * never sees the database change without the matching counter change.
+     */
+    public ProductEntity restock(int productId, int quantity, Supplier<ProductEntity> databaseUpdate) {
+        Shard shard = shard(productId);
+        shard.lock.lock();
+        try {
+            flush(productId, shard.counters.get(productId));
+            ProductEntity product = databaseUpdate.get();
+            addAvailable(shard.counters.get(productId), quantity);
+            return product;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link #restock}, for a database update that works out for itself how many units it
+     * puts back, such as releasing holds that may already be gone.
+     *
+     * @return the units put back
+     */
+    public int restore(int productId, IntSupplier databaseUpdate) {
+        Shard shard = shard(productId);
+        shard.lock.lock();
+        try {
+            flush(productId, shard.counters.get(productId));
+            int quantity = databaseUpdate.getAsInt();
+            addAvailable(shard.counters.get(productId), quantity);
+            return quantity;
+        } finally {
+            shard.lock.unlock();
+        }
+    }
+
+    private static void addAvailable(StockCounter counter, int quantity) {
+        if (counter == null) {
+            return;
+        }
+        while (true) {
+            long state = counter.state.get();
+            if (counter.state.compareAndSet(state, pack(available(state) + quantity, pending(state)))) {
+                return;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orderup.stock.in-memory.flush-interval-ms:100}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                shard.counters.forEach(this::flush);
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Compares every loaded counter with the {@code products} table and corrects drift caused by
+     * writes that bypassed the engine.
+     */
+    @Scheduled(fixedDelayString = "${orderup.stock.in-memory.reconcile-interval-ms:30000}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        for (Shard shard : shards) {
+            shard.lock.lock();
+            try {
+                for (Map.Entry<Integer, StockCounter> entry : shard.counters.entrySet()) {
+                    reconcile(shard, entry.getKey(), entry.getValue());
+                }
+            } finally {
+                shard.lock.unlock();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Writes the committed units to the table and takes them out of the pending half. Runs under
+     * the shard lock, so reconciliation never sees one change without the other.
+     */
+    private void flush(int productId, StockCounter counter) {
+        if (counter == null) {
+            return;
+        }
+        int drained = counter.committed.getAndSet(0);
+        if (drained == 0) {
+            return;
+        }
+        boolean persisted = false;
+        try {
+            persisted = productRepository.decrementStock(productId, drained) == 1;
+            if (!persisted) {
+                logger.warn("Could not persist {} reserved units for product {}; will reconcile", drained, productId);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to persist reserved units for product {}: {}", productId, e.getMessage());
+        }
+        if (!persisted) {
+            counter.committed.addAndGet(drained);
+            return;
+        }
+        while (true) {
+            long state = counter.state.get();
+            if (counter.state.compareAndSet(state, pack(available(state), pending(state) - drained))) {
+                return;
+            }
+        }
+    }
+
+    private void reconcile(Shard shard, int productId, StockCounter counter) {
+        flush(productId, counter);
+        Optional<Integer> stock = transactionTemplate.execute(status -> productRepository.findStockById(productId));
+        if (stock.isEmpty()) {
+            logger.warn("Product {} no longer exists; dropping its stock counter", productId);
+            shard.counters.remove(productId);
+            if (stockJournal.isEnabled()) {
+                stockJournal.forget(productId);
+            }
+            return;
+        }
+        while (true) {
+            long state = counter.state.get();
+            int drift = stock.get() - (available(state) + pending(state));
+            if (drift == 0) {
+                return;
+            }
+            if (counter.state.compareAndSet(state, pack(available(state) + drift, pending(state)))) {
+                logger.warn("Corrected in-memory stock of product {} by {}", productId, drift);
+                return;
+            }
+        }
+    }
+
+    /**
+     * The product's counter, loaded from the table on first use. The query runs outside the map,
+     * so it never blocks reservations of other products; when two threads load the same product
+     * the first counter stored wins.
+     */
+    private StockCounter counter(int productId) {
+        Map<Integer, StockCounter> counters = shard(productId).counters;
+        StockCounter counter = counters.get(productId);
+        if (counter != null) {
+            return counter;
+        }
+        if (!stockJournal.isEnabled()) {
+            int stock = transactionTemplate.execute(status -> productRepository.findStockById(productId))
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+            counter = new StockCounter(stock, 0);
+        } else {
+            StockLevel level = transactionTemplate.execute(status -> productRepository.findStockLevelById(productId))
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+            stockJournal.track(productId, level.getUnitsSold());
+            counter = new StockCounter(level.getStock(), 0);
+        }
+        StockCounter loaded = counters.putIfAbsent(productId, counter);
+        return loaded != null ? loaded : counter;
+    }
+
+    private Shard shard(int productId) {
+        return shards[Math.floorMod(productId, shards.length)];
+    }
+
+    private static long pack(int available, int pending) {
+        return ((long) available << 32) | (pending & 0xFFFFFFFFL);
+    }
+
+    private static int available(long state) {
+        return (int) (state >> 32);
+    }
+
+    private static int pending(long state) {
+        return (int) state;
+    }
+
+    /**
+     * The packed available and pending halves, and how many of the pending units belong to
+     * committed orders and may be flushed.
+     */
+    private static final class StockCounter {
+        private final AtomicLong state;
+        private final AtomicInteger committed;
+
+        private StockCounter(int available, int committedPending) {
+            this.state = new AtomicLong(pack(available, committedPending));
+            this.committed = new AtomicInteger(committedPending);
+        }
+    }
+
+    private static final class Shard {
+        private final ConcurrentHashMap<Integer, StockCounter> counters = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+    }
+}
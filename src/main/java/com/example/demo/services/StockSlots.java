@@ -0,0 +1,360 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.StockLevel;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.ProductStockSlotEntity;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.ProductStockSlotRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Reserves stock with conditional UPDATEs, spreading hot products over several rows.
+ *
+ * A product split into K slots keeps its stock in K {@code product_stock_slots} rows, so up to K
+ * orders for it hold row locks at once instead of queueing on the one {@code products} row. Each
+ * order tries the slot with the fewest transactions in flight from this node, starting from a
+ * random slot. If that slot is short it takes what it needs from the slots above it, then from
+ * the product row, which keeps restocks and any remainder; carts and groups start from the lowest
+ * slot. Every
+ * {@code rebalance-interval-ms} slots whose stock has drifted apart by more than {@code skew} of an
+ * even share, or whose product row holds stock, are evened out.
+ *
+ * Catalog and sales queries add up the slots, so readers see one figure. Products are slotted
+ * with {@link #setSlots}; with slots disabled every reservation goes to the product row.
+ */
+@Service
+public class StockSlots {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockSlots.class);
+
+    private final ProductRepository productRepository;
+    private final ProductStockSlotRepository slotRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxSlots;
+    private final double skew;
+    private final ConcurrentHashMap<Integer, SlotState> slotted = new ConcurrentHashMap<>();
+    private final Counter rebalances;
+    private final Counter fallThroughs;
+
+    @Autowired
+    public StockSlots(ProductRepository productRepository, ProductStockSlotRepository slotRepository,
+                      PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+                      @Value("${orderup.stock.in-memory.enabled:false}") boolean engineEnabled,
+                      @Value("${orderup.stock.slots.enabled:false}") boolean enabled,
+                      @Value("${orderup.stock.slots.max-slots:64}") int maxSlots,
+                      @Value("${orderup.stock.slots.skew:0.5}") double skew) {
+        this.productRepository = productRepository;
+        this.slotRepository = slotRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // The in-memory engine takes orders off the product row already.
+        this.enabled = enabled && !engineEnabled;
+        this.maxSlots = maxSlots;
+        this.skew = skew;
+        this.rebalances = Counter.builder("orderup.stock.slots.rebalances")
+                .description("Slotted products whose stock was spread evenly again")
+                .register(meterRegistry);
+        this.fallThroughs = Counter.builder("orderup.stock.slots.fall-throughs")
+                .description("Reservations the chosen slot could not fill on its own")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isSlotted(int productId) {
+        return enabled && slotted.containsKey(productId);
+    }
+
+    /**
+     * Takes exactly {@code quantity} units. On {@code false} some units may already have been
+     * taken, and the caller must roll back its transaction.
+     */
+    public boolean reserve(int productId, int quantity) {
+        if (!enabled) {
+            return productRepository.decrementStock(productId, quantity) == 1;
+        }
+        return reserveUpTo(productId, quantity) == quantity;
+    }
+
+    /**
+     * Takes up to {@code quantity} units, as many as are left when the full amount is not.
+     *
+     * Locks are always taken in slot order and then on the product row, the order
+     * {@link #spread} takes them too. A single unit goes to the chosen slot and, if that is short,
+     * to the slots above it; larger amounts start from the lowest slot. Stock left in slots below
+     * the chosen one is moved up by the rebalancer rather than taken out of order.
+     *
+     * @return the units taken
+     */
+    public int reserveUpTo(int productId, int quantity) {
+        SlotState state = enabled ? slotted.get(productId) : null;
+        if (state == null) {
+            if (productRepository.decrementStock(productId, quantity) == 1) {
+                return quantity;
+            }
+            if (enabled) {
+                discover(productId);
+            }
+            // The product row is locked now, so slots found here are left to the next order.
+            int left = productRepository.findStockById(productId).orElse(0);
+            return reserveFromRow(productId, Math.min(quantity - 1, left));
+        }
+        int chosen = -1;
+        if (quantity == 1) {
+            chosen = state.choose();
+            state.enter(chosen);
+            if (slotRepository.decrementStock(productId, chosen, quantity) == 1) {
+                return quantity;
+            }
+            state.markEmpty(chosen);
+            fallThroughs.increment();
+        }
+        int granted = 0;
+        for (ProductStockSlotEntity slot : slotRepository.findInStock(productId)) {
+            if (slot.getSlot() <= chosen) {
+                continue;
+            }
+            int wanted = Math.min(quantity - granted, slot.getStock());
+            if (slotRepository.decrementStock(productId, slot.getSlot(), wanted) == 1) {
+                granted += wanted;
+            }
+            if (granted == quantity) {
+                return granted;
+            }
+        }
+        return granted + reserveFromRow(productId, quantity - granted);
+    }
+
+    private int reserveFromRow(int productId, int wanted) {
+        while (wanted > 0) {
+            if (productRepository.decrementStock(productId, wanted) == 1) {
+                return wanted;
+            }
+            wanted = Math.min(wanted - 1, productRepository.findStockById(productId).orElse(0));
+        }
+        return 0;
+    }
+
+    /**
+     * Picks up a product another node slotted, without locking its slots.
+     */
+    private void discover(int productId) {
+        int slots = (int) slotRepository.countByProductId(productId);
+        if (slots > 1) {
+            slotted.putIfAbsent(productId, new SlotState(slots));
+        }
+    }
+
+    /**
+     * Splits a product's stock evenly over {@code slots} rows, or with 1 merges it back into the
+     * product row. Units sold from removed slots are added to the product's counter.
+     */
+    public void setSlots(int productId, int slots) {
+        if (!enabled) {
+            throw new InvalidRequestException("Stock slots are not enabled");
+        }
+        if (slots < 1 || slots > maxSlots) {
+            throw new InvalidRequestException("Slot count must be between 1 and " + maxSlots);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            List<ProductStockSlotEntity> current = slotRepository.findAllForUpdate(productId);
+            ProductEntity product = productRepository.findForUpdateById(productId)
+                    .orElseThrow(() -> new ProductNotFoundException("Product not found"));
+            int stock = product.getStock();
+            long unitsSold = 0;
+            for (ProductStockSlotEntity slot : current) {
+                stock += slot.getStock();
+                unitsSold += slot.getUnitsSold();
+            }
+            slotRepository.deleteByProduct(productId);
+            if (slots == 1) {
+                productRepository.replaceStock(productId, stock, unitsSold);
+                return;
+            }
+            productRepository.replaceStock(productId, 0, unitsSold);
+            List<ProductStockSlotEntity> created = new ArrayList<>(slots);
+            for (int slot = 0; slot < slots; slot++) {
+                created.add(new ProductStockSlotEntity(productId, slot, share(stock, slots, slot)));
+            }
+            slotRepository.saveAll(created);
+        });
+        if (slots == 1) {
+            slotted.remove(productId);
+        } else {
+            slotted.put(productId, new SlotState(slots));
+        }
+    }
+
+    /**
+     * Reloads which products are slotted and evens out any whose slots have drifted apart.
+     */
+    @Scheduled(fixedDelayString = "${orderup.stock.slots.rebalance-interval-ms:1000}")
+    public void rebalance() {
+        if (!enabled) {
+            return;
+        }
+        // Read-write transactions keep these reads on the primary when read routing is on.
+        Map<Integer, List<ProductStockSlotEntity>> slotsByProduct = new LinkedHashMap<>();
+        for (ProductStockSlotEntity slot : transactionTemplate.execute(status -> slotRepository.findAllSlots())) {
+            slotsByProduct.computeIfAbsent(slot.getProductId(), id -> new ArrayList<>()).add(slot);
+        }
+        slotted.keySet().retainAll(slotsByProduct.keySet());
+        slotsByProduct.forEach((productId, slots) -> {
+            SlotState state = slotted.get(productId);
+            if (state == null || state.size() != slots.size()) {
+                slotted.put(productId, new SlotState(slots.size()));
+            }
+        });
+        if (slotsByProduct.isEmpty()) {
+            return;
+        }
+        Map<Integer, Integer> remainders = new HashMap<>();
+        List<StockLevel> levels = transactionTemplate.execute(
+                status -> productRepository.findStockLevelsById(slotsByProduct.keySet()));
+        for (StockLevel level : levels) {
+            remainders.put(level.getProductId(), level.getStock());
+        }
+        slotsByProduct.forEach((productId, slots) -> {
+            if (isSkewed(slots, remainders.getOrDefault(productId, 0))) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> spread(productId));
+                    rebalances.increment();
+                } catch (RuntimeException e) {
+                    logger.warn("Could not rebalance stock slots of product {}: {}", productId, e.getMessage());
+                }
+            }
+        });
+    }
+
+    boolean isSkewed(List<ProductStockSlotEntity> slots, int remainder) {
+        if (remainder > 0) {
+            return true;
+        }
+        int total = 0;
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (ProductStockSlotEntity slot : slots) {
+            total += slot.getStock();
+            min = Math.min(min, slot.getStock());
+            max = Math.max(max, slot.getStock());
+        }
+        return max - min > Math.max(1, skew * total / slots.size());
+    }
+
+    /**
+     * Locks every slot in slot order and then the product row, and spreads all of the stock evenly
+     * over the slots. Orders never lock a lower slot after a higher one, or a slot after the product
+     * row, so they queue behind this instead of deadlocking with it.
+     */
+    private void spread(int productId) {
+        List<ProductStockSlotEntity> slots = slotRepository.findAllForUpdate(productId);
+        if (slots.isEmpty()) {
+            return;
+        }
+        int stock = slots.stream().mapToInt(ProductStockSlotEntity::getStock).sum();
+        int remainder = productRepository.findForUpdateById(productId).map(ProductEntity::getStock).orElse(0);
+        if (remainder > 0) {
+            productRepository.replaceStock(productId, 0, 0);
+            stock += remainder;
+        }
+        for (int i = 0; i < slots.size(); i++) {
+            slots.get(i).setStock(share(stock, slots.size(), i));
+        }
+        SlotState state = slotted.get(productId);
+        if (state != null) {
+            state.clearEmpty();
+        }
+    }
+
+    private static int share(int stock, int slots, int slot) {
+        return stock / slots + (slot < stock % slots ? 1 : 0);
+    }
+
+    /**
+     * This node's view of one slotted product: how many of its transactions hold each slot's lock,
+     * and which slots came up short since the last rebalance.
+     */
+    private static final class SlotState {
+        private final AtomicIntegerArray inFlight;
+        private final AtomicIntegerArray empty;
+
+        SlotState(int slots) {
+            this.inFlight = new AtomicIntegerArray(slots);
+            this.empty = new AtomicIntegerArray(slots);
+        }
+
+        int size() {
+            return inFlight.length();
+        }
+
+        int choose() {
+            int slots = inFlight.length();
+            int start = ThreadLocalRandom.current().nextInt(slots);
+            int best = start;
+            for (int i = 0; i < slots; i++) {
+                int slot = (start + i) % slots;
+                if (better(slot, best)) {
+                    best = slot;
+                }
+            }
+            return best;
+        }
+
+        private boolean better(int slot, int best) {
+            if (empty.get(slot) != empty.get(best)) {
+                return empty.get(slot) == 0;
+            }
+            return inFlight.get(slot) < inFlight.get(best);
+        }
+
+        /**
+         * Counts the slot as busy until the transaction that locks it completes.
+         */
+        void enter(int slot) {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                return;
+            }
+            inFlight.incrementAndGet(slot);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    inFlight.decrementAndGet(slot);
+                }
+            });
+        }
+
+        void markEmpty(int slot) {
+            empty.set(slot, 1);
+        }
+
+        void clearEmpty() {
+            for (int i = 0; i < empty.length(); i++) {
+                empty.set(i, 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.demo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel. Time is cut into ticks of {@code tickNanos}, and a timeout due at tick
+ * {@code t} goes into bucket {@code t mod wheelSize}. Each {@link #advance} only visits the
+ * buckets of the ticks that have passed, so the cost of expiry is proportional to what is due
+ * plus the timeouts sharing those buckets, not to everything outstanding. Timeouts more than one
+ * revolution away stay in their bucket until their own tick comes round.
+ *
+ * {@link #schedule} and {@link Timeout#cancel} are O(1) and safe from any thread: new timeouts
+ * wait in a queue that {@link #advance} moves into buckets, and cancelled ones are dropped when
+ * their bucket is next visited. Only one thread may call {@link #advance}. A timeout never fires
+ * early and fires at most one tick after its deadline, plus however late {@code advance} runs.
+ */
+public class TimingWheel<T> {
+
+    private final long tickNanos;
+    private final long origin;
+    private final int mask;
+    private final List<Timeout<T>>[] buckets;
+    private final Queue<Timeout<T>> added = new ConcurrentLinkedQueue<>();
+    private long nextTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickNanos, int wheelSize, long nowNanos) {
+        if (tickNanos <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = Math.max(size, 1);
+        this.tickNanos = tickNanos;
+        this.origin = nowNanos;
+        this.mask = size - 1;
+        this.buckets = new List[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayList<>();
+        }
+    }
+
+    public int wheelSize() {
+        return buckets.length;
+    }
+
+    /**
+     * Schedules {@code value} to be handed to {@link #advance}'s consumer once {@code deadlineNanos}
+     * (on the {@link System#nanoTime()} clock) has passed.
+     */
+    public Timeout<T> schedule(T value, long deadlineNanos) {
+        Timeout<T> timeout = new Timeout<>(value, deadlineNanos);
+        added.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Hands every uncancelled timeout due by {@code nowNanos} to {@code expired}.
+     *
+     * @return the number of timeouts expired
+     */
+    public int advance(long nowNanos, Consumer<T> expired) {
+        long lastTick = Math.floorDiv(nowNanos - origin, tickNanos);
+        int count = 0;
+        Timeout<T> timeout;
+        while ((timeout = added.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            timeout.tick = ceilDiv(timeout.deadlineNanos - origin, tickNanos);
+            if (timeout.tick < nextTick) {
+                // Its bucket has already been passed.
+                expired.accept(timeout.value);
+                count++;
+            } else {
+                buckets[(int) (timeout.tick & mask)].add(timeout);
+            }
+        }
+        if (lastTick < nextTick) {
+            return count;
+        }
+        // After a stall longer than one revolution, every bucket is visited once.
+        long end = Math.min(lastTick, nextTick + mask);
+        for (long tick = nextTick; tick <= end; tick++) {
+            count += expire(buckets[(int) (tick & mask)], lastTick, expired);
+        }
+        nextTick = lastTick + 1;
+        return count;
+    }
+
+    private int expire(List<Timeout<T>> bucket, long lastTick, Consumer<T> expired) {
+        int kept = 0;
+        int count = 0;
+        for (int i = 0; i < bucket.size(); i++) {
+            Timeout<T> timeout = bucket.get(i);
+            if (timeout.cancelled) {
+                continue;
+            }
+            if (timeout.tick <= lastTick) {
+                expired.accept(timeout.value);
+                count++;
+            } else {
+                bucket.set(kept++, timeout);
+            }
+        }
+        bucket.subList(kept, bucket.size()).clear();
+        return count;
+    }
+
+    private static long ceilDiv(long x, long y) {
+        return -Math.floorDiv(-x, y);
+    }
+
+    public static final class Timeout<T> {
+        private final T value;
+        private final long deadlineNanos;
+        private volatile boolean cancelled;
+        private long tick;
+
+        private Timeout(T value, long deadlineNanos) {
+            this.value = value;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        public T value() {
+            return value;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo;
+
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.ProductRepository;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the application with a burst of contended orders and catalog reads over HTTP on the
+ * {@code virtual} profile and asserts that nothing oversells and that no virtual thread gets pinned
+ * to its carrier by application code. The {@code benchmark} run also boots it on Tomcat's platform
+ * thread pool and logs throughput and p99 for both.
+ */
+public class VirtualThreadLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    private static final int PRODUCTS = 10;
+    private static final int STOCK_PER_PRODUCT = 150;
+
+    @Test
+    void virtualThreads_placeOrdersWithoutPinning() throws Exception {
+        List<RecordedEvent> pinned = new ArrayList<>();
+        Result virtual = recordingPinning(pinned, () -> run(true, 400, 100));
+
+        assertConsistent(virtual);
+        assertNoPinningInApplication(pinned);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void virtualThreads_matchPlatformThreadsWithoutPinning() throws Exception {
+        Result platform = run(false, 2000, 500);
+        List<RecordedEvent> pinned = new ArrayList<>();
+        Result virtual = recordingPinning(pinned, () -> run(true, 2000, 500));
+
+        logger.info("platform threads: {} req/s, p99 {} ms; virtual threads: {} req/s, p99 {} ms; {} pinning events",
+                Math.round(platform.throughput()), platform.p99Millis(), Math.round(virtual.throughput()),
+                virtual.p99Millis(), pinned.size());
+
+        assertConsistent(platform);
+        assertConsistent(virtual);
+        assertNoPinningInApplication(pinned);
+    }
+
+    private static Result recordingPinning(List<RecordedEvent> pinned, Callable<Result> run) throws Exception {
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", event -> {
+                synchronized (pinned) {
+                    pinned.add(event);
+                }
+            });
+            recording.startAsync();
+            Result result = run.call();
+            recording.stop();
+            return result;
+        }
+    }
+
+    private static void assertConsistent(Result result) {
+        assertEquals(0, result.failures());
+        assertEquals(PRODUCTS * STOCK_PER_PRODUCT, result.ordersPlaced() + result.remainingStock());
+    }
+
+    private static void assertNoPinningInApplication(List<RecordedEvent> pinned) {
+        List<RecordedEvent> pinnedInApplication;
+        synchronized (pinned) {
+            pinnedInApplication = pinned.stream().filter(VirtualThreadLoadTest::inApplicationCode).toList();
+        }
+        assertTrue(pinnedInApplication.isEmpty(), "pinned: " + pinnedInApplication);
+    }
+
+    private static boolean inApplicationCode(RecordedEvent event) {
+        return event.getStackTrace() != null && event.getStackTrace().getFrames().stream()
+                .map(RecordedFrame::getMethod)
+                .anyMatch(method -> method.getType().getName().startsWith("com.example.demo"));
+    }
+
+    private Result run(boolean virtualThreads, int requests, int concurrency) throws Exception {
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(DemoApplication.class)
+                .properties("server.port=0",
+                        "server.tomcat.threads.max=200",
+                        "spring.datasource.hikari.maximum-pool-size=30",
+                        "logging.level.com.example.demo=OFF",
+                        "logging.level.com.example.demo.VirtualThreadLoadTest=INFO");
+        if (virtualThreads) {
+            builder.profiles("virtual");
+        }
+        try (ConfigurableApplicationContext context = builder.run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ProductRepository productRepository = context.getBean(ProductRepository.class);
+            List<Integer> productIds = new ArrayList<>();
+            for (int i = 0; i < PRODUCTS; i++) {
+                ProductEntity product = new ProductEntity();
+                product.setProductName("Load " + i);
+                product.setStock(STOCK_PER_PRODUCT);
+                productIds.add(productRepository.save(product).getProductId());
+            }
+
+            Result result = drive("http://localhost:" + port, productIds, requests, concurrency);
+            int remaining = productRepository.findAllById(productIds).stream().mapToInt(ProductEntity::getStock).sum();
+            return result.withRemainingStock(remaining);
+        }
+    }
+
+    private Result drive(String baseUrl, List<Integer> productIds, int requests, int concurrency)
+            throws InterruptedException {
+        ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+        HttpClient http = HttpClient.newBuilder().executor(clients).connectTimeout(Duration.ofSeconds(10)).build();
+        Semaphore inFlight = new Semaphore(concurrency);
+        CountDownLatch done = new CountDownLatch(requests);
+        ConcurrentLinkedQueue<Long> latencies = new ConcurrentLinkedQueue<>();
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            int productId = productIds.get(i % productIds.size());
+            HttpRequest request = i % 4 == 3
+                    ? HttpRequest.newBuilder(URI.create(baseUrl + "/products?limit=100")).GET().build()
+                    : HttpRequest.newBuilder(URI.create(baseUrl + "/orders"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(
+                                    "{\"productId\":" + productId + ",\"customerName\":\"Load\"}"))
+                            .build();
+            inFlight.acquire();
+            clients.execute(() -> {
+                long sent = System.nanoTime();
+                try {
+                    HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() == 200 && request.method().equals("POST")) {
+                        placed.incrementAndGet();
+                    } else if (response.statusCode() != 200 && response.statusCode() != 400) {
+                        failures.incrementAndGet();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latencies.add(System.nanoTime() - sent);
+                    inFlight.release();
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(120, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+
+        long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(sorted);
+        long p99 = sorted[(int) Math.ceil(sorted.length * 0.99) - 1];
+        return new Result(requests / (elapsed / 1e9), TimeUnit.NANOSECONDS.toMillis(p99), placed.get(), failures.get(), 0);
+    }
+
+    private record Result(double throughput, long p99Millis, int ordersPlaced, int failures, int remainingStock) {
+        Result withRemainingStock(int remaining) {
+            return new Result(throughput, p99Millis, ordersPlaced, failures, remaining);
+        }
+    }
+}
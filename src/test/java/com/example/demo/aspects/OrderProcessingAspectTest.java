@@ -3,10 +3,15 @@ package com.example.demo.aspects;
 import com.example.demo.dtos.OrderRequest;
 import com.example.demo.entity.OrderEntity;
 import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.exceptions.ProductNotFoundException;
 import com.example.demo.repository.ProductRepository;
 import com.example.demo.repository.OrderRepository;
 import com.example.demo.services.OrderService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -18,6 +23,8 @@ import org.springframework.boot.test.system.CapturedOutput;
 import org.springframework.boot.test.system.OutputCaptureExtension;
 import org.springframework.test.annotation.DirtiesContext;
 
+import java.util.Arrays;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -34,6 +41,9 @@ public class OrderProcessingAspectTest {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     private ProductEntity product;
 
     @BeforeEach
@@ -43,23 +53,49 @@ public class OrderProcessingAspectTest {
 
         product = new ProductEntity();
         product.setProductName("AspectTestProduct");
-        product.setStock(10);
+        product.setStock(1);
 
         productRepository.save(product);
     }
 
-    @Test
-    void aspectLogsAreCaptured_whenPlaceOrderCalled(CapturedOutput output) {
-
+    private OrderRequest request(int productId) {
         OrderRequest request = new OrderRequest();
-        request.setProductId(product.getProductId());
+        request.setProductId(productId);
         request.setCustomerName("AspectUser");
+        return request;
+    }
 
-        OrderEntity order = orderService.placeOrder(request);
+    private Timer timer(String outcome) {
+        return meterRegistry.get(OrderProcessingAspect.TIMER_NAME).tag("outcome", outcome).timer();
+    }
+
+    @Test
+    void placeOrder_recordsLatencyByOutcome() {
+        OrderEntity order = orderService.placeOrder(request(product.getProductId()));
+        assertThrows(OutOfStockException.class, () -> orderService.placeOrder(request(product.getProductId())));
+        assertThrows(ProductNotFoundException.class, () -> orderService.placeOrder(request(999999)));
 
         assertNotNull(order);
-        assertTrue(output.getOut().contains("Started processing Order"));
-        assertTrue(output.getOut().contains("Order processed in"));
+        assertEquals(1, timer("success").count());
+        assertEquals(1, timer("out_of_stock").count());
+        assertEquals(1, timer("not_found").count());
+        assertEquals(0, timer("error").count());
+        assertTrue(timer("success").totalTime(java.util.concurrent.TimeUnit.NANOSECONDS) > 0);
+
+        double[] percentiles = Arrays.stream(timer("success").takeSnapshot().percentileValues())
+                .mapToDouble(ValueAtPercentile::percentile).toArray();
+        assertArrayEquals(new double[]{0.5, 0.99, 0.999}, percentiles);
+        assertEquals(3, meterRegistry.find(OrderProcessingAspect.TIMER_NAME + ".percentile")
+                .tag("outcome", "success").gauges().size());
+    }
+
+    @Test
+    void placeOrder_doesNotLogPerCallAtInfo(CapturedOutput output) {
+        orderService.placeOrder(request(product.getProductId()));
+        assertThrows(OutOfStockException.class, () -> orderService.placeOrder(request(product.getProductId())));
+
+        assertFalse(output.getOut().contains("Started processing Order"));
+        assertFalse(output.getOut().contains("AspectUser"));
     }
 
     @Test
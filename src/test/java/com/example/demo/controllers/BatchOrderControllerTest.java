@@ -0,0 +1,121 @@
+package com.example.demo.controllers;
+
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class BatchOrderControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private ProductEntity first;
+    private ProductEntity second;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        first = productRepository.saveAndFlush(makeProduct("Cart Product A", 100));
+        second = productRepository.saveAndFlush(makeProduct("Cart Product B", 100));
+    }
+
+    private ProductEntity makeProduct(String name, int stock) {
+        ProductEntity product = new ProductEntity();
+        product.setProductName(name);
+        product.setStock(stock);
+        return product;
+    }
+
+    private BatchOrderRequest cart(String customerName, ProductEntity... products) {
+        List<OrderLineItem> items = new ArrayList<>();
+        for (ProductEntity product : products) {
+            OrderLineItem item = new OrderLineItem();
+            item.setProductId(product.getProductId());
+            item.setQuantity(2);
+            items.add(item);
+        }
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName(customerName);
+        request.setItems(items);
+        return request;
+    }
+
+    @Test
+    void testPlaceOrders_insertsAllLineItems() {
+        ResponseEntity<OrderEntity[]> response = restTemplate.postForEntity("/orders/batch",
+                cart("Erin", first, second), OrderEntity[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(4, response.getBody().length);
+        assertTrue(response.getBody()[0].getOrderId() > 0);
+        assertEquals(4, orderRepository.count());
+        assertEquals(98, productRepository.findById(first.getProductId()).orElseThrow().getStock());
+        assertEquals(98, productRepository.findById(second.getProductId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void testPlaceOrders_outOfStock_reservesNothing() {
+        second.setStock(1);
+        productRepository.saveAndFlush(second);
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/orders/batch",
+                cart("Frank", first, second), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(0, orderRepository.count());
+        assertEquals(100, productRepository.findById(first.getProductId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void testPlaceOrders_oppositeCartOrder_noDeadlock() throws InterruptedException {
+        int carts = 40;
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch done = new CountDownLatch(carts);
+        for (int i = 0; i < carts; i++) {
+            BatchOrderRequest request = i % 2 == 0
+                    ? cart("Forward" + i, first, second)
+                    : cart("Reverse" + i, second, first);
+            executor.execute(() -> {
+                try {
+                    restTemplate.postForEntity("/orders/batch", request, String.class);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(carts * 4, orderRepository.count());
+        assertEquals(20, productRepository.findById(first.getProductId()).orElseThrow().getStock());
+        assertEquals(20, productRepository.findById(second.getProductId()).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.demo.controllers;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.IdempotencyKeyEntity;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.IdempotencyKeyRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.services.IdempotencyIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class IdempotentOrderTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        idempotencyKeyRepository.deleteAll();
+
+        product = new ProductEntity();
+        product.setProductName("RetriedProduct");
+        product.setStock(10);
+        product = productRepository.save(product);
+    }
+
+    private OrderRequest request(String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    private <T> ResponseEntity<T> post(String key, OrderRequest request, Class<T> type) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Idempotency-Key", key);
+        return restTemplate.postForEntity("/orders", new HttpEntity<>(request, headers), type);
+    }
+
+    private int stock() {
+        return productRepository.findById(product.getProductId()).orElseThrow().getStock();
+    }
+
+    @Test
+    void retriesWithSameKey_placeOneOrder() {
+        ResponseEntity<OrderEntity> first = post("key-1", request("Alice"), OrderEntity.class);
+        ResponseEntity<OrderEntity> retry = post("key-1", request("Alice"), OrderEntity.class);
+        ResponseEntity<OrderEntity> other = post("key-2", request("Alice"), OrderEntity.class);
+
+        assertEquals(HttpStatus.OK, retry.getStatusCode());
+        assertEquals(first.getBody().getOrderId(), retry.getBody().getOrderId());
+        assertNotEquals(first.getBody().getOrderId(), other.getBody().getOrderId());
+        assertEquals(2, orderRepository.count());
+        assertEquals(8, stock());
+    }
+
+    @Test
+    void concurrentRetries_placeOneOrder() throws InterruptedException {
+        int retries = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(retries);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(retries);
+        Set<Integer> orderIds = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < retries; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    orderIds.add(post("storm", request("Bob"), OrderEntity.class).getBody().getOrderId());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(1, orderIds.size());
+        assertEquals(1, orderRepository.count());
+        assertEquals(9, stock());
+    }
+
+    @Test
+    void sameKeyForDifferentOrder_isRejected() {
+        post("key-3", request("Carol"), OrderEntity.class);
+        ResponseEntity<String> reused = post("key-3", request("Mallory"), String.class);
+
+        assertEquals(HttpStatus.CONFLICT, reused.getStatusCode());
+        assertEquals(1, orderRepository.count());
+    }
+
+    @Test
+    void keySeenByAnotherNode_isAnsweredFromTheTable() {
+        OrderEntity original = post("key-4", request("Dave"), OrderEntity.class).getBody();
+        IdempotencyIndex otherNode = new IdempotencyIndex(idempotencyKeyRepository, orderRepository,
+                orderShards, transactionManager, new SimpleMeterRegistry(), 1000, 60000, 30000);
+
+        OrderResponse replayed = otherNode.placeOnce("key-4", request("Dave"),
+                () -> fail("a replayed key must not place the order again"));
+
+        assertEquals(original.getOrderId(), replayed.getOrderId());
+        assertEquals("Dave", replayed.getCustomerName());
+        assertEquals(1, orderRepository.count());
+    }
+
+    @Test
+    void claimLeftByADeadRequest_isTakenOverAfterItsLease() {
+        IdempotencyIndex deadNode = new IdempotencyIndex(idempotencyKeyRepository, orderRepository,
+                orderShards, transactionManager, new SimpleMeterRegistry(), 1000, 60000, 30000);
+        deadNode.placeOnce("key-6", request("Frank"),
+                () -> new OrderResponse(0, "Frank", product.getProductId(), "RetriedProduct", 10));
+        // As if that node died after claiming the key but before linking an order to it.
+        IdempotencyKeyEntity claim = idempotencyKeyRepository.findById("key-6").orElseThrow();
+        claim.setOrderId(null);
+        idempotencyKeyRepository.save(claim);
+
+        assertEquals(HttpStatus.CONFLICT, post("key-6", request("Frank"), String.class).getStatusCode());
+
+        claim.setCreatedAt(LocalDateTime.now().minusMinutes(1));
+        idempotencyKeyRepository.save(claim);
+        ResponseEntity<OrderEntity> retried = post("key-6", request("Frank"), OrderEntity.class);
+
+        assertEquals(HttpStatus.OK, retried.getStatusCode());
+        assertEquals(retried.getBody().getOrderId(),
+                idempotencyKeyRepository.findById("key-6").orElseThrow().getOrderId());
+        assertEquals(1, orderRepository.count());
+        assertEquals(9, stock());
+    }
+
+    @Test
+    void failedOrder_releasesItsKey() {
+        product.setStock(0);
+        productRepository.save(product);
+
+        ResponseEntity<String> soldOut = post("key-5", request("Erin"), String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, soldOut.getStatusCode());
+        assertTrue(idempotencyKeyRepository.findById("key-5").isEmpty());
+    }
+}
@@ -1,11 +1,19 @@
 package com.example.demo.controllers;
 
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
 import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
 import com.example.demo.entity.OrderEntity;
 import com.example.demo.entity.ProductEntity;
 import com.example.demo.exceptions.GlobalExceptionHandler;
+import com.example.demo.exceptions.InvalidRequestException;
 import com.example.demo.exceptions.OutOfStockException;
 import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.dtos.OrderStatusResponse;
+import com.example.demo.exceptions.OrderQueueFullException;
+import com.example.demo.services.IdempotencyIndex;
+import com.example.demo.services.OrderIntake;
 import com.example.demo.services.OrderService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -30,8 +38,15 @@ public class OrderControllerTest {
     @Mock
     private OrderService orderService;
 
+    @Mock
+    private OrderIntake orderIntake;
+
+    @Mock
+    private IdempotencyIndex idempotencyIndex;
+
     @InjectMocks
     private OrderContoller orderController;
+    @Spy
     private ObjectMapper objectMapper = new ObjectMapper();
 
     @BeforeEach
@@ -62,18 +77,89 @@ public class OrderControllerTest {
 
     @Test
     void getOrders_success() throws Exception {
-        OrderEntity o1 = makeOrder("Alice");
-        OrderEntity o2 = makeOrder("Bob");
+        OrderResponse o1 = OrderResponse.from(makeOrder("Alice"));
+        OrderEntity bob = makeOrder("Bob");
+        bob.setOrderId(2);
+        OrderResponse o2 = OrderResponse.from(bob);
 
-        when(orderService.getOrders()).thenReturn(java.util.Arrays.asList(o1, o2));
+        when(orderService.getOrders(0, 100)).thenReturn(java.util.Arrays.asList(o1, o2));
 
         mockMvc.perform(get("/orders"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("X-Next-After-Id", "2"))
                 .andExpect(jsonPath("$[0].customerName").value("Alice"))
                 .andExpect(jsonPath("$[1].customerName").value("Bob"));
 
-        verify(orderService, times(1)).getOrders();
+        verify(orderService, times(1)).getOrders(0, 100);
+    }
+
+    @Test
+    void getOrders_afterCursor_emptyPage() throws Exception {
+        when(orderService.getOrders(2, 50)).thenReturn(java.util.List.of());
+
+        mockMvc.perform(get("/orders").param("afterId", "2").param("limit", "50"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("X-Next-After-Id"))
+                .andExpect(jsonPath("$.length()").value(0));
+
+        verify(orderService, times(1)).getOrders(2, 50);
+    }
+
+    @Test
+    void getOrders_forProduct() throws Exception {
+        OrderEntity order = makeOrder("Alice");
+        order.setOrderId(7);
+        when(orderService.getOrdersForProduct(1, 0, 100)).thenReturn(java.util.List.of(OrderResponse.from(order)));
+
+        mockMvc.perform(get("/orders").param("productId", "1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After-Id", "7"))
+                .andExpect(jsonPath("$[0].customerName").value("Alice"));
+
+        verify(orderService, times(1)).getOrdersForProduct(1, 0, 100);
+        verify(orderService, never()).getOrders(anyInt(), anyInt());
+    }
+
+    @Test
+    void getOrders_forCustomer() throws Exception {
+        OrderEntity order = makeOrder("Alice");
+        order.setOrderId(9);
+        when(orderService.getOrdersForCustomer("Alice", 4, 20)).thenReturn(java.util.List.of(OrderResponse.from(order)));
+
+        mockMvc.perform(get("/orders").param("customer", "Alice").param("afterId", "4").param("limit", "20"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("X-Next-After-Id", "9"))
+                .andExpect(jsonPath("$[0].customerName").value("Alice"));
+
+        verify(orderService, never()).getOrders(anyInt(), anyInt());
+    }
+
+    @Test
+    void getOrders_productAndCustomer_badRequest() throws Exception {
+        mockMvc.perform(get("/orders").param("productId", "1").param("customer", "Alice"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void streamOrders_writesJsonArray() throws Exception {
+        doAnswer(invocation -> {
+            java.util.function.Consumer<OrderResponse> consumer = invocation.getArgument(0);
+            consumer.accept(OrderResponse.from(makeOrder("Alice")));
+            consumer.accept(OrderResponse.from(makeOrder("Bob")));
+            return null;
+        }).when(orderService).streamOrders(any());
+
+        org.springframework.test.web.servlet.MvcResult result = mockMvc.perform(get("/orders/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].customerName").value("Bob"));
     }
 
     @Test
@@ -97,6 +183,30 @@ public class OrderControllerTest {
         verify(orderService, times(1)).placeOrder(any(OrderRequest.class));
     }
 
+    @Test
+    void placeOrder_withIdempotencyKey_goesThroughIndex() throws Exception {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Charlie");
+
+        OrderEntity saved = makeOrder("Charlie");
+        saved.setOrderId(100);
+
+        when(orderService.placeOrder(any(OrderRequest.class))).thenReturn(saved);
+        when(idempotencyIndex.placeOnce(eq("retry-1"), any(OrderRequest.class), any()))
+                .thenAnswer(i -> i.<java.util.function.Supplier<OrderResponse>>getArgument(2).get());
+
+        mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.orderId").value(100));
+
+        verify(idempotencyIndex, times(1)).placeOnce(eq("retry-1"), any(OrderRequest.class), any());
+        verify(orderService, times(1)).placeOrder(any(OrderRequest.class));
+    }
+
     @Test
     void placeOrder_productNotFound() throws Exception {
         OrderRequest request = new OrderRequest();
@@ -150,4 +260,117 @@ public class OrderControllerTest {
 
         verify(orderService, times(1)).placeOrder(any(OrderRequest.class));
     }
+
+    @Test
+    void placeOrders_success() throws Exception {
+        OrderLineItem item = new OrderLineItem();
+        item.setProductId(6);
+        item.setQuantity(2);
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName("Dana");
+        request.setItems(java.util.List.of(item));
+
+        OrderEntity first = makeOrder("Dana");
+        OrderEntity second = makeOrder("Dana");
+        second.setOrderId(2);
+
+        when(orderService.placeOrders(any(BatchOrderRequest.class))).thenReturn(java.util.Arrays.asList(first, second));
+
+        mockMvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].orderId").value(2));
+
+        verify(orderService, times(1)).placeOrders(any(BatchOrderRequest.class));
+    }
+
+    @Test
+    void placeOrders_invalidQuantity() throws Exception {
+        when(orderService.placeOrders(any(BatchOrderRequest.class)))
+                .thenThrow(new InvalidRequestException("Quantity must be positive"));
+
+        mockMvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchOrderRequest())))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Quantity must be positive"));
+    }
+
+    @Test
+    void placeOrders_internalArgumentError_isNotBlamedOnTheRequest() throws Exception {
+        when(orderService.placeOrders(any(BatchOrderRequest.class)))
+                .thenThrow(new IllegalArgumentException("quantity must be positive"));
+
+        mockMvc.perform(post("/orders/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new BatchOrderRequest())))
+                .andExpect(status().isInternalServerError());
+    }
+
+    @Test
+    void placeOrder_asyncIntake_returnsAcceptedWithToken() throws Exception {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Queued");
+
+        when(orderIntake.isEnabled()).thenReturn(true);
+        when(orderIntake.submit(any(OrderRequest.class))).thenReturn(OrderStatusResponse.pending("abc"));
+
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/orders/status/abc"))
+                .andExpect(jsonPath("$.token").value("abc"))
+                .andExpect(jsonPath("$.status").value("PENDING"));
+
+        verify(orderService, never()).placeOrder(any(OrderRequest.class));
+    }
+
+    @Test
+    void placeOrder_asyncIntakeWithIdempotencyKey_isRejected() throws Exception {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Queued");
+
+        when(orderIntake.isEnabled()).thenReturn(true);
+
+        mockMvc.perform(post("/orders")
+                        .header("Idempotency-Key", "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+
+        verify(orderIntake, never()).submit(any(OrderRequest.class));
+        verify(idempotencyIndex, never()).placeOnce(any(), any(), any());
+    }
+
+    @Test
+    void placeOrder_asyncIntakeFull_returnsTooManyRequests() throws Exception {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Queued");
+
+        when(orderIntake.isEnabled()).thenReturn(true);
+        when(orderIntake.submit(any(OrderRequest.class)))
+                .thenThrow(new OrderQueueFullException("Order queue is full, retry later"));
+
+        mockMvc.perform(post("/orders")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("$.message").value("Order queue is full, retry later"));
+    }
+
+    @Test
+    void getOrderStatus_unknownToken_returnsNotFound() throws Exception {
+        when(orderIntake.status("missing")).thenReturn(java.util.Optional.empty());
+
+        mockMvc.perform(get("/orders/status/missing"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message").value("Order not found"));
+    }
 }
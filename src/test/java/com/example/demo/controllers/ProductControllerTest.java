@@ -1,7 +1,9 @@
 package com.example.demo.controllers;
 
+import com.example.demo.dtos.OrderRequest;
 import com.example.demo.dtos.ProductRequest;
 import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
 import com.example.demo.repository.ProductRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -24,8 +26,12 @@ public class ProductControllerTest {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private OrderRepository orderRepository;
+
     @BeforeEach
     void setup() {
+        orderRepository.deleteAll();
         productRepository.deleteAll();
     }
 
@@ -94,6 +100,20 @@ public class ProductControllerTest {
         assertTrue(response.getBody().contains("Product not found"));
     }
 
+    @Test
+    void testUpdateProductSlots_disabled() {
+        ProductEntity existingProduct = new ProductEntity();
+        existingProduct.setProductName("Sample Product");
+        existingProduct.setStock(10);
+        existingProduct = productRepository.saveAndFlush(existingProduct);
+
+        String url = "/products/" + existingProduct.getProductId() + "/slots?count=4";
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.PATCH, null, String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertTrue(response.getBody().contains("Stock slots are not enabled"));
+    }
+
     @Test
     void testAddMultipleProducts_withUniqueNames() {
         for (int i = 1; i <= 3; i++) {
@@ -108,4 +128,93 @@ public class ProductControllerTest {
         List<ProductEntity> products = productRepository.findAll();
         assertEquals(3, products.size());
     }
+
+    @Test
+    void testGetAllProducts_keysetPages() {
+        for (int i = 1; i <= 5; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Paged " + i);
+            product.setStock(i);
+            productRepository.saveAndFlush(product);
+        }
+
+        ResponseEntity<ProductEntity[]> first = restTemplate.getForEntity("/products?limit=3", ProductEntity[].class);
+        assertEquals(HttpStatus.OK, first.getStatusCode());
+        assertEquals(3, first.getBody().length);
+        String cursor = first.getHeaders().getFirst("X-Next-After-Id");
+        assertEquals(String.valueOf(first.getBody()[2].getProductId()), cursor);
+
+        ResponseEntity<ProductEntity[]> second = restTemplate.getForEntity(
+                "/products?limit=3&afterId=" + cursor, ProductEntity[].class);
+        assertEquals(2, second.getBody().length);
+        assertTrue(second.getBody()[0].getProductId() > Integer.parseInt(cursor));
+        assertEquals("Paged 5", second.getBody()[1].getProductName());
+    }
+
+    @Test
+    void testGetAllProducts_invalidLimit() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/products?limit=0", String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void testStreamProducts() {
+        for (int i = 1; i <= 1200; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Streamed " + i);
+            product.setStock(i);
+            productRepository.save(product);
+        }
+
+        ResponseEntity<ProductEntity[]> response = restTemplate.getForEntity("/products/stream", ProductEntity[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1200, response.getBody().length);
+        assertEquals("Streamed 1200", response.getBody()[1199].getProductName());
+    }
+
+    @Test
+    void testGetProduct() {
+        ProductEntity product = new ProductEntity();
+        product.setProductName("Single");
+        product.setStock(7);
+        product = productRepository.save(product);
+
+        ResponseEntity<ProductEntity> response = restTemplate.getForEntity(
+                "/products/" + product.getProductId(), ProductEntity.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("Single", response.getBody().getProductName());
+        assertEquals(7, response.getBody().getStock());
+    }
+
+    @Test
+    void testGetProduct_notFound() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/products/999999", String.class);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void testGetProductSales() {
+        ProductEntity product = new ProductEntity();
+        product.setProductName("Selling");
+        product.setStock(5);
+        product = productRepository.save(product);
+        for (int i = 0; i < 2; i++) {
+            OrderRequest order = new OrderRequest();
+            order.setProductId(product.getProductId());
+            order.setCustomerName("Buyer " + i);
+            assertEquals(HttpStatus.OK, restTemplate.postForEntity("/orders", order, String.class).getStatusCode());
+        }
+
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "/products/" + product.getProductId() + "/sales", String.class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().contains("\"unitsSold\":2"), response.getBody());
+        assertEquals(HttpStatus.NOT_FOUND,
+                restTemplate.getForEntity("/products/999999/sales", String.class).getStatusCode());
+    }
 }
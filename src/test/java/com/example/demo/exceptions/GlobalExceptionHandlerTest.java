@@ -40,6 +40,54 @@ class GlobalExceptionHandlerTest {
         assertTrue(response.getBody().toString().contains("/test-path"));
     }
 
+    @Test
+    void handleInvalidRequest() {
+        InvalidRequestException ex = new InvalidRequestException("Quantity must be positive");
+        ResponseEntity<?> response = handler.handleInvalidRequest(ex, mockRequest);
+
+        assertEquals(400, response.getStatusCodeValue());
+        assertTrue(response.getBody().toString().contains("Quantity must be positive"));
+        assertTrue(response.getBody().toString().contains("/test-path"));
+    }
+
+    @Test
+    void handleHoldNotFound() {
+        HoldNotFoundException ex = new HoldNotFoundException("Hold not found or expired");
+        ResponseEntity<?> response = handler.handleHoldNotFound(ex, mockRequest);
+
+        assertEquals(404, response.getStatusCodeValue());
+        assertTrue(response.getBody().toString().contains("Hold not found or expired"));
+    }
+
+    @Test
+    void handleIdempotencyConflict() {
+        IdempotencyConflictException ex = new IdempotencyConflictException("Idempotency-Key was already used");
+        ResponseEntity<?> response = handler.handleIdempotencyConflict(ex, mockRequest);
+
+        assertEquals(409, response.getStatusCodeValue());
+        assertTrue(response.getBody().toString().contains("Idempotency-Key was already used"));
+    }
+
+    @Test
+    void handleQueueFull() {
+        OrderQueueFullException ex = new OrderQueueFullException("Order queue is full, retry later");
+        ResponseEntity<?> response = handler.handleQueueFull(ex, mockRequest);
+
+        assertEquals(429, response.getStatusCodeValue());
+        assertEquals("1", response.getHeaders().getFirst("Retry-After"));
+        assertTrue(response.getBody().toString().contains("Order queue is full"));
+    }
+
+    @Test
+    void handleIntakeStopped() {
+        OrderIntakeStoppedException ex = new OrderIntakeStoppedException("Order intake is not running, retry later");
+        ResponseEntity<?> response = handler.handleIntakeStopped(ex, mockRequest);
+
+        assertEquals(503, response.getStatusCodeValue());
+        assertEquals("5", response.getHeaders().getFirst("Retry-After"));
+        assertTrue(response.getBody().toString().contains("Order intake is not running"));
+    }
+
     @Test
     void handleUnexpected() {
         Exception ex = new Exception("Some error");
@@ -0,0 +1,249 @@
+package com.example.demo.load;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.load.LoadReport.LockStats;
+import com.example.demo.load.LoadReport.OperationStats;
+import com.example.demo.load.LoadWorkload.Operation;
+import com.example.demo.load.LoadWorkload.Step;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.services.OrderIntake;
+import com.example.demo.services.StockReservationEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline load and contention harness for the orders and products API.
+ *
+ * Boots the application in-process on the embedded H2 database, seeds products, and replays a
+ * seeded {@link LoadWorkload} over HTTP: orders, catalog reads and {@code PATCH /products/{id}/update}
+ * restocks, spread uniformly or Zipf-skewed over products. Reports throughput, client latency
+ * percentiles per request type, the server's row lock wait and hold times, and whether stock still
+ * adds up. Each run is written as JSON; pass {@code --baseline=} an earlier file to see whether a
+ * change made contention better or worse:
+ *
+ * <pre>
+ * ./mvnw -P load -DskipTests integration-test -Dload.args="--distribution=zipf --output=target/before.json"
+ * ./mvnw -P load -DskipTests integration-test -Dload.args="--distribution=zipf --baseline=target/before.json"
+ * </pre>
+ */
+public final class LoadHarness {
+
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadWorkload workload = LoadWorkload.parse(args.length == 1 ? args[0].trim().split("\\s+") : args);
+        LoadReport report = run(workload);
+        report.print(System.out);
+
+        ObjectMapper json = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File output = new File(workload.output());
+        if (output.getParentFile() != null) {
+            output.getParentFile().mkdirs();
+        }
+        json.writeValue(output, report);
+        System.out.println("written to " + output);
+        if (workload.baseline() != null) {
+            report.compare(json.readValue(new File(workload.baseline()), LoadReport.class), System.out);
+        }
+        System.exit(report.consistent() ? 0 : 1);
+    }
+
+    static LoadReport run(LoadWorkload workload) throws InterruptedException {
+        List<Step> plan = workload.plan();
+        List<String> properties = new ArrayList<>(List.of("server.port=0", "logging.level.com.example.demo=OFF"));
+        properties.addAll(workload.properties());
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(DemoApplication.class)
+                .properties(properties.toArray(String[]::new));
+        if (workload.profile() != null) {
+            builder.profiles(workload.profile());
+        }
+
+        try (ConfigurableApplicationContext context = builder.run()) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ProductRepository productRepository = context.getBean(ProductRepository.class);
+            OrderRepository orderRepository = context.getBean(OrderRepository.class);
+            List<Integer> productIds = seed(productRepository, workload);
+            long initialStock = (long) workload.products() * workload.stockPerProduct();
+
+            Drive drive = new Drive("http://localhost:" + port, productIds, workload);
+            long start = System.nanoTime();
+            drive.run(plan);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            // Let deferred writers finish before stock is counted.
+            OrderIntake intake = context.getBean(OrderIntake.class);
+            if (intake.isEnabled()) {
+                intake.shutdown();
+            }
+            context.getBean(StockReservationEngine.class).flush();
+
+            List<ProductEntity> products = productRepository.findAllById(productIds);
+            long remaining = products.stream().mapToLong(ProductEntity::getStock).sum();
+            long ordersPlaced = orderRepository.count();
+            List<String> problems = new ArrayList<>();
+            products.stream().filter(p -> p.getStock() < 0)
+                    .forEach(p -> problems.add("product " + p.getProductId() + " has stock " + p.getStock()));
+            if (initialStock + drive.restocked.sum() - ordersPlaced != remaining) {
+                problems.add("stock does not add up");
+            }
+            if (!intake.isEnabled() && drive.ordersConfirmed.sum() != ordersPlaced) {
+                problems.add(drive.ordersConfirmed.sum() + " orders confirmed but " + ordersPlaced + " stored");
+            }
+
+            return new LoadReport(workload.toString(), seconds, plan.size() / seconds, drive.stats(),
+                    lockStats(context.getBean(MeterRegistry.class)), initialStock, drive.restocked.sum(),
+                    ordersPlaced, remaining, problems);
+        }
+    }
+
+    private static List<Integer> seed(ProductRepository productRepository, LoadWorkload workload) {
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < workload.products(); i++) {
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Load " + i);
+            product.setStock(workload.stockPerProduct());
+            products.add(product);
+        }
+        return productRepository.saveAll(products).stream().map(ProductEntity::getProductId).toList();
+    }
+
+    private static LockStats lockStats(MeterRegistry meterRegistry) {
+        Timer wait = meterRegistry.find("orderup.stock.lock.wait").timer();
+        Timer hold = meterRegistry.find("orderup.stock.lock.hold").timer();
+        if (wait == null || wait.count() == 0) {
+            return new LockStats(0, 0, 0, 0);
+        }
+        double waitP99 = Arrays.stream(wait.takeSnapshot().percentileValues())
+                .filter(p -> p.percentile() == 0.99)
+                .mapToDouble(p -> p.value(TimeUnit.MILLISECONDS))
+                .findFirst().orElse(Double.NaN);
+        return new LockStats(wait.count(), wait.mean(TimeUnit.MILLISECONDS), waitP99,
+                hold == null ? 0 : hold.mean(TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Replays the plan with at most {@code concurrency} requests in flight, one virtual thread each.
+     */
+    private static final class Drive {
+        private final String baseUrl;
+        private final List<Integer> productIds;
+        private final LoadWorkload workload;
+        private final Map<Operation, ConcurrentLinkedQueue<Long>> latencies = new EnumMap<>(Operation.class);
+        private final Map<Operation, ConcurrentHashMap<Integer, AtomicLong>> statuses = new EnumMap<>(Operation.class);
+        private final LongAdder ordersConfirmed = new LongAdder();
+        private final LongAdder restocked = new LongAdder();
+
+        Drive(String baseUrl, List<Integer> productIds, LoadWorkload workload) {
+            this.baseUrl = baseUrl;
+            this.productIds = productIds;
+            this.workload = workload;
+            for (Operation operation : Operation.values()) {
+                latencies.put(operation, new ConcurrentLinkedQueue<>());
+                statuses.put(operation, new ConcurrentHashMap<>());
+            }
+        }
+
+        void run(List<Step> plan) throws InterruptedException {
+            ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+            HttpClient http = HttpClient.newBuilder().executor(clients).connectTimeout(Duration.ofSeconds(10)).build();
+            Semaphore inFlight = new Semaphore(workload.concurrency());
+            CountDownLatch done = new CountDownLatch(plan.size());
+            for (int i = 0; i < plan.size(); i++) {
+                Step step = plan.get(i);
+                HttpRequest request = request(step, i);
+                inFlight.acquire();
+                clients.execute(() -> {
+                    long sent = System.nanoTime();
+                    int status = -1;
+                    try {
+                        status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200 && step.operation() == Operation.ORDER) {
+                            ordersConfirmed.increment();
+                        } else if (status == 200 && step.operation() == Operation.RESTOCK) {
+                            restocked.add(workload.restockQuantity());
+                        }
+                    } catch (Exception e) {
+                        // Counted under status -1.
+                    } finally {
+                        latencies.get(step.operation()).add(System.nanoTime() - sent);
+                        statuses.get(step.operation()).computeIfAbsent(status, s -> new AtomicLong()).incrementAndGet();
+                        inFlight.release();
+                        done.countDown();
+                    }
+                });
+            }
+            if (!done.await(10, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Load run did not finish within 10 minutes");
+            }
+            clients.shutdown();
+        }
+
+        private HttpRequest request(Step step, int index) {
+            int productId = productIds.get(step.productIndex());
+            return switch (step.operation()) {
+                case ORDER -> HttpRequest.newBuilder(URI.create(baseUrl + "/orders"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(
+                                "{\"productId\":" + productId + ",\"customerName\":\"Load " + index + "\"}"))
+                        .build();
+                case READ -> HttpRequest.newBuilder(URI.create(baseUrl + "/products/" + productId)).GET().build();
+                case RESTOCK -> HttpRequest.newBuilder(URI.create(
+                                baseUrl + "/products/" + productId + "/update?stock=" + workload.restockQuantity()))
+                        .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                        .build();
+            };
+        }
+
+        Map<String, OperationStats> stats() {
+            Map<String, OperationStats> stats = new LinkedHashMap<>();
+            for (Operation operation : Operation.values()) {
+                long[] sorted = latencies.get(operation).stream().mapToLong(Long::longValue).sorted().toArray();
+                if (sorted.length == 0) {
+                    continue;
+                }
+                Map<Integer, Long> byStatus = new TreeMap<>();
+                statuses.get(operation).forEach((status, count) -> byStatus.put(status, count.get()));
+                stats.put(operation.name().toLowerCase(), new OperationStats(sorted.length,
+                        percentileMillis(sorted, 0.5), percentileMillis(sorted, 0.99), percentileMillis(sorted, 0.999),
+                        byStatus));
+            }
+            return stats;
+        }
+
+        private static double percentileMillis(long[] sorted, double percentile) {
+            int index = Math.max(0, (int) Math.ceil(sorted.length * percentile) - 1);
+            return sorted[index] / 1e6;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.demo.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Keeps the load harness working: a small skewed run with restocks must add up, and the same
+ * seed must replay the same requests.
+ */
+public class LoadHarnessTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadHarnessTest.class);
+
+    @Test
+    void zipf_favoursTheFirstProducts() {
+        ZipfSampler zipf = new ZipfSampler(50, 1.1);
+        SplittableRandom random = new SplittableRandom(1);
+        int[] hits = new int[50];
+        for (int i = 0; i < 100_000; i++) {
+            hits[zipf.sample(random)]++;
+        }
+
+        assertTrue(hits[0] > 10 * hits[49], "first=" + hits[0] + " last=" + hits[49]);
+        assertTrue(hits[0] > hits[1] && hits[1] > hits[5]);
+    }
+
+    @Test
+    void plan_isReproducibleAndFollowsTheMix() {
+        LoadWorkload workload = LoadWorkload.parse("--requests=5000", "--read-ratio=0.3", "--restock-ratio=0.1",
+                "--distribution=uniform");
+
+        assertEquals(workload.plan(), workload.plan());
+        long reads = workload.plan().stream().filter(s -> s.operation() == LoadWorkload.Operation.READ).count();
+        assertEquals(1500, reads, 150);
+        assertThrows(IllegalArgumentException.class, () -> LoadWorkload.parse("--unknown=1"));
+    }
+
+    @Test
+    void run_smallSkewedWorkload_staysConsistent() throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        LoadWorkload workload = LoadWorkload.parse("--requests=600", "--concurrency=32", "--products=5",
+                "--stock=40", "--restock-ratio=0.05", "--restock-quantity=3",
+                "--property=logging.level.com.example.demo.load.LoadHarnessTest=INFO");
+
+        LoadReport report = LoadHarness.run(workload);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        report.print(new PrintStream(out));
+        report.compare(report, new PrintStream(out));
+        logger.info("small load run:\n{}", out);
+
+        assertTrue(report.consistent(), report.problems().toString());
+        assertEquals(3, report.operations().size());
+        assertTrue(report.restocked() > 0);
+        assertTrue(report.lock().count() > 0);
+        assertTrue(report.operations().get("order").statuses().containsKey(400), "some products sell out");
+        assertFalse(report.operations().get("order").statuses().containsKey(500));
+        assertTrue(out.toString().contains("verdict: no clear change"));
+        assertEquals(report, json.readValue(json.writeValueAsString(report), LoadReport.class));
+    }
+}
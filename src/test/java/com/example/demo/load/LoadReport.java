@@ -0,0 +1,77 @@
+package com.example.demo.load;
+
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Result of one {@link LoadHarness} run, written as JSON so a later run can be compared against it.
+ */
+record LoadReport(String workload, double seconds, double throughput, Map<String, OperationStats> operations,
+                  LockStats lock, long initialStock, long restocked, long ordersPlaced, long remainingStock,
+                  List<String> problems) {
+
+    /**
+     * Client-side latency of one kind of request and how many got each HTTP status.
+     */
+    record OperationStats(long count, double p50Ms, double p99Ms, double p999Ms, Map<Integer, Long> statuses) {
+    }
+
+    /**
+     * Server-side row lock timings from the {@code orderup.stock.lock.*} timers.
+     */
+    record LockStats(long count, double waitMeanMs, double waitP99Ms, double holdMeanMs) {
+    }
+
+    boolean consistent() {
+        return problems.isEmpty();
+    }
+
+    void print(PrintStream out) {
+        out.printf(Locale.ROOT, "workload:   %s%n", workload);
+        out.printf(Locale.ROOT, "throughput: %.0f req/s over %.1f s%n", throughput, seconds);
+        operations.forEach((name, stats) -> out.printf(Locale.ROOT,
+                "%-8s    n=%d  p50 %.1f ms  p99 %.1f ms  p999 %.1f ms  statuses %s%n",
+                name, stats.count(), stats.p50Ms(), stats.p99Ms(), stats.p999Ms(), stats.statuses()));
+        if (lock.count() == 0) {
+            out.println("row lock:   no locked reservations (optimistic, combined or in-memory path)");
+        } else {
+            out.printf(Locale.ROOT, "row lock:   n=%d  wait mean %.2f ms  wait p99 %.2f ms  hold mean %.2f ms%n",
+                    lock.count(), lock.waitMeanMs(), lock.waitP99Ms(), lock.holdMeanMs());
+        }
+        out.printf(Locale.ROOT, "stock:      %d initial + %d restocked - %d ordered = %d remaining -> %s%n",
+                initialStock, restocked, ordersPlaced, remainingStock,
+                consistent() ? "consistent" : "INCONSISTENT " + problems);
+    }
+
+    /**
+     * Prints how this run moved against {@code baseline}; changes within 5% count as unchanged.
+     */
+    void compare(LoadReport baseline, PrintStream out) {
+        if (!baseline.workload().equals(workload)) {
+            out.println("baseline ran a different workload: " + baseline.workload());
+        }
+        int score = 0;
+        score += line(out, "throughput", baseline.throughput(), throughput, true);
+        OperationStats before = baseline.operations().get("order");
+        OperationStats after = operations.get("order");
+        if (before != null && after != null) {
+            score += line(out, "order p99 ms", before.p99Ms(), after.p99Ms(), false);
+        }
+        if (baseline.lock().count() > 0 && lock.count() > 0) {
+            score += line(out, "lock wait mean ms", baseline.lock().waitMeanMs(), lock.waitMeanMs(), false);
+            score += line(out, "lock hold mean ms", baseline.lock().holdMeanMs(), lock.holdMeanMs(), false);
+        }
+        out.println("verdict: " + (!consistent() ? "BROKEN (stock inconsistent)"
+                : score > 0 ? "better" : score < 0 ? "worse" : "no clear change"));
+    }
+
+    private static int line(PrintStream out, String name, double before, double after, boolean higherIsBetter) {
+        double change = before == 0 ? 0 : (after - before) / before;
+        int direction = Math.abs(change) < 0.05 ? 0 : (change > 0) == higherIsBetter ? 1 : -1;
+        out.printf(Locale.ROOT, "%-18s %10.2f -> %10.2f  (%+.1f%%, %s)%n", name, before, after, change * 100,
+                direction > 0 ? "better" : direction < 0 ? "worse" : "same");
+        return direction;
+    }
+}
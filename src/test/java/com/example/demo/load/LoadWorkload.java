@@ -0,0 +1,97 @@
+package com.example.demo.load;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * What {@link LoadHarness} sends: how many requests, how hard, and how they spread over products.
+ * Parsed from {@code --name=value} arguments; the same arguments and seed always produce the same
+ * sequence of requests.
+ */
+record LoadWorkload(int requests, int concurrency, int products, int stockPerProduct, Distribution distribution,
+                    double zipfSkew, double readRatio, double restockRatio, int restockQuantity, long seed,
+                    String profile, List<String> properties, String output, String baseline) {
+
+    enum Distribution { UNIFORM, ZIPF }
+
+    enum Operation { ORDER, READ, RESTOCK }
+
+    record Step(Operation operation, int productIndex) {
+    }
+
+    private static final Set<String> OPTIONS = Set.of("requests", "concurrency", "products", "stock",
+            "distribution", "zipf-skew", "read-ratio", "restock-ratio", "restock-quantity", "seed", "profile",
+            "property", "output", "baseline");
+
+    static LoadWorkload parse(String... args) {
+        Map<String, String> options = new HashMap<>();
+        List<String> properties = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+            if (name == null || !OPTIONS.contains(name)) {
+                throw new IllegalArgumentException("Unknown option " + arg + "; expected --name=value, one of " + OPTIONS);
+            }
+            if (name.equals("property")) {
+                properties.add(arg.substring(eq + 1));
+            } else {
+                options.put(name, arg.substring(eq + 1));
+            }
+        }
+        return new LoadWorkload(
+                Integer.parseInt(options.getOrDefault("requests", "20000")),
+                Integer.parseInt(options.getOrDefault("concurrency", "200")),
+                Integer.parseInt(options.getOrDefault("products", "50")),
+                Integer.parseInt(options.getOrDefault("stock", "200")),
+                Distribution.valueOf(options.getOrDefault("distribution", "zipf").toUpperCase(Locale.ROOT)),
+                Double.parseDouble(options.getOrDefault("zipf-skew", "1.1")),
+                Double.parseDouble(options.getOrDefault("read-ratio", "0.25")),
+                Double.parseDouble(options.getOrDefault("restock-ratio", "0.02")),
+                Integer.parseInt(options.getOrDefault("restock-quantity", "20")),
+                Long.parseLong(options.getOrDefault("seed", "42")),
+                options.get("profile"),
+                List.copyOf(properties),
+                options.getOrDefault("output", "target/load-result.json"),
+                options.get("baseline"));
+    }
+
+    /**
+     * The request sequence: each step picks an operation by the read and restock ratios and a
+     * product by the popularity distribution.
+     */
+    List<Step> plan() {
+        if (readRatio + restockRatio > 1) {
+            throw new IllegalArgumentException("read-ratio + restock-ratio must not exceed 1");
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        ZipfSampler popularity = new ZipfSampler(products, distribution == Distribution.ZIPF ? zipfSkew : 0);
+        List<Step> steps = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            double roll = random.nextDouble();
+            Operation operation = roll < readRatio ? Operation.READ
+                    : roll < readRatio + restockRatio ? Operation.RESTOCK
+                    : Operation.ORDER;
+            steps.add(new Step(operation, popularity.sample(random)));
+        }
+        return steps;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d requests, %d in flight, %d products x %d units, %s%s, "
+                        + "%.0f%% reads, %.0f%% restocks of %d, seed %d%s%s",
+                requests, concurrency, products, stockPerProduct, distribution.name().toLowerCase(Locale.ROOT),
+                distribution == Distribution.ZIPF ? " (skew " + zipfSkew + ")" : "",
+                readRatio * 100, restockRatio * 100, restockQuantity, seed,
+                profile == null ? "" : ", profile " + profile,
+                properties.isEmpty() ? "" : ", " + String.join(" ", properties));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.support.StatementCounter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares one INSERT round trip per order (what IDENTITY ids force) with Hibernate
+ * batching on top of pooled table ids. The timed run is tagged {@code benchmark} and only runs
+ * with the {@code benchmark} Maven profile.
+ */
+@SpringBootTest
+@Import(StatementCounter.class)
+public class OrderInsertBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderInsertBenchmarkTest.class);
+
+    private static final int ORDERS = 500;
+    private static final int BENCHMARK_ORDERS = 5000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        product = new ProductEntity();
+        product.setProductName("BenchmarkProduct");
+        product.setStock(BENCHMARK_ORDERS);
+        product = productRepository.save(product);
+    }
+
+    private List<OrderEntity> newOrders(int count) {
+        List<OrderEntity> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OrderEntity order = new OrderEntity();
+            order.setCustomerName("Customer" + i);
+            order.setProduct(entityManager.getReference(ProductEntity.class, product.getProductId()));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private Run rowByRow(int count) {
+        statementCounter.reset();
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (OrderEntity order : newOrders(count)) {
+                orderRepository.save(order);
+                entityManager.flush();
+                entityManager.detach(order);
+            }
+        });
+        return new Run(System.nanoTime() - start, statementCounter.count());
+    }
+
+    private Run batched(int count) {
+        statementCounter.reset();
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> orderRepository.saveAll(newOrders(count)));
+        return new Run(System.nanoTime() - start, statementCounter.count());
+    }
+
+    @Test
+    void batchedInserts_needFarFewerRoundTripsThanRowByRow() {
+        Run rowByRow = rowByRow(ORDERS);
+        Run batched = batched(ORDERS);
+
+        assertEquals(2L * ORDERS, orderRepository.count());
+        assertTrue(rowByRow.roundTrips() >= ORDERS);
+        assertTrue(batched.roundTrips() * 10 < rowByRow.roundTrips(),
+                "batched=" + batched.roundTrips() + " rowByRow=" + rowByRow.roundTrips());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void batchedInserts_throughput() {
+        Run rowByRow = rowByRow(BENCHMARK_ORDERS);
+        Run batched = batched(BENCHMARK_ORDERS);
+
+        logger.info("orders insert benchmark ({} rows): row-by-row {} inserts/s, {} round trips; "
+                        + "batched {} inserts/s, {} round trips",
+                BENCHMARK_ORDERS, Math.round(rowByRow.rate(BENCHMARK_ORDERS)), rowByRow.roundTrips(),
+                Math.round(batched.rate(BENCHMARK_ORDERS)), batched.roundTrips());
+        assertEquals(2L * BENCHMARK_ORDERS, orderRepository.count());
+    }
+
+    private record Run(long nanos, long roundTrips) {
+        double rate(int orders) {
+            return orders / (nanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.repository;
+
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.services.OrderService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Spreads orders over three embedded H2 shards and checks where they are written, that pages
+ * gathered from all shards come back in id order, and that a failed shard insert rolls the stock
+ * reservation back.
+ */
+@SpringBootTest(properties = {
+        "orderup.orders.shards.enabled=true",
+        "orderup.orders.shards.urls=" + OrderShardsTest.SHARD_0 + "," + OrderShardsTest.SHARD_1 + ","
+                + OrderShardsTest.SHARD_2})
+public class OrderShardsTest {
+
+    static final String SHARD_0 = "jdbc:h2:mem:orders-shard-0;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_1 = "jdbc:h2:mem:orders-shard-1;MODE=MySQL;DB_CLOSE_DELAY=-1";
+    static final String SHARD_2 = "jdbc:h2:mem:orders-shard-2;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private IdBlockAllocator idBlockAllocator;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    private final List<JdbcTemplate> shards = new ArrayList<>();
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        shards.clear();
+        for (String url : List.of(SHARD_0, SHARD_1, SHARD_2)) {
+            JdbcTemplate shard = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+            shard.update("DELETE FROM orders");
+            shards.add(shard);
+        }
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        product = product("Sharded", 100);
+    }
+
+    private ProductEntity product(String name, int stock) {
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName(name);
+        entity.setStock(stock);
+        return productRepository.save(entity);
+    }
+
+    private OrderRequest request(String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    private int count(JdbcTemplate shard) {
+        return shard.queryForObject("SELECT COUNT(*) FROM orders", Integer.class);
+    }
+
+    @Test
+    void orders_areWrittenToTheirShard() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            ids.add(orderService.placeOrder(request("Customer " + i % 3)).getOrderId());
+        }
+
+        assertEquals(0, orderRepository.count());
+        assertEquals(60, orderShards.count());
+        assertEquals(40, productRepository.findStockById(product.getProductId()).orElseThrow());
+        for (int shard = 0; shard < 3; shard++) {
+            assertTrue(count(shards.get(shard)) > 0, "shard " + shard + " is empty");
+        }
+        for (int id : ids) {
+            int shard = orderShards.shardOf(id, product.getProductId());
+            assertEquals(1, shards.get(shard).queryForObject(
+                    "SELECT COUNT(*) FROM orders WHERE order_id = ?", Integer.class, id));
+        }
+    }
+
+    @Test
+    void pages_areMergedFromAllShardsInIdOrder() {
+        List<Integer> placed = new ArrayList<>();
+        for (int i = 0; i < 45; i++) {
+            placed.add(orderService.placeOrder(request("Customer " + i % 3)).getOrderId());
+        }
+
+        List<Integer> paged = new ArrayList<>();
+        int afterId = 0;
+        List<OrderResponse> page;
+        while (!(page = orderService.getOrders(afterId, 10)).isEmpty()) {
+            page.forEach(order -> paged.add(order.getOrderId()));
+            afterId = page.get(page.size() - 1).getOrderId();
+        }
+        assertEquals(placed.stream().sorted().toList(), paged);
+
+        List<OrderResponse> customer = orderService.getOrdersForCustomer("Customer 1", 0, 100);
+        assertEquals(15, customer.size());
+        assertEquals("Sharded", customer.get(0).getProduct().getProductName());
+        assertEquals(45, orderService.getOrdersForProduct(product.getProductId(), 0, 100).size());
+
+        List<Integer> streamed = new ArrayList<>();
+        orderService.streamOrders(order -> streamed.add(order.getOrderId()));
+        assertEquals(paged, streamed);
+    }
+
+    @Test
+    void failedShardInsert_rollsBackStockAndOtherShards() {
+        shards.get(1).execute("ALTER TABLE orders RENAME TO orders_offline");
+        try {
+            OrderLineItem item = new OrderLineItem();
+            item.setProductId(product.getProductId());
+            item.setQuantity(30);
+            BatchOrderRequest cart = new BatchOrderRequest();
+            cart.setCustomerName("Cart");
+            cart.setItems(List.of(item));
+
+            assertThrows(RuntimeException.class, () -> orderService.placeOrders(cart));
+        } finally {
+            shards.get(1).execute("ALTER TABLE orders_offline RENAME TO orders");
+        }
+
+        assertEquals(100, productRepository.findStockById(product.getProductId()).orElseThrow());
+        assertEquals(0, orderShards.count());
+    }
+
+    @Test
+    void productKey_keepsAProductsOrdersOnOneShard() {
+        OrderShards byProduct = new OrderShards(dataSourceProperties, idBlockAllocator, productRepository,
+                new SimpleMeterRegistry(), true, List.of(SHARD_0, SHARD_1, SHARD_2), "", "", 2, "product-id");
+        try {
+            List<OrderEntity> orders = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                OrderEntity order = new OrderEntity();
+                order.setCustomerName("Customer " + i);
+                order.setProduct(product);
+                orders.add(order);
+            }
+            byProduct.insert(orders);
+
+            int home = byProduct.shardOf(0, product.getProductId());
+            assertEquals(20, count(shards.get(home)));
+            assertEquals(20, byProduct.count());
+            assertEquals(20, byProduct.findPageByProduct(product.getProductId(), 0, Limit.of(50)).size());
+        } finally {
+            byProduct.close();
+        }
+    }
+}
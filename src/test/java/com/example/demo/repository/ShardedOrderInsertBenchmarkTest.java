@@ -0,0 +1,141 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Inserts the same orders into 1, 2 and 4 embedded H2 shards from 8 threads, 50 orders per
+ * transaction, and checks every order lands once and the shards fill evenly. The shards share
+ * this JVM and its CPUs, so the {@code benchmark} run logs throughput rather than asserting it.
+ */
+@SpringBootTest
+public class ShardedOrderInsertBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardedOrderInsertBenchmarkTest.class);
+
+    private static final int ORDERS = 2_000;
+    private static final int BENCHMARK_ORDERS = 20_000;
+    private static final int THREADS = 8;
+    private static final int PER_TRANSACTION = 50;
+
+    @Autowired
+    private IdBlockAllocator idBlockAllocator;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        product = new ProductEntity();
+        product.setProductName("BenchmarkProduct");
+        product.setStock(BENCHMARK_ORDERS);
+        product = productRepository.save(product);
+    }
+
+    private static String url(String run, int shards, int shard) {
+        return "jdbc:h2:mem:" + run + "-" + shards + "-" + shard + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    private double insert(OrderShards orderShards, int count) throws Exception {
+        AtomicInteger left = new AtomicInteger(count / PER_TRANSACTION);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            tasks.add(pool.submit(() -> {
+                start.await();
+                while (left.getAndDecrement() > 0) {
+                    List<OrderEntity> orders = new ArrayList<>(PER_TRANSACTION);
+                    for (int i = 0; i < PER_TRANSACTION; i++) {
+                        OrderEntity order = new OrderEntity();
+                        order.setCustomerName("Customer " + i);
+                        order.setProduct(product);
+                        orders.add(order);
+                    }
+                    transactionTemplate.executeWithoutResult(status -> orderShards.insert(orders));
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+        return count / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * Inserts {@code count} orders into 1, 2 and 4 fresh shards and checks each shard's share.
+     *
+     * @return a summary of the inserts per second for each shard count
+     */
+    private String insertIntoShards(String run, int count) throws Exception {
+        StringBuilder report = new StringBuilder();
+        for (int n : new int[]{1, 2, 4}) {
+            List<String> urls = new ArrayList<>();
+            for (int shard = 0; shard < n; shard++) {
+                urls.add(url(run, n, shard));
+            }
+            OrderShards orderShards = new OrderShards(dataSourceProperties, idBlockAllocator, productRepository,
+                    new SimpleMeterRegistry(), true, urls, "", "", THREADS, "order-id");
+            try {
+                double rate = insert(orderShards, count);
+                report.append(String.format(" %d shard(s) %.0f inserts/s;", n, rate));
+
+                assertEquals(count, orderShards.count());
+                for (String url : urls) {
+                    int rows = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""))
+                            .queryForObject("SELECT COUNT(*) FROM orders", Integer.class);
+                    assertEquals(count / n, rows, count / n * 0.1, url);
+                }
+            } finally {
+                orderShards.close();
+            }
+        }
+        return report.toString();
+    }
+
+    @Test
+    void inserts_spreadEvenlyAsShardsAreAdded() throws Exception {
+        insertIntoShards("spread", ORDERS);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void inserts_throughputAsShardsAreAdded() throws Exception {
+        String report = insertIntoShards("bench", BENCHMARK_ORDERS);
+        logger.info("sharded orders insert benchmark ({} rows):{}", BENCHMARK_ORDERS, report);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderStatusResponse;
+import com.example.demo.dtos.OrderStatusResponse.Status;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "orderup.orders.async.enabled=true",
+        "orderup.orders.async.batch-size=100"
+})
+public class AsyncOrderIntakeTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncOrderIntakeTest.class);
+
+    @Autowired
+    private OrderIntake orderIntake;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ProductEntity product;
+    private ProductEntity other;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        product = productRepository.save(makeProduct("QueuedProduct", 300));
+        other = productRepository.save(makeProduct("OtherQueuedProduct", 1000));
+    }
+
+    private ProductEntity makeProduct(String name, int stock) {
+        ProductEntity product = new ProductEntity();
+        product.setProductName(name);
+        product.setStock(stock);
+        return product;
+    }
+
+    @Test
+    void queuedOrders_areGroupCommittedWithoutOverselling() throws InterruptedException {
+        int orders = 1000;
+        DistributionSummary batches = meterRegistry.get("orderup.orders.intake.batch").summary();
+        long batchesBefore = batches.count();
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        ConcurrentLinkedQueue<String> tokens = new ConcurrentLinkedQueue<>();
+
+        for (int i = 0; i < orders; i++) {
+            OrderRequest request = new OrderRequest();
+            request.setProductId(i % 5 == 0 ? other.getProductId() : product.getProductId());
+            request.setCustomerName("Queued" + i);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    tokens.add(orderIntake.submit(request).getToken());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(orders, tokens.size());
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        List<OrderStatusResponse> statuses;
+        do {
+            Thread.sleep(20);
+            statuses = tokens.stream().map(token -> orderIntake.status(token).orElseThrow()).toList();
+        } while (statuses.stream().anyMatch(s -> s.getStatus() == Status.PENDING) && System.nanoTime() < deadline);
+
+        long placed = statuses.stream().filter(s -> s.getStatus() == Status.PLACED).count();
+        long rejected = statuses.stream().filter(s -> s.getStatus() == Status.REJECTED).count();
+        assertEquals(500, placed);
+        assertEquals(500, rejected);
+        assertEquals(500, orderRepository.count());
+        assertEquals(0, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+        assertEquals(800, productRepository.findById(other.getProductId()).orElseThrow().getStock());
+
+        long transactions = batches.count() - batchesBefore;
+        logger.info("async intake: {} orders committed in {} transactions", orders, transactions);
+        assertTrue(transactions < orders, "transactions=" + transactions);
+    }
+}
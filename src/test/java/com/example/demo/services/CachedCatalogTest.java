@@ -0,0 +1,78 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "orderup.cache.products.enabled=true")
+@Import(StatementCounter.class)
+public class CachedCatalogTest {
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        productCatalogCache.invalidateAll();
+
+        product = new ProductEntity();
+        product.setProductName("CachedProduct");
+        product.setStock(5);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void repeatedReads_doNotTouchDatabase() {
+        productService.getProduct(product.getProductId());
+        productService.getProducts(0, 100);
+
+        statementCounter.reset();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(5, productService.getProduct(product.getProductId()).getStock());
+            assertEquals(1, productService.getProducts(0, 100).size());
+        }
+        assertEquals(0, statementCounter.count());
+    }
+
+    @Test
+    void writes_invalidateAfterCommit() {
+        assertEquals(5, productService.getProduct(product.getProductId()).getStock());
+
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName("Alice");
+        orderService.placeOrder(request);
+        assertEquals(4, productService.getProduct(product.getProductId()).getStock());
+
+        productService.updateStock(product.getProductId(), 10);
+        assertEquals(14, productService.getProducts(0, 100).get(0).getStock());
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "orderup.stock.combining.enabled=true",
+        "orderup.stock.combining.hot-rate=50"
+})
+public class CombinedOrderTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CombinedOrderTest.class);
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+
+        product = new ProductEntity();
+        product.setProductName("FlashSaleProduct");
+        product.setStock(500);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void placeOrder_hotProduct_combinesOrdersWithoutOverselling() throws InterruptedException {
+        int orders = 2000;
+        DistributionSummary batches = meterRegistry.get("orderup.stock.combining.batch").summary();
+        long batchesBefore = batches.count();
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+
+        for (int i = 0; i < orders; i++) {
+            OrderRequest request = new OrderRequest();
+            request.setProductId(product.getProductId());
+            request.setCustomerName("Buyer" + i);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    orderService.placeOrder(request);
+                    succeeded.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    outOfStock.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(500, succeeded.get());
+        assertEquals(1500, outOfStock.get());
+        assertEquals(500, orderRepository.count());
+        assertEquals(0, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+
+        long commits = batches.count() - batchesBefore;
+        logger.info("hot product: {} orders, {} combined commits, {} orders per commit",
+                orders, commits, String.format("%.1f", batches.mean()));
+        assertTrue(commits < orders / 2, "commits=" + commits);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.services;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolMonitorTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Mock
+    private HikariDataSource dataSource;
+
+    @Mock
+    private HikariPoolMXBean poolStats;
+
+    @Mock
+    private StockLockingPolicy stockLockingPolicy;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ConnectionPoolMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(dataSource.getHikariPoolMXBean()).thenReturn(poolStats);
+        when(dataSource.getMaximumPoolSize()).thenReturn(10);
+        when(poolStats.getActiveConnections()).thenReturn(10);
+        monitor = new ConnectionPoolMonitor(dataSource, stockLockingPolicy, meterRegistry, true, 0.5);
+        monitor.check(0);
+    }
+
+    @Test
+    void check_poolQueueingBehindRowLocks_warns() {
+        // 10 connections over one second, 8 seconds of it waiting on row locks.
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(8 * SECOND);
+        when(poolStats.getThreadsAwaitingConnection()).thenReturn(25);
+
+        assertTrue(monitor.check(SECOND));
+        assertEquals(0.8, monitor.getLockWaitShare(), 1e-9);
+        assertEquals(0.8, meterRegistry.get("orderup.pool.lock-wait.share").gauge().value(), 1e-9);
+        assertEquals(1, meterRegistry.get("orderup.pool.starvation.warnings").counter().count());
+    }
+
+    @Test
+    void check_busyPoolWithoutLockWaits_doesNotWarn() {
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(SECOND);
+        when(poolStats.getThreadsAwaitingConnection()).thenReturn(25);
+
+        assertFalse(monitor.check(SECOND));
+        assertEquals(0.1, monitor.getLockWaitShare(), 1e-9);
+        assertEquals(0, meterRegistry.get("orderup.pool.starvation.warnings").counter().count());
+    }
+
+    @Test
+    void check_lockWaitsWithoutQueueing_doesNotWarn() {
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(9 * SECOND);
+        when(poolStats.getThreadsAwaitingConnection()).thenReturn(0);
+
+        assertFalse(monitor.check(SECOND));
+        assertEquals(0.9, monitor.getLockWaitShare(), 1e-9);
+    }
+
+    @Test
+    void check_countsOnlyWaitsSinceLastCheck() {
+        when(poolStats.getThreadsAwaitingConnection()).thenReturn(25);
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(8 * SECOND);
+        assertTrue(monitor.check(SECOND));
+
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(9 * SECOND);
+        assertFalse(monitor.check(2 * SECOND));
+        assertEquals(0.1, monitor.getLockWaitShare(), 1e-9);
+    }
+
+    @Test
+    void check_poolNotStarted_doesNothing() {
+        when(dataSource.getHikariPoolMXBean()).thenReturn(null);
+        when(stockLockingPolicy.totalLockWaitNanos()).thenReturn(8 * SECOND);
+
+        assertFalse(monitor.check(SECOND));
+        verifyNoInteractions(poolStats);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class CustomerOrderCacheTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+
+    @Mock
+    private OrderShards orderShards;
+
+    private final List<OrderResponse> database = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(orderRepository.findPageByCustomer(anyString(), anyInt(), any(Limit.class))).thenAnswer(i -> {
+            String customerName = i.getArgument(0);
+            int afterId = i.getArgument(1);
+            Limit limit = i.getArgument(2);
+            return database.stream()
+                    .filter(o -> o.getCustomerName().equals(customerName) && o.getOrderId() > afterId)
+                    .limit(limit.max())
+                    .toList();
+        });
+    }
+
+    private void orders(String customerName, int count) {
+        for (int i = 0; i < count; i++) {
+            database.add(new OrderResponse(database.size() + 1, customerName, 6, "Test Product", 5));
+        }
+    }
+
+    private CustomerOrderCache cache() {
+        return new CustomerOrderCache(orderRepository, orderShards, new SimpleMeterRegistry(), true, 100, 60000, 10);
+    }
+
+    @Test
+    void page_servesLaterPagesFromCachedFirstPage() {
+        orders("Alice", 8);
+        orders("Bob", 3);
+        CustomerOrderCache cache = cache();
+
+        assertEquals(List.of(1, 2, 3), ids(cache.page("Alice", 0, Limit.of(3))));
+        assertEquals(List.of(4, 5, 6), ids(cache.page("Alice", 3, Limit.of(3))));
+        assertEquals(List.of(7, 8), ids(cache.page("Alice", 6, Limit.of(3))));
+        assertEquals(List.of(), ids(cache.page("Alice", 8, Limit.of(3))));
+
+        verify(orderRepository, times(1)).findPageByCustomer(anyString(), anyInt(), any());
+    }
+
+    @Test
+    void page_beyondFullCachedPage_readsDatabase() {
+        orders("Alice", 25);
+        CustomerOrderCache cache = cache();
+
+        cache.page("Alice", 0, Limit.of(5));
+        assertEquals(List.of(6, 7, 8, 9, 10), ids(cache.page("Alice", 5, Limit.of(5))));
+        // Runs past the cached ten orders.
+        assertEquals(List.of(9, 10, 11, 12, 13), ids(cache.page("Alice", 8, Limit.of(5))));
+        assertEquals(List.of(20, 21, 22, 23, 24), ids(cache.page("Alice", 19, Limit.of(5))));
+
+        verify(orderRepository).findPageByCustomer("Alice", 0, Limit.of(10));
+        verify(orderRepository).findPageByCustomer("Alice", 8, Limit.of(5));
+        verify(orderRepository).findPageByCustomer("Alice", 19, Limit.of(5));
+        verifyNoMoreInteractions(orderRepository);
+    }
+
+    @Test
+    void page_laterPageWithoutCachedFirstPage_doesNotFillCache() {
+        orders("Alice", 5);
+        CustomerOrderCache cache = cache();
+
+        cache.page("Alice", 2, Limit.of(5));
+        cache.page("Alice", 2, Limit.of(5));
+
+        verify(orderRepository, times(2)).findPageByCustomer("Alice", 2, Limit.of(5));
+    }
+
+    @Test
+    void ordersPlaced_evictsOnlyThoseCustomers() {
+        orders("Alice", 2);
+        orders("Bob", 2);
+        CustomerOrderCache cache = cache();
+        cache.page("Alice", 0, Limit.of(5));
+        cache.page("Bob", 0, Limit.of(5));
+
+        orders("Alice", 1);
+        OrderEntity placed = new OrderEntity();
+        placed.setCustomerName("Alice");
+        cache.ordersPlaced(List.of(placed));
+
+        assertEquals(3, cache.page("Alice", 0, Limit.of(5)).size());
+        assertEquals(2, cache.page("Bob", 0, Limit.of(5)).size());
+        verify(orderRepository, times(2)).findPageByCustomer("Alice", 0, Limit.of(10));
+        verify(orderRepository, times(1)).findPageByCustomer("Bob", 0, Limit.of(10));
+    }
+
+    @Test
+    void disabled_alwaysReadsDatabase() {
+        orders("Alice", 2);
+        CustomerOrderCache cache = new CustomerOrderCache(orderRepository, orderShards, new SimpleMeterRegistry(), false,
+                100, 60000, 10);
+
+        cache.page("Alice", 0, Limit.of(5));
+        cache.page("Alice", 0, Limit.of(5));
+
+        verify(orderRepository, times(2)).findPageByCustomer("Alice", 0, Limit.of(5));
+    }
+
+    private static List<Integer> ids(List<OrderResponse> orders) {
+        return orders.stream().map(OrderResponse::getOrderId).toList();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages one customer's history out of many customers' orders with the customer cache on, and
+ * checks the lookup is planned on the {@code (customer_name, order_id)} index.
+ */
+@SpringBootTest(properties = "orderup.cache.customer-orders.enabled=true")
+public class CustomerOrderHistoryTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName("History");
+        entity.setStock(10_000);
+        product = productRepository.save(entity);
+    }
+
+    private OrderRequest request(String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    @Test
+    void customerOrders_pageWithinCustomer() {
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            group.add(request("Customer " + (i % 100)));
+        }
+        orderService.placeOrderGroup(group);
+
+        List<OrderResponse> all = new ArrayList<>();
+        int afterId = 0;
+        List<OrderResponse> page;
+        while (!(page = orderService.getOrdersForCustomer("Customer 7", afterId, 6)).isEmpty()) {
+            all.addAll(page);
+            afterId = page.get(page.size() - 1).getOrderId();
+        }
+
+        assertEquals(20, all.size());
+        assertTrue(all.stream().allMatch(o -> o.getCustomerName().equals("Customer 7")));
+        for (int i = 1; i < all.size(); i++) {
+            assertTrue(all.get(i - 1).getOrderId() < all.get(i).getOrderId());
+        }
+    }
+
+    @Test
+    void placedOrder_showsInCachedHistory() {
+        orderService.placeOrder(request("Alice"));
+        assertEquals(1, orderService.getOrdersForCustomer("Alice", 0, 10).size());
+
+        orderService.placeOrder(request("Alice"));
+
+        assertEquals(2, orderService.getOrdersForCustomer("Alice", 0, 10).size());
+    }
+
+    @Test
+    void customerLookup_usesCustomerIndex() {
+        String plan = jdbcTemplate.queryForObject(
+                "EXPLAIN SELECT order_id FROM orders WHERE customer_name = 'Alice' AND order_id > 0 ORDER BY order_id",
+                String.class);
+
+        assertTrue(plan.contains("IDX_ORDERS_CUSTOMER"), plan);
+    }
+}
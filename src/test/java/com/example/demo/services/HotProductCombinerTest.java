@@ -0,0 +1,138 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HotProductCombinerTest {
+
+    private HotProductCombiner combiner(boolean enabled, int hotRate, long windowMs) {
+        return new HotProductCombiner(new SimpleMeterRegistry(), enabled, hotRate, windowMs, 50);
+    }
+
+    private OrderRequest request(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    @Test
+    void isHot_onlyAboveTheArrivalRate() throws InterruptedException {
+        HotProductCombiner combiner = combiner(true, 10, 500);
+
+        for (int i = 0; i < 4; i++) {
+            assertFalse(combiner.isHot(6), "5 per window is the threshold");
+        }
+        assertTrue(combiner.isHot(6));
+        assertFalse(combiner.isHot(7), "other products are counted separately");
+
+        Thread.sleep(1100);
+        assertFalse(combiner.isHot(6), "cools down after an idle window");
+        assertFalse(combiner(false, 1, 50).isHot(6));
+    }
+
+    @Test
+    void idleLanes_areEvicted() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AtomicLong now = new AtomicLong();
+        Ticker ticker = now::get;
+        HotProductCombiner combiner = new HotProductCombiner(meterRegistry, true, 10, 500, 50, ticker);
+
+        for (int productId = 1; productId <= 100; productId++) {
+            combiner.isHot(productId);
+        }
+        assertEquals(100, meterRegistry.get("orderup.stock.combining.lanes").gauge().value());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        combiner.isHot(1);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        combiner.isHot(2);
+
+        assertEquals(2, meterRegistry.get("orderup.stock.combining.lanes").gauge().value());
+    }
+
+    @Test
+    void place_mergesConcurrentOrdersAndSellsOnlyTheStock() throws InterruptedException {
+        HotProductCombiner combiner = combiner(true, 1, 1000);
+        AtomicInteger stock = new AtomicInteger(100);
+        AtomicInteger groups = new AtomicInteger();
+        Function<List<OrderRequest>, List<PlacementResult>> placeGroup = requests -> {
+            groups.incrementAndGet();
+            List<PlacementResult> results = new ArrayList<>();
+            for (OrderRequest request : requests) {
+                if (stock.get() > 0) {
+                    stock.decrementAndGet();
+                    OrderEntity order = new OrderEntity();
+                    order.setCustomerName(request.getCustomerName());
+                    results.add(PlacementResult.placed(order));
+                } else {
+                    results.add(PlacementResult.rejected(new OutOfStockException("Product is out of stock")));
+                }
+            }
+            try {
+                Thread.sleep(1); // a commit round trip, long enough for orders to pile up
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return results;
+        };
+
+        int orders = 1000;
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+        for (int i = 0; i < orders; i++) {
+            String customerName = "Buyer" + i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    OrderEntity order = combiner.place(request(6, customerName), placeGroup);
+                    assertEquals(customerName, order.getCustomerName());
+                    placed.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    outOfStock.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(100, placed.get());
+        assertEquals(900, outOfStock.get());
+        assertTrue(groups.get() < orders / 4, "groups=" + groups.get());
+    }
+
+    @Test
+    void place_groupFailure_reachesEveryCaller() {
+        HotProductCombiner combiner = combiner(true, 1, 1000);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> combiner.place(request(6, "Unlucky"), requests -> {
+                    throw new IllegalStateException("Database down");
+                }));
+        assertEquals("Database down", thrown.getMessage());
+    }
+}
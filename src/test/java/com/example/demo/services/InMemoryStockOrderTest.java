@@ -0,0 +1,86 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "orderup.stock.in-memory.enabled=true")
+public class InMemoryStockOrderTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private StockReservationEngine stockReservationEngine;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+
+        product = new ProductEntity();
+        product.setProductName("FlashSaleProduct");
+        product.setStock(500);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void placeOrder_thousandsOfParallelOrders_neverOversell() throws InterruptedException {
+        int orders = 2000;
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+
+        for (int i = 0; i < orders; i++) {
+            OrderRequest request = new OrderRequest();
+            request.setProductId(product.getProductId());
+            request.setCustomerName("Buyer" + i);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    orderService.placeOrder(request);
+                    succeeded.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    outOfStock.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+        stockReservationEngine.flush();
+
+        assertEquals(500, succeeded.get());
+        assertEquals(1500, outOfStock.get());
+        assertEquals(500, orderRepository.count());
+        assertEquals(0, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "orderup.stock.locking.mode=adaptive")
+public class OptimisticOrderTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private StockLockingPolicy stockLockingPolicy;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private ProductEntity hot;
+    private ProductEntity quiet;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+
+        hot = new ProductEntity();
+        hot.setProductName("HotProduct");
+        hot.setStock(200);
+        hot = productRepository.save(hot);
+
+        quiet = new ProductEntity();
+        quiet.setProductName("QuietProduct");
+        quiet.setStock(10);
+        quiet = productRepository.save(quiet);
+    }
+
+    private OrderRequest request(ProductEntity product, String customer) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customer);
+        return request;
+    }
+
+    @Test
+    void uncontendedOrders_stayOptimisticAndBumpVersion() {
+        for (int i = 0; i < 5; i++) {
+            orderService.placeOrder(request(quiet, "Quiet" + i));
+        }
+
+        ProductEntity reloaded = productRepository.findById(quiet.getProductId()).orElseThrow();
+        assertEquals(5, reloaded.getStock());
+        assertEquals(quiet.getVersion() + 5, reloaded.getVersion());
+        assertTrue(stockLockingPolicy.useOptimistic(quiet.getProductId()));
+    }
+
+    @Test
+    void contendedOrders_neverOversellAndRecordConflicts() throws InterruptedException {
+        int orders = 400;
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger outOfStock = new AtomicInteger();
+
+        for (int i = 0; i < orders; i++) {
+            OrderRequest request = request(hot, "Buyer" + i);
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    orderService.placeOrder(request);
+                    succeeded.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    outOfStock.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(200, succeeded.get());
+        assertEquals(200, outOfStock.get());
+        assertEquals(200, orderRepository.count());
+        assertEquals(0, productRepository.findById(hot.getProductId()).orElseThrow().getStock());
+        assertTrue(stockLockingPolicy.conflictRate(hot.getProductId()) > 0);
+    }
+}
@@ -0,0 +1,220 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderStatusResponse;
+import com.example.demo.dtos.OrderStatusResponse.Status;
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OrderIntakeStoppedException;
+import com.example.demo.exceptions.OrderQueueFullException;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.exceptions.ProductNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+public class OrderIntakeTest {
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private ProductCatalogCache productCatalogCache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private OrderIntake intake;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(productCatalogCache.get(anyInt())).thenReturn(Optional.of(new ProductResponse(6, "Test Product", 5)));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (intake != null) {
+            intake.shutdown();
+        }
+    }
+
+    private OrderIntake start(int queueCapacity) {
+        return start(queueCapacity, 1000);
+    }
+
+    private OrderIntake start(int queueCapacity, int maxTracked) {
+        intake = new OrderIntake(orderService, productCatalogCache, meterRegistry, true, queueCapacity, 50, maxTracked, 60000);
+        intake.start();
+        return intake;
+    }
+
+    private OrderRequest request(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static OrderEntity order(int orderId, String customerName) {
+        ProductEntity product = new ProductEntity();
+        product.setProductId(6);
+        product.setProductName("Test Product");
+        OrderEntity order = new OrderEntity();
+        order.setOrderId(orderId);
+        order.setCustomerName(customerName);
+        order.setProduct(product);
+        return order;
+    }
+
+    @Test
+    void submit_reportsEachOutcomeOfTheGroupCommit() throws InterruptedException {
+        when(orderService.placeOrderGroup(anyList())).thenAnswer(i -> {
+            List<OrderRequest> requests = i.getArgument(0);
+            List<PlacementResult> results = new ArrayList<>();
+            for (OrderRequest request : requests) {
+                results.add(switch (request.getCustomerName()) {
+                    case "Sold out" -> PlacementResult.rejected(new OutOfStockException("Product is out of stock"));
+                    case "Broken" -> PlacementResult.rejected(new RuntimeException("Database down"));
+                    default -> PlacementResult.placed(order(42, request.getCustomerName()));
+                });
+            }
+            return results;
+        });
+        OrderIntake intake = start(100);
+
+        OrderStatusResponse placed = intake.submit(request(6, "Alice"));
+        OrderStatusResponse soldOut = intake.submit(request(6, "Sold out"));
+        OrderStatusResponse broken = intake.submit(request(6, "Broken"));
+        assertEquals(Status.PENDING, placed.getStatus());
+
+        await(() -> intake.status(broken.getToken()).orElseThrow().getStatus() != Status.PENDING);
+        await(() -> intake.status(placed.getToken()).orElseThrow().getStatus() != Status.PENDING);
+        OrderStatusResponse placedNow = intake.status(placed.getToken()).orElseThrow();
+        assertEquals(Status.PLACED, placedNow.getStatus());
+        assertEquals(42, placedNow.getOrder().getOrderId());
+        assertEquals(Status.REJECTED, intake.status(soldOut.getToken()).orElseThrow().getStatus());
+        assertEquals("Product is out of stock", intake.status(soldOut.getToken()).orElseThrow().getMessage());
+        assertEquals(Status.FAILED, intake.status(broken.getToken()).orElseThrow().getStatus());
+        assertTrue(intake.status("unknown").isEmpty());
+    }
+
+    @Test
+    void submit_unknownProduct_isRejectedBeforeQueueing() {
+        when(productCatalogCache.get(999)).thenReturn(Optional.empty());
+        OrderIntake intake = start(100);
+
+        assertThrows(ProductNotFoundException.class, () -> intake.submit(request(999, "Ghost")));
+        verify(orderService, never()).placeOrderGroup(anyList());
+    }
+
+    @Test
+    void submit_whenQueueIsFull_throwsUntilConsumerCatchesUp() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.placeOrderGroup(anyList())).thenAnswer(i -> {
+            release.await();
+            List<OrderRequest> requests = i.getArgument(0);
+            return requests.stream().map(r -> PlacementResult.placed(order(1, r.getCustomerName()))).toList();
+        });
+        OrderIntake intake = start(2);
+
+        intake.submit(request(6, "In flight"));
+        await(() -> meterRegistry.get("orderup.orders.intake.queue").gauge().value() == 0);
+        intake.submit(request(6, "Queued 1"));
+        OrderStatusResponse last = intake.submit(request(6, "Queued 2"));
+
+        assertThrows(OrderQueueFullException.class, () -> intake.submit(request(6, "Rejected")));
+
+        release.countDown();
+        await(() -> intake.status(last.getToken()).orElseThrow().getStatus() == Status.PLACED);
+        assertDoesNotThrow(() -> intake.submit(request(6, "After drain")));
+        verify(orderService, atLeastOnce()).placeOrderGroup(any());
+    }
+
+    @Test
+    void shutdown_whileSubmitting_settlesEveryAcceptedOrder() throws InterruptedException {
+        when(orderService.placeOrderGroup(anyList())).thenAnswer(i -> {
+            List<OrderRequest> requests = i.getArgument(0);
+            return requests.stream().map(r -> PlacementResult.placed(order(1, r.getCustomerName()))).toList();
+        });
+        OrderIntake intake = start(10000);
+        ExecutorService submitters = Executors.newFixedThreadPool(8);
+        ConcurrentLinkedQueue<String> accepted = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(8);
+        for (int t = 0; t < 8; t++) {
+            submitters.execute(() -> {
+                started.countDown();
+                try {
+                    while (true) {
+                        accepted.add(intake.submit(request(6, "Racing")).getToken());
+                    }
+                } catch (OrderIntakeStoppedException | OrderQueueFullException e) {
+                    // Intake stopped, or this submitter outran the consumer.
+                }
+            });
+        }
+        started.await();
+        Thread.sleep(20);
+
+        intake.shutdown();
+        submitters.shutdown();
+        assertTrue(submitters.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertFalse(accepted.isEmpty());
+        assertThrows(OrderIntakeStoppedException.class, () -> intake.submit(request(6, "Too late")));
+        for (String token : accepted) {
+            // Settled outcomes beyond max-tracked may be evicted; an order left pending never is.
+            intake.status(token).ifPresent(status -> assertNotEquals(Status.PENDING, status.getStatus()));
+        }
+    }
+
+    @Test
+    void status_ofQueuedOrders_survivesMoreThanMaxTracked() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        when(orderService.placeOrderGroup(anyList())).thenAnswer(i -> {
+            release.await();
+            List<OrderRequest> requests = i.getArgument(0);
+            return requests.stream().map(r -> PlacementResult.placed(order(1, r.getCustomerName()))).toList();
+        });
+        OrderIntake intake = start(100, 1);
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            tokens.add(intake.submit(request(6, "Queued " + i)).getToken());
+        }
+
+        for (String token : tokens) {
+            assertEquals(Status.PENDING, intake.status(token).orElseThrow().getStatus());
+        }
+        release.countDown();
+        String last = tokens.get(tokens.size() - 1);
+        await(() -> intake.status(last).map(OrderStatusResponse::getStatus).orElse(Status.PENDING) == Status.PLACED);
+    }
+}
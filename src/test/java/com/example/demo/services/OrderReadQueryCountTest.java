@@ -0,0 +1,84 @@
+package com.example.demo.services;
+
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@Import(StatementCounter.class)
+public class OrderReadQueryCountTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Product " + i);
+            product.setStock(100);
+            products.add(product);
+        }
+        products = productRepository.saveAll(products);
+
+        List<OrderEntity> orders = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            OrderEntity order = new OrderEntity();
+            order.setCustomerName("Customer " + i);
+            order.setProduct(products.get(i % products.size()));
+            orders.add(order);
+        }
+        orderRepository.saveAll(orders);
+    }
+
+    private long roundTripsFor(String url, int expectedRows) {
+        statementCounter.reset();
+        ResponseEntity<OrderEntity[]> response = restTemplate.getForEntity(url, OrderEntity[].class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(expectedRows, response.getBody().length);
+        assertNotNull(response.getBody()[expectedRows - 1].getProduct().getProductName());
+        return statementCounter.count();
+    }
+
+    @Test
+    void listingOrders_usesOneQueryRegardlessOfSize() {
+        long small = roundTripsFor("/orders?limit=10", 10);
+        long large = roundTripsFor("/orders?limit=1000", 1000);
+
+        assertEquals(1, small);
+        assertEquals(small, large);
+    }
+
+    @Test
+    void streamingOrders_usesOneQuery() {
+        assertEquals(1, roundTripsFor("/orders/stream", 1000));
+    }
+}
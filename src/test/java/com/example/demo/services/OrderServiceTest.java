@@ -1,20 +1,35 @@
 package com.example.demo.services;
 
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
 import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.dtos.ProductResponse;
 import com.example.demo.entity.OrderEntity;
 import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.InvalidRequestException;
 import com.example.demo.exceptions.OutOfStockException;
 import com.example.demo.exceptions.ProductNotFoundException;
 import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
 import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.ProductStockSlotRepository;
+import com.example.demo.repository.StockLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -27,7 +42,36 @@ public class OrderServiceTest {
     @Mock
     private OrderRepository orderRepository;
 
-    @InjectMocks
+    @Mock
+    private OrderShards orderShards;
+
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
+    @Mock
+    private ProductCatalogCache productCatalogCache;
+
+    @Mock
+    private StockLockingPolicy stockLockingPolicy;
+
+    @Mock
+    private HotProductCombiner hotProductCombiner;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private CustomerOrderCache customerOrderCache;
+
+    @Mock
+    private ProductStockSlotRepository productStockSlotRepository;
+
+    @Mock
+    private StockLeaseRepository stockLeaseRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private OrderService orderService;
 
     private ProductEntity product;
@@ -35,21 +79,55 @@ public class OrderServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        // Slots and leases off: every reservation is the product row's conditional UPDATE.
+        StockSlots stockSlots = new StockSlots(productRepository, productStockSlotRepository, transactionManager,
+                new SimpleMeterRegistry(), false, false, 64, 0.5);
+        StockLeases stockLeases = new StockLeases(productRepository, stockLeaseRepository, orderRepository,
+                orderShards, productCatalogCache, stockLedger, transactionManager, new SimpleMeterRegistry(), false,
+                false, "test", 50, 0.25, 0.2, 30000, 10000);
+        orderService = new OrderService(productRepository, orderRepository, orderShards, stockReservationEngine,
+                productCatalogCache, stockLockingPolicy, hotProductCombiner, stockLedger, customerOrderCache,
+                stockSlots, stockLeases, transactionManager);
         product = new ProductEntity();
         product.setProductId(6);
         product.setProductName("Test Product");
         product.setStock(5);
     }
 
+    /**
+     * Stubs the reads and the conditional decrement against a counter that starts at the
+     * product's current stock, like the {@code products} row would.
+     *
+     * @return the counter, for taking units as other orders would
+     */
+    private AtomicInteger stockInDatabase(ProductEntity product) {
+        AtomicInteger stock = new AtomicInteger(product.getStock());
+        when(productRepository.findReadOnlyById(product.getProductId())).thenReturn(Optional.of(product));
+        when(productRepository.findResponsesById(anyCollection())).thenAnswer(i ->
+                List.of(new ProductResponse(product.getProductId(), product.getProductName(), stock.get())));
+        when(productRepository.decrementStock(eq(product.getProductId()), anyInt())).thenAnswer(i -> {
+            int quantity = i.getArgument(1);
+            while (true) {
+                int current = stock.get();
+                if (current < quantity) {
+                    return 0;
+                }
+                if (stock.compareAndSet(current, current - quantity)) {
+                    return 1;
+                }
+            }
+        });
+        return stock;
+    }
+
     @Test
     void placeOrder_success() {
         OrderRequest request = new OrderRequest();
         request.setProductId(6);
         request.setCustomerName("Mock UserName");
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(product));
+        stockInDatabase(product);
         when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
-        when(productRepository.save(any(ProductEntity.class))).thenAnswer(i -> i.getArguments()[0]);
 
         OrderEntity order = orderService.placeOrder(request);
 
@@ -58,21 +136,64 @@ public class OrderServiceTest {
         assertEquals(product, order.getProduct());
         assertEquals(4, product.getStock());
 
-        verify(productRepository).save(product);
+        verify(productRepository).decrementStock(6, 1);
+        verify(productRepository, never()).save(any(ProductEntity.class));
         verify(orderRepository).save(order);
     }
 
+    @Test
+    void placeOrder_reportsStockLeftAfterOtherOrders() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Late Buyer");
+
+        AtomicInteger stock = stockInDatabase(product);
+        // Two units go to other orders between the unlocked read and this order's decrement.
+        when(productRepository.findReadOnlyById(6)).thenAnswer(i -> {
+            stock.addAndGet(-2);
+            return Optional.of(product);
+        });
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        OrderEntity order = orderService.placeOrder(request);
+
+        assertEquals(2, order.getProduct().getStock());
+    }
+
+    @Test
+    void placeOrder_readsStockLeftOnlyAfterCommit() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("After Commit");
+
+        stockInDatabase(product);
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            OrderEntity order = orderService.placeOrder(request);
+            // Still inside the transaction: the row lock is held, so nothing is read yet.
+            verify(productRepository, never()).findResponsesById(anyCollection());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals(4, order.getProduct().getStock());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
     @Test
     void placeOrder_productNotFound() {
         OrderRequest request = new OrderRequest();
         request.setProductId(999);
         request.setCustomerName("Bob");
 
-        when(productRepository.findByIdForUpdate(999)).thenReturn(Optional.empty());
+        when(productRepository.findReadOnlyById(999)).thenReturn(Optional.empty());
 
         assertThrows(ProductNotFoundException.class, () -> {
             orderService.placeOrder(request);
         });
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
     }
 
     @Test
@@ -82,7 +203,7 @@ public class OrderServiceTest {
         request.setProductId(6);
         request.setCustomerName("Mock User2");
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(product));
+        stockInDatabase(product);
 
         assertThrows(OutOfStockException.class, () -> {
             orderService.placeOrder(request);
@@ -91,22 +212,58 @@ public class OrderServiceTest {
 
     @Test
     void getOrders_returnsList() {
-        OrderEntity order1 = new OrderEntity();
-        order1.setOrderId(1);
-        order1.setCustomerName("A");
-        order1.setProduct(product);
+        OrderResponse order1 = new OrderResponse(1, "A", 6, "Test Product", 5);
+        OrderResponse order2 = new OrderResponse(2, "B", 6, "Test Product", 5);
 
-        OrderEntity order2 = new OrderEntity();
-        order2.setOrderId(2);
-        order2.setCustomerName("B");
-        order2.setProduct(product);
+        when(orderRepository.findPage(0, Limit.of(100))).thenReturn(Arrays.asList(order1, order2));
 
-        when(orderRepository.findAll()).thenReturn(Arrays.asList(order1, order2));
-
-        List<OrderEntity> orders = orderService.getOrders();
+        List<OrderResponse> orders = orderService.getOrders(0, 100);
 
         assertEquals(2, orders.size());
         assertEquals("A", orders.get(0).getCustomerName());
+        assertEquals(6, orders.get(1).getProduct().getProductId());
+    }
+
+    @Test
+    void getOrders_limitIsCapped() {
+        orderService.getOrders(10, 1_000_000);
+
+        verify(orderRepository).findPage(10, Limit.of(1000));
+    }
+
+    @Test
+    void getOrdersForProduct_pagesWithinProduct() {
+        OrderResponse order = new OrderResponse(3, "A", 6, "Test Product", 5);
+        when(orderRepository.findPageByProduct(6, 2, Limit.of(1000))).thenReturn(List.of(order));
+
+        List<OrderResponse> orders = orderService.getOrdersForProduct(6, 2, 5000);
+
+        assertEquals(List.of(order), orders);
+        verify(orderRepository, never()).findPage(anyInt(), any());
+    }
+
+    @Test
+    void getOrders_invalidLimit() {
+        assertThrows(InvalidRequestException.class, () -> {
+            orderService.getOrders(0, 0);
+        });
+
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void streamOrders_passesEveryRowInOrder() {
+        List<OrderResponse> all = new java.util.ArrayList<>();
+        for (int i = 1; i <= 1200; i++) {
+            all.add(new OrderResponse(i, "C" + i, 6, "Test Product", 5));
+        }
+        when(orderRepository.streamAll()).thenReturn(all.stream());
+
+        List<Integer> seen = new java.util.ArrayList<>();
+        orderService.streamOrders(order -> seen.add(order.getOrderId()));
+
+        assertEquals(1200, seen.size());
+        assertEquals(1200, seen.get(1199));
     }
 
     @Test
@@ -115,9 +272,8 @@ public class OrderServiceTest {
         request.setProductId(6);
         request.setCustomerName("User");
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(product));
+        stockInDatabase(product);
         when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
-        when(productRepository.save(any(ProductEntity.class))).thenAnswer(i -> i.getArguments()[0]);
 
         for (int i = 0; i < 5; i++) {
             request.setCustomerName("User" + i);
@@ -135,7 +291,7 @@ public class OrderServiceTest {
         request.setProductId(6);
         request.setCustomerName("User");
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(product));
+        stockInDatabase(product);
 
         assertThrows(OutOfStockException.class, () -> {
             orderService.placeOrder(request);
@@ -143,30 +299,29 @@ public class OrderServiceTest {
     }
 
     @Test
-    void placeOrder_reserveStockFailsInternally() {
-        ProductEntity mockProduct = spy(product);
-        doReturn(false).when(mockProduct).reserveStock();
-
+    void placeOrder_conditionalUpdateMatchesNoRow() {
         OrderRequest request = new OrderRequest();
         request.setProductId(6);
         request.setCustomerName("User");
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(mockProduct));
+        // The row was sold out after the unlocked read still showed stock.
+        when(productRepository.findReadOnlyById(6)).thenReturn(Optional.of(product));
+        when(productRepository.decrementStock(6, 1)).thenReturn(0);
 
         assertThrows(OutOfStockException.class, () -> {
             orderService.placeOrder(request);
         });
 
-        verify(mockProduct, times(1)).reserveStock();
+        assertEquals(5, product.getStock());
+        verify(orderRepository, never()).save(any(OrderEntity.class));
     }
 
     @Test
     void placeOrder_concurrentOrders_onlyOneSucceeds() throws InterruptedException {
         product.setStock(1);
 
-        when(productRepository.findByIdForUpdate(6)).thenReturn(Optional.of(product));
+        stockInDatabase(product);
         when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
-        when(productRepository.save(any(ProductEntity.class))).thenAnswer(i -> i.getArguments()[0]);
 
         OrderRequest request1 = new OrderRequest();
         request1.setProductId(6);
@@ -211,4 +366,206 @@ public class OrderServiceTest {
         verify(orderRepository, times(1)).save(any(OrderEntity.class));
     }
 
+    private OrderLineItem lineItem(int productId, int quantity) {
+        OrderLineItem item = new OrderLineItem();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    @Test
+    void placeOrder_optimistic_success() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Optimist");
+
+        when(stockLockingPolicy.useOptimistic(6)).thenReturn(true);
+        when(stockLockingPolicy.getMaxAttempts()).thenReturn(3);
+        when(productRepository.findById(6)).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(product)).thenReturn(product);
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        OrderEntity order = orderService.placeOrder(request);
+
+        assertEquals(4, product.getStock());
+        assertEquals(product, order.getProduct());
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+        verify(stockLockingPolicy).recordOptimisticAttempt(6, false);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void placeOrder_optimistic_retriesAfterConflict() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Optimist");
+
+        when(stockLockingPolicy.useOptimistic(6)).thenReturn(true);
+        when(stockLockingPolicy.getMaxAttempts()).thenReturn(3);
+        when(productRepository.findById(6)).thenReturn(Optional.of(product));
+        when(productRepository.saveAndFlush(product))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ProductEntity.class, 6))
+                .thenReturn(product);
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        OrderEntity order = orderService.placeOrder(request);
+
+        assertNotNull(order);
+        verify(stockLockingPolicy).recordOptimisticAttempt(6, true);
+        verify(stockLockingPolicy).backoff(1);
+        verify(stockLockingPolicy).recordOptimisticAttempt(6, false);
+        verify(transactionManager).rollback(any());
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+    }
+
+    @Test
+    void placeOrder_optimistic_fallsBackToLockAfterMaxAttempts() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Optimist");
+
+        when(stockLockingPolicy.useOptimistic(6)).thenReturn(true);
+        when(stockLockingPolicy.getMaxAttempts()).thenReturn(2);
+        when(productRepository.findById(6)).thenAnswer(i -> {
+            ProductEntity stale = new ProductEntity();
+            stale.setProductId(6);
+            stale.setStock(5);
+            return Optional.of(stale);
+        });
+        when(productRepository.saveAndFlush(any(ProductEntity.class)))
+                .thenThrow(new ObjectOptimisticLockingFailureException(ProductEntity.class, 6));
+        stockInDatabase(product);
+        when(orderRepository.save(any(OrderEntity.class))).thenAnswer(i -> i.getArguments()[0]);
+
+        OrderEntity order = orderService.placeOrder(request);
+
+        assertEquals(product, order.getProduct());
+        assertEquals(4, product.getStock());
+        verify(stockLockingPolicy, times(2)).recordOptimisticAttempt(6, true);
+        verify(productRepository).decrementStock(6, 1);
+    }
+
+    @Test
+    void placeOrder_optimistic_outOfStockIsNotRetried() {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(6);
+        request.setCustomerName("Optimist");
+        product.setStock(0);
+
+        when(stockLockingPolicy.useOptimistic(6)).thenReturn(true);
+        when(stockLockingPolicy.getMaxAttempts()).thenReturn(3);
+        when(productRepository.findById(6)).thenReturn(Optional.of(product));
+
+        assertThrows(OutOfStockException.class, () -> orderService.placeOrder(request));
+        verify(productRepository, times(1)).findById(6);
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+    }
+
+    @Test
+    void placeOrders_success() {
+        ProductEntity other = new ProductEntity();
+        other.setProductId(3);
+        other.setProductName("Other Product");
+        other.setStock(2);
+
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName("Cart User");
+        request.setItems(Arrays.asList(lineItem(6, 2), lineItem(3, 1), lineItem(6, 1)));
+
+        when(productRepository.findAllReadOnlyById(anyCollection())).thenReturn(Arrays.asList(other, product));
+        when(productRepository.decrementStock(anyInt(), anyInt())).thenReturn(1);
+        when(productRepository.findResponsesById(anyCollection())).thenReturn(Arrays.asList(
+                new ProductResponse(3, "Other Product", 1), new ProductResponse(6, "Test Product", 2)));
+        when(orderRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+
+        List<OrderEntity> orders = orderService.placeOrders(request);
+
+        assertEquals(4, orders.size());
+        assertEquals(2, product.getStock());
+        assertEquals(1, other.getStock());
+        assertTrue(orders.stream().allMatch(o -> "Cart User".equals(o.getCustomerName())));
+
+        InOrder lockOrder = inOrder(productRepository);
+        lockOrder.verify(productRepository).decrementStock(3, 1);
+        lockOrder.verify(productRepository).decrementStock(6, 3);
+        verify(productRepository, never()).saveAll(anyList());
+        verify(orderRepository, times(1)).saveAll(anyList());
+        verify(orderRepository, never()).save(any(OrderEntity.class));
+    }
+
+    @Test
+    void placeOrders_outOfStock_insertsNothing() {
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName("Greedy");
+        request.setItems(Arrays.asList(lineItem(6, 6)));
+
+        when(productRepository.findAllReadOnlyById(anyCollection())).thenReturn(Arrays.asList(product));
+        stockInDatabase(product);
+
+        assertThrows(OutOfStockException.class, () -> {
+            orderService.placeOrders(request);
+        });
+
+        verify(orderRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void placeOrders_productNotFound() {
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName("Bob");
+        request.setItems(Arrays.asList(lineItem(6, 1), lineItem(999, 1)));
+
+        when(productRepository.findAllReadOnlyById(anyCollection())).thenReturn(Arrays.asList(product));
+
+        assertThrows(ProductNotFoundException.class, () -> {
+            orderService.placeOrders(request);
+        });
+
+        verify(orderRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void placeOrders_invalidQuantity() {
+        BatchOrderRequest request = new BatchOrderRequest();
+        request.setCustomerName("Bob");
+        request.setItems(Arrays.asList(lineItem(6, 0)));
+
+        assertThrows(InvalidRequestException.class, () -> {
+            orderService.placeOrders(request);
+        });
+
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void placeOrderGroup_fillsInArrivalOrderAndRejectsTheRest() {
+        product.setStock(2);
+        stockInDatabase(product);
+        when(productRepository.findAllReadOnlyById(anyCollection())).thenReturn(Arrays.asList(product));
+        when(productRepository.findStockById(6)).thenReturn(Optional.of(2));
+        when(orderRepository.saveAll(anyList())).thenAnswer(i -> i.getArguments()[0]);
+
+        List<OrderRequest> requests = Arrays.asList(orderRequest(6, "First"), orderRequest(999, "Ghost"),
+                orderRequest(6, "Second"), orderRequest(6, "Third"));
+        List<PlacementResult> results = orderService.placeOrderGroup(requests);
+
+        assertEquals(4, results.size());
+        assertEquals("First", results.get(0).order().getCustomerName());
+        assertInstanceOf(ProductNotFoundException.class, results.get(1).error());
+        assertEquals("Second", results.get(2).order().getCustomerName());
+        assertInstanceOf(OutOfStockException.class, results.get(3).error());
+        assertEquals(0, product.getStock());
+
+        verify(productRepository).decrementStock(6, 3);
+        verify(productRepository).decrementStock(6, 2);
+        verify(orderRepository, times(1)).saveAll(argThat(orders -> ((List<?>) orders).size() == 2));
+        verify(productCatalogCache).stockChanged(6, -2);
+    }
+
+    private OrderRequest orderRequest(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
 }
@@ -0,0 +1,30 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the connection pool meters and {@link ConnectionPoolMonitor}'s gauge are served by the metrics endpoint.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+public class PoolMetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void metricsEndpoint_exposesPoolInstrumentation() {
+        for (String meter : new String[]{"hikaricp.connections.active", "hikaricp.connections.idle",
+                "hikaricp.connections.pending", "hikaricp.connections.acquire", "orderup.pool.lock-wait.share"}) {
+            assertEquals(HttpStatus.OK, restTemplate.getForEntity("/actuator/metrics/" + meter, String.class)
+                    .getStatusCode(), meter);
+        }
+        String acquire = restTemplate.getForObject("/actuator/metrics/hikaricp.connections.acquire", String.class);
+        assertTrue(acquire.contains("TOTAL_TIME") && acquire.contains("MAX"), acquire);
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Limit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+public class ProductCatalogCacheTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private final Map<Integer, ProductResponse> database = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+
+        for (int id = 1; id <= 5; id++) {
+            database.put(id, new ProductResponse(id, "Product " + id, 10));
+        }
+        when(productRepository.findResponseById(anyInt()))
+                .thenAnswer(i -> Optional.ofNullable(database.get(i.<Integer>getArgument(0))));
+        when(productRepository.findResponsesById(any())).thenAnswer(i -> {
+            Collection<Integer> ids = i.getArgument(0);
+            return ids.stream().map(database::get).filter(p -> p != null).toList();
+        });
+        when(productRepository.findPage(anyInt(), any(Limit.class))).thenAnswer(i -> {
+            int afterId = i.getArgument(0);
+            Limit limit = i.getArgument(1);
+            return database.values().stream()
+                    .filter(p -> p.getProductId() > afterId)
+                    .sorted((a, b) -> Integer.compare(a.getProductId(), b.getProductId()))
+                    .limit(limit.max())
+                    .toList();
+        });
+    }
+
+    private ProductCatalogCache cache(long maxSize, boolean staleStock) {
+        // Eviction runs on the calling thread, so its effects are visible as soon as a call returns.
+        return new ProductCatalogCache(productRepository, meterRegistry, true, maxSize, 100, 60000, staleStock, 60000,
+                Runnable::run);
+    }
+
+    @Test
+    void get_readsThroughOnce() {
+        ProductCatalogCache cache = cache(100, false);
+
+        assertEquals(10, cache.get(1).orElseThrow().getStock());
+        assertEquals(10, cache.get(1).orElseThrow().getStock());
+
+        verify(productRepository, times(1)).findResponseById(1);
+        assertEquals(1, cache.productStats().hitCount());
+        assertEquals(1, cache.productStats().missCount());
+    }
+
+    @Test
+    void get_missingProduct_isNotCached() {
+        ProductCatalogCache cache = cache(100, false);
+
+        assertTrue(cache.get(99).isEmpty());
+        database.put(99, new ProductResponse(99, "Late", 1));
+
+        assertTrue(cache.get(99).isPresent());
+    }
+
+    @Test
+    void stockChanged_evictsOnlyThatProduct() {
+        ProductCatalogCache cache = cache(100, false);
+        cache.get(1);
+        cache.get(2);
+
+        database.put(1, database.get(1).withStock(9));
+        cache.stockChanged(1, -1);
+
+        assertEquals(9, cache.get(1).orElseThrow().getStock());
+        cache.get(2);
+        verify(productRepository, times(2)).findResponseById(1);
+        verify(productRepository, times(1)).findResponseById(2);
+    }
+
+    @Test
+    void stockChanged_staleStockMode_patchesWithoutReloading() {
+        ProductCatalogCache cache = cache(100, true);
+        cache.get(1);
+
+        cache.stockChanged(1, -3);
+        cache.stockChanged(1, 5);
+
+        assertEquals(12, cache.get(1).orElseThrow().getStock());
+        verify(productRepository, times(1)).findResponseById(1);
+    }
+
+    @Test
+    void page_servesFromCacheAndSeesStockChanges() {
+        ProductCatalogCache cache = cache(100, false);
+        assertEquals(3, cache.page(0, Limit.of(3)).size());
+        cache.page(0, Limit.of(3));
+
+        database.put(2, database.get(2).withStock(0));
+        cache.stockChanged(2, -10);
+        List<ProductResponse> page = cache.page(0, Limit.of(3));
+
+        assertEquals(List.of(1, 2, 3), page.stream().map(ProductResponse::getProductId).toList());
+        assertEquals(0, page.get(1).getStock());
+        verify(productRepository, times(1)).findPage(0, Limit.of(3));
+        assertEquals(2, cache.pageStats().hitCount());
+    }
+
+    @Test
+    void productAdded_dropsCachedPages() {
+        ProductCatalogCache cache = cache(100, false);
+        assertEquals(5, cache.page(0, Limit.of(10)).size());
+
+        ProductResponse added = new ProductResponse(6, "Product 6", 1);
+        database.put(6, added);
+        cache.productAdded(added);
+
+        assertEquals(6, cache.page(0, Limit.of(10)).size());
+        verify(productRepository, times(2)).findPage(0, Limit.of(10));
+    }
+
+    @Test
+    void maxSize_evictsAndReportsMetrics() {
+        ProductCatalogCache cache = cache(2, false);
+        for (int round = 0; round < 3; round++) {
+            for (int id = 1; id <= 5; id++) {
+                cache.get(id);
+            }
+        }
+
+        assertTrue(cache.productStats().evictionCount() > 0);
+        assertTrue(meterRegistry.get("cache.evictions").tag("cache", "products").functionCounter().count() > 0);
+        assertEquals(cache.productStats().missCount(),
+                (long) meterRegistry.get("cache.gets").tag("cache", "products").tag("result", "miss")
+                        .functionCounter().count());
+    }
+
+    @Test
+    void disabled_alwaysReadsDatabase() {
+        ProductCatalogCache cache = new ProductCatalogCache(productRepository, meterRegistry,
+                false, 100, 100, 60000, false, 1000);
+
+        cache.get(1);
+        cache.get(1);
+
+        verify(productRepository, times(2)).findResponseById(1);
+    }
+}
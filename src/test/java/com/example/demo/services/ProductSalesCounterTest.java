@@ -0,0 +1,129 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.StatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Places orders for one product through every path that reserves stock and checks the product's
+ * sales counter matches its stored orders, that the orders page by product, and that loading the
+ * product stays one statement however many orders it has.
+ */
+@SpringBootTest(properties = "orderup.stock.locking.mode=optimistic")
+@Import(StatementCounter.class)
+public class ProductSalesCounterTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    private ProductEntity product;
+    private ProductEntity other;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        product = productRepository.save(product("Best Seller", 10_000));
+        other = productRepository.save(product("Other", 100));
+    }
+
+    private static ProductEntity product(String name, int stock) {
+        ProductEntity product = new ProductEntity();
+        product.setProductName(name);
+        product.setStock(stock);
+        return product;
+    }
+
+    private static OrderRequest request(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    @Test
+    void unitsSold_followsEveryReservationPath() {
+        // Optimistic single orders write the entity; carts and groups use the conditional UPDATE.
+        for (int i = 0; i < 200; i++) {
+            orderService.placeOrder(request(product.getProductId(), "Single " + i));
+        }
+        OrderLineItem item = new OrderLineItem();
+        item.setProductId(product.getProductId());
+        item.setQuantity(300);
+        BatchOrderRequest cart = new BatchOrderRequest();
+        cart.setCustomerName("Cart");
+        cart.setItems(List.of(item));
+        orderService.placeOrders(cart);
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            group.add(request(i % 5 == 0 ? other.getProductId() : product.getProductId(), "Group " + i));
+        }
+        orderService.placeOrderGroup(group);
+
+        assertEquals(200 + 300 + 400, productService.getSales(product.getProductId()).getUnitsSold());
+        assertEquals(100, productService.getSales(other.getProductId()).getUnitsSold());
+        assertEquals(10_000 - 900, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+    }
+
+    @Test
+    void productOrders_pageByIdWithinProduct() {
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            group.add(request(i % 3 == 0 ? other.getProductId() : product.getProductId(), "Customer " + i));
+        }
+        orderService.placeOrderGroup(group);
+
+        List<OrderResponse> first = orderService.getOrdersForProduct(product.getProductId(), 0, 15);
+        List<OrderResponse> second = orderService.getOrdersForProduct(product.getProductId(),
+                first.get(first.size() - 1).getOrderId(), 15);
+
+        assertEquals(15, first.size());
+        assertEquals(5, second.size());
+        assertTrue(first.get(14).getOrderId() < second.get(0).getOrderId());
+        assertTrue(second.stream().allMatch(o -> o.getProduct().getProductId() == product.getProductId()));
+    }
+
+    @Test
+    void loadingProduct_doesNotTouchItsOrders() {
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            group.add(request(product.getProductId(), "Customer " + i));
+        }
+        orderService.placeOrderGroup(group);
+
+        statementCounter.reset();
+        ProductEntity loaded = productRepository.findById(product.getProductId()).orElseThrow();
+        productService.getSales(product.getProductId());
+
+        assertEquals(2, statementCounter.count());
+        assertEquals(2000, loaded.getUnitsSold());
+        assertFalse(loaded.toString().contains("Customer"));
+    }
+}
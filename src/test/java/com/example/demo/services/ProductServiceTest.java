@@ -1,12 +1,16 @@
 package com.example.demo.services;
 
 import com.example.demo.dtos.ProductRequest;
+import com.example.demo.dtos.ProductResponse;
 import com.example.demo.entity.ProductEntity;
 import com.example.demo.exceptions.ProductNotFoundException;
 import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Arrays;
 import java.util.List;
@@ -20,7 +24,18 @@ public class ProductServiceTest {
     @Mock
     private ProductRepository productRepository;
 
-    @InjectMocks
+    @Mock
+    private StockReservationEngine stockReservationEngine;
+
+    @Mock
+    private StockLedger stockLedger;
+
+    @Mock
+    private StockSlots stockSlots;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     private ProductService productService;
 
     private ProductEntity mockProduct;
@@ -28,6 +43,10 @@ public class ProductServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ProductCatalogCache productCatalogCache = new ProductCatalogCache(productRepository,
+                new SimpleMeterRegistry(), false, 100, 100, 60000, false, 1000);
+        productService = new ProductService(productRepository, stockReservationEngine, productCatalogCache,
+                stockLedger, stockSlots, transactionManager);
 
         mockProduct = new ProductEntity();
         mockProduct.setProductId(1);
@@ -37,16 +56,17 @@ public class ProductServiceTest {
 
     @Test
     void testGetAllProducts() {
-        List<ProductEntity> mockList = Arrays.asList(mockProduct);
+        List<ProductResponse> mockList = Arrays.asList(ProductResponse.from(mockProduct));
 
-        when(productRepository.findAll()).thenReturn(mockList);
+        when(productRepository.findPage(0, Limit.of(100))).thenReturn(mockList);
 
-        List<ProductEntity> result = productService.getAllProducts();
+        List<ProductResponse> result = productService.getProducts(0, 100);
 
         assertEquals(1, result.size());
         assertEquals("Test Product", result.get(0).getProductName());
 
-        verify(productRepository, times(1)).findAll();
+        verify(productRepository, times(1)).findPage(0, Limit.of(100));
+        verify(productRepository, never()).findAll();
     }
 
     @Test
@@ -73,27 +93,30 @@ public class ProductServiceTest {
 
     @Test
     void testUpdateStock_success() {
+        when(productRepository.incrementStock(1, 5)).thenAnswer(i -> {
+            mockProduct.setStock(mockProduct.getStock() + 5);
+            return 1;
+        });
         when(productRepository.findById(1)).thenReturn(Optional.of(mockProduct));
-        when(productRepository.save(any(ProductEntity.class))).thenAnswer(i -> i.getArguments()[0]);
 
         ProductEntity updatedProduct = productService.updateStock(1, 5);
 
         assertNotNull(updatedProduct);
         assertEquals(15, updatedProduct.getStock());
 
-        verify(productRepository).findById(1);
-        verify(productRepository).save(mockProduct);
+        verify(productRepository).incrementStock(1, 5);
+        verify(productRepository, never()).save(any(ProductEntity.class));
     }
 
     @Test
     void testUpdateStock_productNotFound() {
-        when(productRepository.findById(99)).thenReturn(Optional.empty());
+        when(productRepository.incrementStock(99, 5)).thenReturn(0);
 
         assertThrows(ProductNotFoundException.class, () -> {
             productService.updateStock(99, 5);
         });
 
-        verify(productRepository).findById(99);
+        verify(productRepository).incrementStock(99, 5);
         verify(productRepository, never()).save(any(ProductEntity.class));
     }
 }
@@ -0,0 +1,93 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.ReplicaSchema;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the in-memory engine with read routing on and a replica that trails the primary, and checks
+ * the engine loads and reconciles its counters from the primary. Reconciling against the replica
+ * would drag the counter back to the replica's stock.
+ */
+@SpringBootTest(properties = {
+        "orderup.datasource.read.enabled=true",
+        "orderup.datasource.read.url=jdbc:h2:mem:replica-${random.uuid};MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "orderup.stock.in-memory.enabled=true",
+        "orderup.stock.in-memory.flush-interval-ms=3600000",
+        "orderup.stock.in-memory.reconcile-interval-ms=3600000"})
+@Import(ReplicaSchema.class)
+public class ReadWriteRoutingEngineTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private StockReservationEngine stockReservationEngine;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    @Qualifier("writeDataSource")
+    private HikariDataSource writeDataSource;
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private HikariDataSource readDataSource;
+
+    private JdbcTemplate primary;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setup() {
+        primary = new JdbcTemplate(writeDataSource);
+        replica = new JdbcTemplate(readDataSource);
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        replica.update("DELETE FROM products");
+    }
+
+    @Test
+    void counters_areLoadedAndReconciledFromPrimary() {
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName("Restocked on the primary");
+        entity.setStock(100);
+        ProductEntity product = productRepository.save(entity);
+        // The replica has not caught up with a restock from 10 to 100.
+        replica.update("INSERT INTO products (product_id, product_name, stock, units_sold, version) VALUES (?, ?, 10, 0, 0)",
+                product.getProductId(), product.getProductName());
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName("Customer");
+        // Reads that do not ask for the primary are served by the replica.
+        assertEquals(10, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+
+        orderService.placeOrder(request);
+        assertEquals(Optional.of(99), stockReservationEngine.availableStock(product.getProductId()));
+
+        stockReservationEngine.flush();
+        stockReservationEngine.reconcile();
+
+        assertEquals(Optional.of(99), stockReservationEngine.availableStock(product.getProductId()));
+        assertEquals(99, primary.queryForObject("SELECT stock FROM products", Integer.class));
+        assertEquals(10, replica.queryForObject("SELECT stock FROM products", Integer.class));
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.OrderResponse;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.IdempotencyKeyRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.support.ReplicaSchema;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Routes read-only transactions to a second embedded database standing in for a replica, and
+ * checks that reads are served from it, that orders are written to the primary, and that a crowd
+ * of readers queues on the read pool while orders keep getting write connections straight away.
+ */
+@SpringBootTest(properties = {
+        "orderup.datasource.read.enabled=true",
+        "orderup.datasource.read.url=jdbc:h2:mem:replica-${random.uuid};MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "orderup.datasource.read.pool-size=2",
+        "spring.datasource.hikari.maximum-pool-size=4"})
+@Import(ReplicaSchema.class)
+public class ReadWriteRoutingTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private IdempotencyIndex idempotencyIndex;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private IdempotencyKeyRepository idempotencyKeyRepository;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("writeDataSource")
+    private HikariDataSource writeDataSource;
+
+    @Autowired
+    @Qualifier("readDataSource")
+    private HikariDataSource readDataSource;
+
+    private JdbcTemplate primary;
+
+    private JdbcTemplate replica;
+
+    @BeforeEach
+    void setup() {
+        primary = new JdbcTemplate(writeDataSource);
+        replica = new JdbcTemplate(readDataSource);
+        idempotencyKeyRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        replica.update("DELETE FROM orders");
+        replica.update("DELETE FROM products");
+    }
+
+    private ProductEntity product(String name, int stock) {
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName(name);
+        entity.setStock(stock);
+        return productRepository.save(entity);
+    }
+
+    private void replicate(ProductEntity product, int stock) {
+        replica.update("INSERT INTO products (product_id, product_name, stock, units_sold, version) VALUES (?, ?, ?, 0, 0)",
+                product.getProductId(), product.getProductName(), stock);
+    }
+
+    private OrderRequest request(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    @Test
+    void readOnlyServiceMethods_readFromReplica() {
+        ProductEntity replicated = product("Replicated", 10);
+        replicate(replicated, 7);
+        ProductEntity notYetReplicated = product("Not yet replicated", 10);
+
+        assertEquals(7, productService.getProduct(replicated.getProductId()).getStock());
+        assertEquals(1, productService.getProducts(0, 10).size());
+        assertThrows(ProductNotFoundException.class, () -> productService.getProduct(notYetReplicated.getProductId()));
+    }
+
+    @Test
+    void placeOrder_writesPrimary() {
+        ProductEntity product = product("Ordered", 10);
+        replicate(product, 10);
+
+        orderService.placeOrder(request(product.getProductId(), "Customer"));
+
+        assertEquals(9, primary.queryForObject("SELECT stock FROM products", Integer.class));
+        assertEquals(1, primary.queryForObject("SELECT COUNT(*) FROM orders", Integer.class));
+        // Nothing replicates the order, so reads do not see it yet.
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM orders", Integer.class));
+        assertTrue(orderService.getOrders(0, 10).isEmpty());
+    }
+
+    @Test
+    void freshHoldsAndIdempotencyKeys_areLookedUpOnPrimary() {
+        ProductEntity product = product("Held", 10);
+        replicate(product, 10);
+        HoldRequest holdRequest = new HoldRequest();
+        holdRequest.setProductId(product.getProductId());
+        holdRequest.setCustomerName("Customer");
+        StockHoldEntity hold = stockHoldService.hold(holdRequest);
+
+        // Nothing replicates the hold, so finding it on the replica would answer 404.
+        stockHoldService.release(hold.getHoldId());
+        assertEquals(10, primary.queryForObject("SELECT stock FROM products", Integer.class));
+
+        OrderResponse placed = idempotencyIndex.placeOnce("routed-key", request(product.getProductId(), "Customer"),
+                () -> OrderResponse.from(orderService.placeOrder(request(product.getProductId(), "Customer"))));
+        IdempotencyIndex otherNode = new IdempotencyIndex(idempotencyKeyRepository, orderRepository, orderShards,
+                transactionManager, new SimpleMeterRegistry(), 1000, 60000, 30000);
+        OrderResponse replayed = otherNode.placeOnce("routed-key", request(product.getProductId(), "Customer"),
+                () -> fail("the claim on the primary must be found"));
+
+        assertEquals(placed.getOrderId(), replayed.getOrderId());
+        assertEquals(0, replica.queryForObject("SELECT COUNT(*) FROM idempotency_keys", Integer.class));
+    }
+
+    @Test
+    void readOnlyTransaction_disablesFlushAndDirtyChecking() {
+        ProductEntity product = product("Read only", 10);
+        replicate(product, 10);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        readOnly.executeWithoutResult(status -> {
+            Session session = entityManager.unwrap(Session.class);
+            assertEquals(FlushMode.MANUAL, session.getHibernateFlushMode());
+            assertTrue(session.isDefaultReadOnly());
+            ProductEntity loaded = entityManager.find(ProductEntity.class, product.getProductId());
+            assertTrue(session.isReadOnly(loaded));
+            loaded.setStock(0);
+        });
+
+        assertEquals(10, primary.queryForObject("SELECT stock FROM products", Integer.class));
+        assertEquals(10, replica.queryForObject("SELECT stock FROM products", Integer.class));
+    }
+
+    @Test
+    void mixedLoad_readersQueueOnReadPool_ordersNeverWait() throws Exception {
+        List<ProductEntity> products = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            ProductEntity product = product("Product " + i, 1000);
+            replicate(product, 1000);
+            products.add(product);
+        }
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger peakWriteWaiters = new AtomicInteger();
+        AtomicInteger peakReadWaiters = new AtomicInteger();
+        Thread sampler = new Thread(() -> {
+            while (running.get()) {
+                peakWriteWaiters.accumulateAndGet(writeDataSource.getHikariPoolMXBean().getThreadsAwaitingConnection(), Math::max);
+                peakReadWaiters.accumulateAndGet(readDataSource.getHikariPoolMXBean().getThreadsAwaitingConnection(), Math::max);
+                Thread.onSpinWait();
+            }
+        });
+        sampler.start();
+
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger reads = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(18);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 16; t++) {
+            tasks.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    productService.getProducts(0, 20);
+                    orderService.getOrders(0, 50);
+                    reads.addAndGet(2);
+                }
+                return null;
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            int writer = t;
+            tasks.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 100; i++) {
+                    int productId = products.get((writer * 100 + i) % products.size()).getProductId();
+                    orderService.placeOrder(request(productId, "Writer " + writer));
+                    placed.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+        running.set(false);
+        sampler.join();
+
+        assertEquals(3200, reads.get());
+        assertEquals(200, placed.get());
+        assertEquals(200, primary.queryForObject("SELECT COUNT(*) FROM orders", Integer.class));
+        assertTrue(peakReadWaiters.get() > 0, "readers never contended for the read pool");
+        assertEquals(0, peakWriteWaiters.get(), "an order waited for a write connection");
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.exceptions.HoldNotFoundException;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StockHoldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Holds, confirms, releases and expires stock holds on H2, and checks that stock always ends up
+ * either sold or back on the shelf exactly once.
+ */
+@SpringBootTest(properties = {
+        "orderup.holds.tick-ms=10",
+        "orderup.holds.orphan-grace-ms=0",
+        "orderup.holds.orphan-sweep-interval-ms=3600000"})
+public class StockHoldTest {
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockHoldRepository stockHoldRepository;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        stockHoldRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName("Checkout");
+        entity.setStock(100);
+        product = productRepository.save(entity);
+    }
+
+    private HoldRequest request(int quantity, Integer ttlSeconds) {
+        HoldRequest request = new HoldRequest();
+        request.setProductId(product.getProductId());
+        request.setQuantity(quantity);
+        request.setCustomerName("Alice");
+        request.setTtlSeconds(ttlSeconds);
+        return request;
+    }
+
+    private int stock() {
+        return productRepository.findStockById(product.getProductId()).orElseThrow();
+    }
+
+    private long unitsSold() {
+        return productRepository.findById(product.getProductId()).orElseThrow().getUnitsSold();
+    }
+
+    private void awaitStock(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stock() != expected && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, stock());
+    }
+
+    @Test
+    void confirm_placesOrdersWithoutTakingStockAgain() {
+        StockHoldEntity hold = stockHoldService.hold(request(3, null));
+        assertEquals(97, stock());
+
+        assertEquals(3, stockHoldService.confirm(hold.getHoldId()).size());
+
+        assertEquals(97, stock());
+        assertEquals(3, unitsSold());
+        assertEquals(3, orderRepository.count());
+        assertEquals(0, stockHoldRepository.count());
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.confirm(hold.getHoldId()));
+    }
+
+    @Test
+    void release_putsStockBack() {
+        StockHoldEntity hold = stockHoldService.hold(request(4, null));
+
+        stockHoldService.release(hold.getHoldId());
+
+        assertEquals(100, stock());
+        assertEquals(0, unitsSold());
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.release(hold.getHoldId()));
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.confirm(hold.getHoldId()));
+    }
+
+    @Test
+    void hold_moreThanStock_isRejected() {
+        assertThrows(OutOfStockException.class, () -> stockHoldService.hold(request(101, null)));
+        assertThrows(InvalidRequestException.class, () -> stockHoldService.hold(request(0, null)));
+        assertThrows(InvalidRequestException.class, () -> stockHoldService.hold(request(1, 7200)));
+
+        assertEquals(100, stock());
+        assertEquals(0, stockHoldRepository.count());
+    }
+
+    @Test
+    void expiredHold_isReleasedByWheel() throws InterruptedException {
+        StockHoldEntity hold = stockHoldService.hold(request(5, 1));
+        stockHoldService.hold(request(5, null));
+        assertEquals(90, stock());
+
+        awaitStock(95);
+
+        assertThrows(HoldNotFoundException.class, () -> stockHoldService.confirm(hold.getHoldId()));
+        assertEquals(1, stockHoldRepository.count());
+        assertEquals(5, unitsSold());
+    }
+
+    @Test
+    void confirmRacingRelease_actsOnce() throws Exception {
+        List<StockHoldEntity> holds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            holds.add(stockHoldService.hold(request(1, null)));
+        }
+        assertEquals(50, stock());
+
+        AtomicInteger confirmed = new AtomicInteger();
+        AtomicInteger released = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (StockHoldEntity hold : holds) {
+            tasks.add(pool.submit(() -> {
+                start.await();
+                try {
+                    stockHoldService.confirm(hold.getHoldId());
+                    confirmed.incrementAndGet();
+                } catch (HoldNotFoundException e) {
+                    // Released first.
+                }
+                return null;
+            }));
+            tasks.add(pool.submit(() -> {
+                start.await();
+                try {
+                    stockHoldService.release(hold.getHoldId());
+                    released.incrementAndGet();
+                } catch (HoldNotFoundException e) {
+                    // Confirmed first.
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+
+        assertEquals(50, confirmed.get() + released.get());
+        assertEquals(confirmed.get(), orderRepository.count());
+        assertEquals(100 - confirmed.get(), stock());
+        assertEquals(confirmed.get(), unitsSold());
+    }
+
+    @Test
+    void orphanedHold_isReleasedBySweep() {
+        productRepository.decrementStock(product.getProductId(), 6);
+        StockHoldEntity orphan = new StockHoldEntity();
+        orphan.setProductId(product.getProductId());
+        orphan.setQuantity(6);
+        orphan.setCreatedAt(LocalDateTime.now().minusMinutes(20));
+        orphan.setExpiresAt(LocalDateTime.now().minusMinutes(10));
+        stockHoldRepository.save(orphan);
+
+        stockHoldService.sweepOrphans();
+
+        assertEquals(100, stock());
+        assertEquals(0, stockHoldRepository.count());
+    }
+
+    @Test
+    void load_schedulesHoldsMadeBeforeRestart() throws InterruptedException {
+        productRepository.decrementStock(product.getProductId(), 2);
+        StockHoldEntity earlier = new StockHoldEntity();
+        earlier.setProductId(product.getProductId());
+        earlier.setQuantity(2);
+        earlier.setCreatedAt(LocalDateTime.now());
+        earlier.setExpiresAt(LocalDateTime.now().plusNanos(300_000_000));
+        stockHoldRepository.save(earlier);
+
+        stockHoldService.load();
+
+        awaitStock(100);
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.demo.services;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.StockLevel;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Kills a process that is placing orders through the in-memory engine while none of its
+ * reservations have been flushed, then starts the application again on the same database and
+ * journal and checks every committed order is taken off the stock. Also checks that units of a
+ * released hold are not taken off again after a restart.
+ */
+public class StockJournalRecoveryTest {
+
+    private static final int INITIAL_STOCK = 10_000;
+    private static final int WRITERS = 4;
+    private static final int ORDERS_BEFORE_KILL = 300;
+
+    @TempDir
+    Path directory;
+
+    private static List<String> arguments(Path directory, boolean flush) {
+        return List.of(
+                "--spring.datasource.url=jdbc:h2:file:" + directory.resolve("db") + ";MODE=MySQL;WRITE_DELAY=0;FILE_LOCK=NO",
+                "--spring.jpa.hibernate.ddl-auto=update",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=OFF",
+                "--orderup.stock.in-memory.enabled=true",
+                "--orderup.stock.in-memory.reconcile-interval-ms=3600000",
+                "--orderup.stock.in-memory.flush-interval-ms=" + (flush ? 100 : 3600000),
+                "--orderup.stock.journal.enabled=true",
+                "--orderup.stock.journal.dir=" + directory.resolve("journal"));
+    }
+
+    @Test
+    void killedMidStream_restartFlushesEveryCommittedOrder() throws Exception {
+        List<String> command = new ArrayList<>(List.of(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", System.getProperty("java.class.path"), Writer.class.getName()));
+        command.addAll(arguments(directory, false));
+        Process writer = new ProcessBuilder(command).redirectErrorStream(true).start();
+
+        int productId = -1;
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream()))) {
+            String line;
+            while ((line = output.readLine()) != null) {
+                if (line.startsWith("product ")) {
+                    productId = Integer.parseInt(line.substring(8));
+                } else if (line.startsWith("placed ") && Integer.parseInt(line.substring(7)) >= ORDERS_BEFORE_KILL) {
+                    break;
+                }
+            }
+            assertNotNull(line, "writer exited before placing enough orders");
+            writer.destroyForcibly();
+            assertTrue(writer.waitFor(30, TimeUnit.SECONDS));
+        } finally {
+            writer.destroyForcibly();
+        }
+
+        String url = arguments(directory, true).get(0).substring("--spring.datasource.url=".length());
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             ResultSet row = connection.createStatement().executeQuery(
+                     "SELECT stock, units_sold FROM products WHERE product_id = " + productId)) {
+            assertTrue(row.next());
+            assertEquals(INITIAL_STOCK, row.getInt(1), "nothing should have been flushed before the kill");
+            assertEquals(0, row.getLong(2));
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(arguments(directory, true).toArray(String[]::new))) {
+            long orders = context.getBean(JdbcTemplate.class).queryForObject(
+                    "SELECT COUNT(*) FROM orders WHERE product_id = ?", Long.class, productId);
+            StockLevel level = context.getBean(ProductRepository.class).findStockLevelById(productId).orElseThrow();
+
+            assertTrue(orders >= ORDERS_BEFORE_KILL);
+            // At most the orders in flight at the kill were journaled without committing.
+            long writtenOff = level.getUnitsSold() - orders;
+            assertTrue(writtenOff >= 0 && writtenOff <= WRITERS, "units sold " + level.getUnitsSold() + ", orders " + orders);
+            assertEquals(INITIAL_STOCK - level.getUnitsSold(), level.getStock());
+            assertEquals(Optional.of(level.getStock()),
+                    context.getBean(StockReservationEngine.class).availableStock(productId));
+        }
+    }
+
+    @Test
+    void releasedHold_staysOnTheShelfAfterRestart() {
+        String[] args = arguments(directory, true).toArray(String[]::new);
+        int productId;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args)) {
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Held");
+            product.setStock(100);
+            productId = context.getBean(ProductRepository.class).save(product).getProductId();
+
+            HoldRequest request = new HoldRequest();
+            request.setProductId(productId);
+            request.setQuantity(5);
+            request.setCustomerName("Checkout");
+            StockHoldService holds = context.getBean(StockHoldService.class);
+            StockHoldEntity hold = holds.hold(request);
+            holds.release(hold.getHoldId());
+        }
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args)) {
+            StockLevel level = context.getBean(ProductRepository.class).findStockLevelById(productId).orElseThrow();
+
+            assertEquals(100, level.getStock());
+            assertEquals(0, level.getUnitsSold());
+            assertEquals(Optional.of(100), context.getBean(StockReservationEngine.class).availableStock(productId));
+        }
+    }
+
+    /**
+     * Places orders for one product from several threads until the process is killed.
+     */
+    public static final class Writer {
+
+        public static void main(String[] args) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(DemoApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(args);
+            ProductEntity product = new ProductEntity();
+            product.setProductName("Crash");
+            product.setStock(INITIAL_STOCK);
+            int productId = context.getBean(ProductRepository.class).save(product).getProductId();
+            System.out.println("product " + productId);
+
+            OrderService orderService = context.getBean(OrderService.class);
+            AtomicInteger placed = new AtomicInteger();
+            ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+            for (int i = 0; i < WRITERS; i++) {
+                writers.execute(() -> {
+                    while (true) {
+                        OrderRequest request = new OrderRequest();
+                        request.setProductId(productId);
+                        request.setCustomerName("Writer");
+                        orderService.placeOrder(request);
+                        System.out.println("placed " + placed.incrementAndGet());
+                    }
+                });
+            }
+        }
+    }
+}
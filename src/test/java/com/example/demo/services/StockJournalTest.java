@@ -0,0 +1,96 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private StockJournal open() {
+        return new StockJournal(true, true, directory.toString(), 100);
+    }
+
+    private Path log() {
+        return directory.resolve(StockJournal.LOG_FILE);
+    }
+
+    @Test
+    void disabledWithoutEngine_touchesNoFiles() throws IOException {
+        StockJournal journal = new StockJournal(false, true, directory.resolve("unused").toString(), 100);
+
+        assertFalse(journal.isEnabled());
+        assertFalse(Files.exists(directory.resolve("unused")));
+    }
+
+    @Test
+    void reopen_afterCrash_replaysLogTail() {
+        StockJournal journal = open();
+        journal.track(6, 10);
+        journal.track(7, 0);
+        journal.append(6, 3);
+        journal.append(7, 1);
+        journal.append(6, 2);
+        journal.append(6, -2);
+
+        // Not closed: the process died with everything still in the log.
+        assertEquals(4 * 20, log().toFile().length());
+        assertEquals(Map.of(6, 13L, 7, 1L), open().recovered());
+    }
+
+    @Test
+    void snapshot_foldsLogIntoSnapshot() {
+        StockJournal journal = open();
+        journal.track(6, 10);
+        journal.append(6, 5);
+        journal.snapshot();
+        journal.append(6, 1);
+
+        assertEquals(20, log().toFile().length());
+        assertEquals(Map.of(6, 16L), open().recovered());
+    }
+
+    @Test
+    void reopen_discardsTornAndCorruptTail() throws IOException {
+        StockJournal journal = open();
+        journal.track(6, 0);
+        journal.append(6, 1);
+        journal.append(6, 1);
+        byte[] bytes = Files.readAllBytes(log());
+        // A half-written third record, and the second record's checksum broken.
+        bytes[39] ^= 1;
+        Files.write(log(), bytes);
+        Files.write(log(), new byte[]{0, 0, 0, 6, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(Map.of(6, 1L), open().recovered());
+    }
+
+    @Test
+    void close_leavesOnlySnapshot() {
+        StockJournal journal = open();
+        journal.track(6, 4);
+        journal.append(6, 1);
+        journal.close();
+
+        assertEquals(0, log().toFile().length());
+        assertEquals(Map.of(6, 5L), open().recovered());
+    }
+
+    @Test
+    void append_untrackedProduct_throws() {
+        StockJournal journal = open();
+        journal.track(6, 0);
+        journal.forget(6);
+
+        assertThrows(IllegalStateException.class, () -> journal.append(6, 1));
+    }
+}
@@ -0,0 +1,314 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.StockLeaseRepository;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.AdditionalAnswers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Simulates several application nodes in one JVM, each with its own {@link StockLeases} and
+ * {@link OrderService} over the one embedded database, and checks that leased stock is never
+ * oversold, is returned on shutdown and is reclaimed from a node that went down. The scaling check
+ * counts writes to the product row per order; timing the nodes is left to the {@code benchmark} run.
+ */
+@SpringBootTest(properties = {
+        "orderup.stock.leases.enabled=true",
+        "orderup.stock.leases.renew-interval-ms=3600000"})
+public class StockLeasesTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLeasesTest.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @Autowired
+    private StockLeaseRepository stockLeaseRepository;
+
+    @Autowired
+    private StockReservationEngine stockReservationEngine;
+
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    @Autowired
+    private StockLockingPolicy stockLockingPolicy;
+
+    @Autowired
+    private HotProductCombiner hotProductCombiner;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Autowired
+    private StockSlots stockSlots;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final List<Node> nodes = new ArrayList<>();
+
+    private ProductEntity product;
+
+    private record Node(StockLeases leases, OrderService orders, SimpleMeterRegistry meters) {
+        double leasesAcquired() {
+            return meters.counter("orderup.stock.leases.acquired").count();
+        }
+    }
+
+    @BeforeEach
+    void setup() {
+        stockLeaseRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+    }
+
+    @AfterEach
+    void closeNodes() {
+        nodes.forEach(node -> node.leases().close());
+        nodes.clear();
+    }
+
+    private void product(int stock) {
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName("Multi-node");
+        entity.setStock(stock);
+        product = productRepository.save(entity);
+    }
+
+    private Node node(String nodeId, long ttlMs, long graceMs) {
+        return node(nodeId, ttlMs, graceMs, Ticker.systemTicker());
+    }
+
+    private Node node(String nodeId, long ttlMs, long graceMs, Ticker ticker) {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        StockLeases leases = new StockLeases(productRepository, stockLeaseRepository, orderRepository,
+                orderShards, productCatalogCache, stockLedger, transactionManager, meters, false, true, nodeId, 50,
+                0.25, 0.2, ttlMs, graceMs, ticker);
+        OrderService orders = new OrderService(productRepository, orderRepository, orderShards, stockReservationEngine,
+                productCatalogCache, stockLockingPolicy, hotProductCombiner, stockLedger, customerOrderCache,
+                stockSlots, leases, transactionManager);
+        Node node = new Node(leases, orders, meters);
+        nodes.add(node);
+        return node;
+    }
+
+    private OrderRequest request(String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    /**
+     * Places {@code ordersPerNode} orders on every node from {@code threadsPerNode} threads each.
+     *
+     * @return the orders placed
+     */
+    private int run(List<Node> cluster, int threadsPerNode, int ordersPerNode) throws Exception {
+        AtomicInteger placed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(cluster.size() * threadsPerNode);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Node node : cluster) {
+            AtomicInteger left = new AtomicInteger(ordersPerNode);
+            for (int t = 0; t < threadsPerNode; t++) {
+                tasks.add(pool.submit(() -> {
+                    start.await();
+                    while (left.getAndDecrement() > 0) {
+                        try {
+                            node.orders().placeOrder(request("Customer"));
+                            placed.incrementAndGet();
+                        } catch (OutOfStockException e) {
+                            // Sold out, or this node's share is.
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        start.countDown();
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+        return placed.get();
+    }
+
+    private int stock() {
+        return productRepository.findStockById(product.getProductId()).orElseThrow();
+    }
+
+    @Test
+    void severalNodes_neverOversell_andReturnLeasesOnShutdown() throws Exception {
+        product(1000);
+        List<Node> cluster = List.of(node("node-1", 30000, 10000), node("node-2", 30000, 10000),
+                node("node-3", 30000, 10000), node("node-4", 30000, 10000));
+
+        int placed = run(cluster, 4, 300);
+        cluster.forEach(node -> node.leases().close());
+
+        assertTrue(placed <= 1000, "oversold: " + placed);
+        assertTrue(placed > 950, "too many units stranded in leases: " + placed);
+        assertEquals(placed, orderRepository.count());
+        assertEquals(1000 - placed, stock());
+        assertEquals(placed, productRepository.findById(product.getProductId()).orElseThrow().getUnitsSold());
+        assertEquals(0, stockLeaseRepository.count());
+    }
+
+    @Test
+    void downedNode_leaseIsReclaimedByAnother() {
+        product(1000);
+        Node crashed = node("crashed", 30000, 0);
+        Node survivor = node("survivor", 30000, 0);
+
+        for (int i = 0; i < 10; i++) {
+            crashed.orders().placeOrder(request("Before crash"));
+        }
+        // The crashed node holds a block of 50, 10 of them sold, and its lease runs out unrenewed.
+        nodes.remove(crashed);
+        assertEquals(950, stock());
+        stockLeaseRepository.findAll().forEach(lease -> {
+            lease.setExpiresAt(LocalDateTime.now().minusMinutes(1));
+            stockLeaseRepository.save(lease);
+        });
+
+        survivor.leases().maintain();
+
+        assertEquals(990, stock());
+        assertEquals(0, stockLeaseRepository.count());
+    }
+
+    @Test
+    void idleProduct_isForgottenAndItsLeaseReturned() {
+        product(1000);
+        AtomicLong now = new AtomicLong();
+        Node node = node("idle", 30000, 10000, now::get);
+
+        for (int i = 0; i < 10; i++) {
+            node.orders().placeOrder(request("Before idle"));
+        }
+        assertEquals(950, stock());
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(30001));
+        node.leases().maintain();
+
+        assertEquals(990, stock());
+        assertEquals(0, stockLeaseRepository.count());
+
+        node.orders().placeOrder(request("After idle"));
+        assertEquals(1, stockLeaseRepository.count());
+        assertEquals(11, orderRepository.count());
+    }
+
+    @Test
+    void leaseOpenedWhileRenewing_isNotTakenForReclaimed() {
+        product(1000);
+        ProductEntity other = new ProductEntity();
+        other.setProductName("Leased mid-renewal");
+        other.setStock(1000);
+        int otherId = productRepository.save(other).getProductId();
+        StockLeaseRepository repository = mock(StockLeaseRepository.class, AdditionalAnswers.delegatesTo(stockLeaseRepository));
+        StockLeases leases = new StockLeases(productRepository, repository, orderRepository, orderShards,
+                productCatalogCache, stockLedger, transactionManager, new SimpleMeterRegistry(), false, true,
+                "renewing", 50, 0.25, 0.2, 30000, 10000, Ticker.systemTicker());
+        nodes.add(new Node(leases, null, new SimpleMeterRegistry()));
+        leases.take(product.getProductId()).orElseThrow().done();
+        List<Integer> openedMidRenewal = new ArrayList<>();
+        // An order leases a block after the renewal has read back this node's lease ids.
+        doAnswer(invocation -> {
+            List<Integer> ids = stockLeaseRepository.findIdsByNode(invocation.getArgument(0));
+            StockLeases.Lease lease = leases.take(otherId).orElseThrow();
+            lease.done();
+            openedMidRenewal.add(lease.getLeaseId());
+            return ids;
+        }).when(repository).findIdsByNode(anyString());
+
+        leases.maintain();
+
+        int leaseId = openedMidRenewal.get(0);
+        assertTrue(stockLeaseRepository.existsById(leaseId), "a fresh lease was returned as reclaimed");
+        assertEquals(leaseId, leases.take(otherId).orElseThrow().getLeaseId());
+        assertEquals(950, productRepository.findStockById(otherId).orElseThrow());
+    }
+
+    private List<Node> fourNodes() {
+        return List.of(node("a", 30000, 10000), node("b", 30000, 10000),
+                node("c", 30000, 10000), node("d", 30000, 10000));
+    }
+
+    @Test
+    void productRowWrites_stayPerBlockAsNodesAreAdded() throws Exception {
+        product(1_000_000);
+        List<Node> one = List.of(node("solo", 30000, 10000));
+        int placedByOne = run(one, 4, 1000);
+        List<Node> four = fourNodes();
+        int placedByFour = run(four, 4, 1000);
+
+        assertEquals(1000, placedByOne);
+        assertEquals(4000, placedByFour);
+        double oneNodeWrites = one.get(0).leasesAcquired();
+        double fourNodeWrites = four.stream().mapToDouble(Node::leasesAcquired).sum();
+        // About one product-row UPDATE per block of 50 orders, however many nodes share the product;
+        // a node may refill once more near the end of its run.
+        assertTrue(oneNodeWrites <= 1000 / 50 + 2, "writes: " + oneNodeWrites);
+        assertTrue(fourNodeWrites <= 4000 / 50 + 4 * 2, "writes: " + fourNodeWrites);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void leasedOrders_throughputAsNodesAreAdded() throws Exception {
+        product(1_000_000);
+        List<Node> one = List.of(node("solo", 30000, 10000));
+        long start = System.nanoTime();
+        int placedByOne = run(one, 4, 2000);
+        double oneNodeRate = placedByOne / ((System.nanoTime() - start) / 1e9);
+
+        List<Node> four = fourNodes();
+        start = System.nanoTime();
+        int placedByFour = run(four, 4, 2000);
+        double fourNodeRate = placedByFour / ((System.nanoTime() - start) / 1e9);
+        logger.info("leased orders: 1 node {}/s, 4 nodes {}/s", Math.round(oneNodeRate), Math.round(fourNodeRate));
+
+        assertEquals(2000, placedByOne);
+        assertEquals(8000, placedByFour);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.HoldRequest;
+import com.example.demo.dtos.OrderLineItem;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.dtos.ProductRequest;
+import com.example.demo.dtos.ProductResponse;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.StockEventEntity;
+import com.example.demo.entity.StockHoldEntity;
+import com.example.demo.repository.CustomerOrdersViewRepository;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.OrderShards;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.ProductStockViewRepository;
+import com.example.demo.repository.QueuedStockEventRepository;
+import com.example.demo.repository.StockEventRepository;
+import com.example.demo.repository.StockHoldRepository;
+import com.example.demo.repository.StockLeaseRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Places orders and restocks with the ledger on and checks the projection agrees with the
+ * {@code products} table, both when built incrementally and when rebuilt from the whole ledger,
+ * and while stock holds and leases have units off the table.
+ */
+@SpringBootTest(properties = {
+        "orderup.ledger.enabled=true",
+        "orderup.ledger.projection-interval-ms=3600000",
+        "orderup.ledger.projection-batch-size=100"})
+public class StockLedgerTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockLedger stockLedger;
+
+    @Autowired
+    private StockProjector stockProjector;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private StockEventRepository stockEventRepository;
+
+    @Autowired
+    private QueuedStockEventRepository queuedStockEventRepository;
+
+    @Autowired
+    private ProductStockViewRepository productStockViewRepository;
+
+    @Autowired
+    private CustomerOrdersViewRepository customerOrdersViewRepository;
+
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private StockHoldRepository stockHoldRepository;
+
+    @Autowired
+    private StockLeaseRepository stockLeaseRepository;
+
+    @Autowired
+    private OrderShards orderShards;
+
+    @Autowired
+    private StockReservationEngine stockReservationEngine;
+
+    @Autowired
+    private ProductCatalogCache productCatalogCache;
+
+    @Autowired
+    private StockLockingPolicy stockLockingPolicy;
+
+    @Autowired
+    private HotProductCombiner hotProductCombiner;
+
+    @Autowired
+    private CustomerOrderCache customerOrderCache;
+
+    @Autowired
+    private StockSlots stockSlots;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setup() {
+        stockHoldRepository.deleteAll();
+        stockLeaseRepository.deleteAll();
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+        queuedStockEventRepository.deleteAllInBatch();
+        stockEventRepository.deleteAllInBatch();
+        productStockViewRepository.deleteAllInBatch();
+        customerOrdersViewRepository.deleteAllInBatch();
+    }
+
+    private ProductEntity addProduct(String name, int stock) {
+        ProductRequest request = new ProductRequest();
+        request.setProductName(name);
+        request.setStock(stock);
+        return productService.addProduct(request);
+    }
+
+    private static OrderRequest request(int productId, String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(productId);
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    private void placeOrders(ProductEntity first, ProductEntity second) {
+        for (int i = 0; i < 40; i++) {
+            orderService.placeOrder(request(first.getProductId(), "Customer " + (i % 4)));
+        }
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            group.add(request(i % 3 == 0 ? second.getProductId() : first.getProductId(), "Customer " + (i % 4)));
+        }
+        orderService.placeOrderGroup(group);
+        OrderLineItem item = new OrderLineItem();
+        item.setProductId(second.getProductId());
+        item.setQuantity(25);
+        BatchOrderRequest cart = new BatchOrderRequest();
+        cart.setCustomerName("Cart");
+        cart.setItems(List.of(item));
+        orderService.placeOrders(cart);
+        productService.updateStock(second.getProductId(), 70);
+    }
+
+    private Map<Integer, Integer> tableStock() {
+        return productRepository.findAll().stream()
+                .collect(Collectors.toMap(ProductEntity::getProductId, ProductEntity::getStock));
+    }
+
+    private Map<Integer, Integer> projectedStock() {
+        return productService.getProducts(0, 100).stream()
+                .collect(Collectors.toMap(ProductResponse::getProductId, ProductResponse::getStock));
+    }
+
+    @Test
+    void project_matchesProductsTable() {
+        ProductEntity first = addProduct("First", 500);
+        ProductEntity second = addProduct("Second", 100);
+        placeOrders(first, second);
+
+        assertEquals(40 + 150 + 25 + 3, stockLedger.getEvents(0, 1000).size());
+        assertEquals(218, stockProjector.project());
+        assertEquals(0, queuedStockEventRepository.count());
+        assertEquals(Map.of(first.getProductId(), 500 - 140, second.getProductId(), 100 - 75 + 70), tableStock());
+        assertEquals(tableStock(), projectedStock());
+        assertEquals("Second", productService.getProduct(second.getProductId()).getProductName());
+
+        assertEquals(10 + 38, stockLedger.getCustomerOrders("Customer 0").getOrderCount());
+        assertEquals(25, stockLedger.getCustomerOrders("Cart").getOrderCount());
+        assertEquals(0, stockLedger.getCustomerOrders("Nobody").getOrderCount());
+        assertEquals(0, stockProjector.project());
+    }
+
+    @Test
+    void rebuild_matchesIncrementalProjection() {
+        ProductEntity first = addProduct("First", 500);
+        ProductEntity second = addProduct("Second", 100);
+        placeOrders(first, second);
+        stockProjector.project();
+        Map<Integer, Integer> incremental = projectedStock();
+        long customerOrders = stockLedger.getCustomerOrders("Customer 1").getOrderCount();
+
+        stockProjector.rebuild();
+
+        assertEquals(incremental, projectedStock());
+        assertEquals(customerOrders, stockLedger.getCustomerOrders("Customer 1").getOrderCount());
+    }
+
+    @Test
+    void projection_lagsUntilProjectorRuns() {
+        ProductEntity product = addProduct("Lagging", 10);
+        stockProjector.project();
+        orderService.placeOrder(request(product.getProductId(), "Early"));
+
+        assertEquals(9, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+        assertEquals(10, productService.getProduct(product.getProductId()).getStock());
+        stockProjector.project();
+        assertEquals(9, productService.getProduct(product.getProductId()).getStock());
+    }
+
+    private StockHoldEntity hold(ProductEntity product, int quantity) {
+        HoldRequest request = new HoldRequest();
+        request.setProductId(product.getProductId());
+        request.setQuantity(quantity);
+        request.setCustomerName("Holder");
+        return stockHoldService.hold(request);
+    }
+
+    @Test
+    void holds_areRecordedAsTheyTakeAndReturnUnits() {
+        ProductEntity product = addProduct("Held", 100);
+        StockHoldEntity confirmed = hold(product, 5);
+        StockHoldEntity released = hold(product, 3);
+        hold(product, 2);
+
+        stockProjector.project();
+        assertEquals(90, productService.getProduct(product.getProductId()).getStock());
+
+        stockHoldService.confirm(confirmed.getHoldId());
+        stockHoldService.release(released.getHoldId());
+        stockProjector.project();
+
+        assertEquals(Map.of(product.getProductId(), 93), tableStock());
+        assertEquals(tableStock(), projectedStock());
+        assertEquals(5, stockLedger.getCustomerOrders("Holder").getOrderCount());
+    }
+
+    @Test
+    void leases_areRecordedAsTheyAreGrantedAndReturned() {
+        ProductEntity product = addProduct("Leased", 1000);
+        StockLeases leases = new StockLeases(productRepository, stockLeaseRepository, orderRepository, orderShards,
+                productCatalogCache, stockLedger, transactionManager, new SimpleMeterRegistry(), false, true,
+                "ledger-node", 50, 0.25, 0.2, 30000, 10000);
+        OrderService leasedOrders = new OrderService(productRepository, orderRepository, orderShards,
+                stockReservationEngine, productCatalogCache, stockLockingPolicy, hotProductCombiner, stockLedger,
+                customerOrderCache, stockSlots, leases, transactionManager);
+        try {
+            for (int i = 0; i < 10; i++) {
+                leasedOrders.placeOrder(request(product.getProductId(), "Leased"));
+            }
+            stockProjector.project();
+            // The leased block is off the table, and orders sold from it change neither.
+            assertEquals(Map.of(product.getProductId(), 950), tableStock());
+            assertEquals(tableStock(), projectedStock());
+        } finally {
+            leases.close();
+        }
+
+        stockProjector.project();
+        assertEquals(Map.of(product.getProductId(), 990), tableStock());
+        assertEquals(tableStock(), projectedStock());
+        assertEquals(10, stockLedger.getCustomerOrders("Leased").getOrderCount());
+    }
+
+    @Test
+    void open_recordsOpeningStockOfExistingProducts() {
+        ProductEntity existing = new ProductEntity();
+        existing.setProductName("Existing");
+        existing.setStock(42);
+        existing = productRepository.save(existing);
+
+        stockLedger.open();
+        stockProjector.project();
+
+        List<StockEventEntity> events = stockLedger.getEventsForProduct(existing.getProductId(), 0, 10);
+        assertEquals(1, events.size());
+        assertEquals(StockEventEntity.Type.PRODUCT_ADDED, events.get(0).getType());
+        assertEquals(42, productService.getProduct(existing.getProductId()).getStock());
+    }
+}
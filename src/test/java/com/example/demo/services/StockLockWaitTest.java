@@ -0,0 +1,178 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.OrderEntity;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link OrderService#placeOrder} times the product row lock for every contended order. The
+ * {@code benchmark} run measures how long orders wait for and hold that lock when 16 threads order
+ * the same product: first with the old read-modify-write (SELECT ... FOR UPDATE, reserve in Java,
+ * full-entity UPDATE), then through {@code placeOrder}, which takes the lock with its single
+ * conditional UPDATE.
+ */
+@SpringBootTest
+// Hundreds of placements would otherwise stay on the shared context's order timers.
+@DirtiesContext
+public class StockLockWaitTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockLockWaitTest.class);
+
+    private static final int THREADS = 16;
+    private static final int ORDERS = 400;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        productRepository.deleteAll();
+
+        product = new ProductEntity();
+        product.setProductName("ContendedProduct");
+        product.setStock(2 * ORDERS);
+        product = productRepository.save(product);
+    }
+
+    @Test
+    void placeOrder_contendedOrders_recordLockWaitAndHold() throws InterruptedException {
+        Timer lockWait = meterRegistry.get("orderup.stock.lock.wait").timer();
+        Timer lockHold = meterRegistry.get("orderup.stock.lock.hold").timer();
+        long waitsBefore = lockWait.count();
+        long holdsBefore = lockHold.count();
+
+        run(this::placeOrder);
+
+        assertEquals(ORDERS, lockWait.count() - waitsBefore);
+        assertEquals(ORDERS, lockHold.count() - holdsBefore);
+        assertEquals(ORDERS, orderRepository.count());
+        assertEquals(ORDERS, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+    }
+
+    @Test
+    @Tag("benchmark")
+    void singleStatementDecrement_holdsTheRowLockShorter() throws InterruptedException {
+        ConcurrentLinkedQueue<Long> readModifyWriteWaits = new ConcurrentLinkedQueue<>();
+        ConcurrentLinkedQueue<Long> readModifyWriteHolds = new ConcurrentLinkedQueue<>();
+        run(i -> transactionTemplate.executeWithoutResult(status -> {
+            long start = System.nanoTime();
+            ProductEntity locked = entityManager.find(ProductEntity.class, product.getProductId(),
+                    LockModeType.PESSIMISTIC_WRITE);
+            long acquired = System.nanoTime();
+            readModifyWriteWaits.add(acquired - start);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    readModifyWriteHolds.add(System.nanoTime() - acquired);
+                }
+            });
+            assertTrue(locked.reserveStock());
+            productRepository.save(locked);
+            OrderEntity order = new OrderEntity();
+            order.setCustomerName("Legacy" + i);
+            order.setProduct(locked);
+            orderRepository.save(order);
+        }));
+
+        Timer lockWait = meterRegistry.get("orderup.stock.lock.wait").timer();
+        Timer lockHold = meterRegistry.get("orderup.stock.lock.hold").timer();
+        long waitsBefore = lockWait.count();
+        long holdsBefore = lockHold.count();
+        double waitBefore = lockWait.totalTime(TimeUnit.NANOSECONDS);
+        double holdBefore = lockHold.totalTime(TimeUnit.NANOSECONDS);
+        run(this::placeOrder);
+
+        double readModifyWriteWait = mean(readModifyWriteWaits);
+        double readModifyWriteHold = mean(readModifyWriteHolds);
+        double atomicWait = (lockWait.totalTime(TimeUnit.NANOSECONDS) - waitBefore) / ORDERS;
+        double atomicHold = (lockHold.totalTime(TimeUnit.NANOSECONDS) - holdBefore) / ORDERS;
+        logger.info("row lock over {} contended orders: read-modify-write waits {} us, holds {} us; "
+                        + "single-statement decrement waits {} us, holds {} us",
+                ORDERS, Math.round(readModifyWriteWait / 1000), Math.round(readModifyWriteHold / 1000),
+                Math.round(atomicWait / 1000), Math.round(atomicHold / 1000));
+
+        assertEquals(ORDERS, lockWait.count() - waitsBefore);
+        assertEquals(ORDERS, lockHold.count() - holdsBefore);
+        assertEquals(2L * ORDERS, orderRepository.count());
+        assertEquals(0, productRepository.findById(product.getProductId()).orElseThrow().getStock());
+        assertTrue(atomicHold < readModifyWriteHold,
+                "atomic=" + atomicHold + " readModifyWrite=" + readModifyWriteHold);
+    }
+
+    private void placeOrder(int i) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName("Atomic" + i);
+        orderService.placeOrder(request);
+    }
+
+    private static double mean(ConcurrentLinkedQueue<Long> nanos) {
+        return nanos.stream().mapToLong(Long::longValue).average().orElseThrow();
+    }
+
+    private void run(IntConsumer order) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(ORDERS);
+        for (int i = 0; i < ORDERS; i++) {
+            int n = i;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    order.accept(n);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        executor.shutdown();
+    }
+}
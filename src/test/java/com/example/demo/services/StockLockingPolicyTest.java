@@ -0,0 +1,112 @@
+package com.example.demo.services;
+
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StockLockingPolicyTest {
+
+    private StockLockingPolicy policy(String mode) {
+        return new StockLockingPolicy(new SimpleMeterRegistry(), mode, 5, 1, 8, 0.3, 0.1, 5, 600000);
+    }
+
+    @Test
+    void fixedModes_ignoreConflicts() {
+        StockLockingPolicy pessimistic = policy("pessimistic");
+        StockLockingPolicy optimistic = policy("optimistic");
+        for (int i = 0; i < 50; i++) {
+            optimistic.recordOptimisticAttempt(6, true);
+        }
+
+        assertFalse(pessimistic.useOptimistic(6));
+        assertTrue(optimistic.useOptimistic(6));
+    }
+
+    @Test
+    void adaptive_switchesToLocksUnderConflictsAndBack() {
+        StockLockingPolicy policy = policy("adaptive");
+        assertTrue(policy.useOptimistic(6));
+
+        for (int i = 0; i < 10 && policy.useOptimistic(6); i++) {
+            policy.recordOptimisticAttempt(6, true);
+        }
+        assertFalse(policy.useOptimistic(6));
+        assertTrue(policy.useOptimistic(7), "other products keep their own strategy");
+
+        // Short lock waits mean the contention is gone.
+        for (int i = 0; i < 100 && !policy.useOptimistic(6); i++) {
+            policy.recordLockWait(6, TimeUnit.MICROSECONDS.toNanos(100));
+        }
+        assertTrue(policy.useOptimistic(6));
+        assertTrue(policy.conflictRate(6) < 0.1);
+    }
+
+    @Test
+    void adaptive_hysteresisKeepsLocksWhileModeratelyContended() {
+        StockLockingPolicy policy = policy("adaptive");
+        for (int i = 0; i < 10; i++) {
+            policy.recordOptimisticAttempt(6, true);
+        }
+        assertFalse(policy.useOptimistic(6));
+
+        // One in five orders still waits on the lock: 20% sits between the two thresholds.
+        for (int i = 0; i < 200; i++) {
+            policy.recordLockWait(6, TimeUnit.MILLISECONDS.toNanos(i % 5 == 0 ? 50 : 0));
+        }
+        assertFalse(policy.useOptimistic(6));
+    }
+
+    @Test
+    void adaptive_idleProductsAreForgotten() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AtomicLong now = new AtomicLong();
+        Ticker ticker = now::get;
+        StockLockingPolicy policy = new StockLockingPolicy(meterRegistry, "adaptive", 5, 1, 8, 0.3, 0.1, 5, 1000,
+                ticker);
+
+        for (int productId = 1; productId <= 100; productId++) {
+            policy.recordOptimisticAttempt(productId, true);
+        }
+        for (int i = 0; i < 10; i++) {
+            policy.recordOptimisticAttempt(1, true);
+        }
+        assertFalse(policy.useOptimistic(1));
+        assertEquals(100, meterRegistry.get("orderup.stock.locking.tracked").gauge().value());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        policy.recordOptimisticAttempt(2, false);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        policy.recordOptimisticAttempt(3, false);
+
+        assertEquals(2, meterRegistry.get("orderup.stock.locking.tracked").gauge().value());
+        assertTrue(policy.useOptimistic(1), "a forgotten product starts optimistic again");
+        assertEquals(0, policy.conflictRate(1));
+    }
+
+    @Test
+    void backoff_isBoundedByCap() {
+        StockLockingPolicy policy = policy("optimistic");
+
+        long start = System.nanoTime();
+        for (int attempt = 1; attempt <= 10; attempt++) {
+            policy.backoff(attempt);
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(elapsedMs < 10 * 8 + 200, "slept " + elapsedMs + " ms");
+    }
+
+    @Test
+    void invalidConfiguration_isRejected() {
+        assertThrows(IllegalArgumentException.class, () -> policy("sometimes"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StockLockingPolicy(new SimpleMeterRegistry(), "adaptive", 0, 1, 8, 0.3, 0.1, 5, 600000));
+        assertThrows(IllegalArgumentException.class,
+                () -> new StockLockingPolicy(new SimpleMeterRegistry(), "adaptive", 3, 1, 8, 0.1, 0.3, 5, 600000));
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.demo.services;
+
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.exceptions.ProductNotFoundException;
+import com.example.demo.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class StockReservationEngineTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private StockReservationEngine engine;
+
+    private final AtomicInteger databaseStock = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        engine = new StockReservationEngine(productRepository, mock(StockJournal.class),
+                mock(PlatformTransactionManager.class), true, 4);
+
+        databaseStock.set(100);
+        when(productRepository.findStockById(6)).thenAnswer(i -> Optional.of(databaseStock.get()));
+        when(productRepository.decrementStock(eq(6), anyInt())).thenAnswer(i -> {
+            int quantity = i.getArgument(1);
+            databaseStock.addAndGet(-quantity);
+            return 1;
+        });
+    }
+
+    /**
+     * Reserves and commits outside a transaction, as a committed order would.
+     */
+    private boolean reserve(int quantity) {
+        if (!engine.tryReserve(6, quantity)) {
+            return false;
+        }
+        engine.bindToTransaction(6, quantity);
+        return true;
+    }
+
+    @Test
+    void tryReserve_success() {
+        assertTrue(engine.tryReserve(6, 3));
+        assertEquals(Optional.of(97), engine.availableStock(6));
+        assertEquals(100, databaseStock.get());
+    }
+
+    @Test
+    void tryReserve_outOfStock() {
+        assertTrue(engine.tryReserve(6, 100));
+        assertFalse(engine.tryReserve(6, 1));
+    }
+
+    @Test
+    void tryReserve_productNotFound() {
+        when(productRepository.findStockById(999)).thenReturn(Optional.empty());
+
+        assertThrows(ProductNotFoundException.class, () -> engine.tryReserve(999, 1));
+    }
+
+    @Test
+    void flush_persistsPendingDecrements() {
+        reserve(2);
+        reserve(5);
+
+        engine.flush();
+
+        assertEquals(93, databaseStock.get());
+        verify(productRepository).decrementStock(6, 7);
+
+        engine.flush();
+        verify(productRepository, times(1)).decrementStock(eq(6), anyInt());
+    }
+
+    @Test
+    void release_returnsUnitsBeforeFlush() {
+        engine.tryReserve(6, 4);
+        engine.release(6, 4);
+
+        engine.flush();
+
+        assertEquals(Optional.of(100), engine.availableStock(6));
+        verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+    }
+
+    @Test
+    void flush_waitsForCommit_andRolledBackUnitsAreReleased() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            engine.tryReserve(6, 3);
+            engine.bindToTransaction(6, 3);
+            engine.tryReserve(6, 4);
+            engine.bindToTransaction(6, 4);
+            List<TransactionSynchronization> transactions = TransactionSynchronizationManager.getSynchronizations();
+
+            engine.flush();
+            verify(productRepository, never()).decrementStock(anyInt(), anyInt());
+
+            transactions.get(0).afterCommit();
+            transactions.get(0).afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            transactions.get(1).afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            engine.flush();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        verify(productRepository).decrementStock(6, 3);
+        assertEquals(97, databaseStock.get());
+        assertEquals(Optional.of(97), engine.availableStock(6));
+        engine.reconcile();
+        assertEquals(Optional.of(97), engine.availableStock(6));
+    }
+
+    @Test
+    void flush_failure_keepsUnitsPending() {
+        when(productRepository.decrementStock(eq(6), anyInt())).thenReturn(0);
+        reserve(10);
+
+        engine.flush();
+
+        assertEquals(100, databaseStock.get());
+        assertEquals(Optional.of(90), engine.availableStock(6));
+    }
+
+    @Test
+    void reconcile_correctsExternalDrift() {
+        reserve(10);
+        engine.flush();
+        databaseStock.addAndGet(-30);
+
+        engine.reconcile();
+
+        assertEquals(Optional.of(60), engine.availableStock(6));
+    }
+
+    @Test
+    void restock_updatesCounterAfterDatabase() {
+        reserve(100);
+
+        ProductEntity restocked = engine.restock(6, 5, () -> {
+            databaseStock.addAndGet(5);
+            ProductEntity product = new ProductEntity();
+            product.setProductId(6);
+            product.setStock(databaseStock.get());
+            return product;
+        });
+
+        assertEquals(5, restocked.getStock());
+        assertEquals(Optional.of(5), engine.availableStock(6));
+    }
+
+    @Test
+    void restore_addsWhatDatabaseUpdateReports() {
+        reserve(10);
+
+        int restored = engine.restore(6, () -> {
+            // Flushed before the update runs.
+            assertEquals(90, databaseStock.get());
+            return databaseStock.addAndGet(4) - 90;
+        });
+
+        assertEquals(4, restored);
+        assertEquals(Optional.of(94), engine.availableStock(6));
+    }
+
+    @Test
+    void tryReserve_concurrentOrders_neverOversells() throws InterruptedException {
+        int orders = 5000;
+        ExecutorService executor = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicInteger succeeded = new AtomicInteger();
+
+        for (int i = 0; i < orders; i++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    if (reserve(1)) {
+                        succeeded.incrementAndGet();
+                    }
+                    if (Math.random() < 0.1) {
+                        engine.flush();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        engine.flush();
+
+        assertEquals(100, succeeded.get());
+        assertEquals(Optional.of(0), engine.availableStock(6));
+        assertEquals(0, databaseStock.get());
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.demo.services;
+
+import com.example.demo.dtos.BatchOrderRequest;
+import com.example.demo.dtos.OrderLineItem;
+import com.example.demo.dtos.OrderRequest;
+import com.example.demo.entity.ProductEntity;
+import com.example.demo.entity.ProductStockSlotEntity;
+import com.example.demo.exceptions.InvalidRequestException;
+import com.example.demo.exceptions.OutOfStockException;
+import com.example.demo.repository.OrderRepository;
+import com.example.demo.repository.ProductRepository;
+import com.example.demo.repository.ProductStockSlotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Splits a product over stock slots on H2 and checks that concurrent orders, carts and group
+ * commits never oversell it, that catalog and sales reads add the slots up, and that restocks and
+ * drifted slots are spread out again.
+ */
+@SpringBootTest(properties = {
+        "orderup.stock.slots.enabled=true",
+        "orderup.stock.slots.rebalance-interval-ms=3600000"})
+public class StockSlotsTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private StockSlots stockSlots;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private ProductStockSlotRepository slotRepository;
+
+    private ProductEntity product;
+
+    @BeforeEach
+    void setup() {
+        orderRepository.deleteAll();
+        slotRepository.deleteAll();
+        productRepository.deleteAll();
+        ProductEntity entity = new ProductEntity();
+        entity.setProductName("Best Seller");
+        entity.setStock(500);
+        product = productRepository.save(entity);
+    }
+
+    private OrderRequest request(String customerName) {
+        OrderRequest request = new OrderRequest();
+        request.setProductId(product.getProductId());
+        request.setCustomerName(customerName);
+        return request;
+    }
+
+    private List<Integer> slotStock() {
+        return slotRepository.findAllSlots().stream().map(ProductStockSlotEntity::getStock).toList();
+    }
+
+    @Test
+    void setSlots_spreadsStockAndReadsAddUp() {
+        assertEquals(500, productService.setStockSlots(product.getProductId(), 8).getStock());
+
+        assertEquals(List.of(63, 63, 63, 63, 62, 62, 62, 62), slotStock());
+        assertEquals(0, productRepository.findStockById(product.getProductId()).orElseThrow());
+        assertEquals(500, productService.getProduct(product.getProductId()).getStock());
+        assertTrue(stockSlots.isSlotted(product.getProductId()));
+    }
+
+    @Test
+    void concurrentOrders_neverOversell() throws Exception {
+        productService.setStockSlots(product.getProductId(), 8);
+        AtomicInteger placed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            int n = i;
+            tasks.add(pool.submit(() -> {
+                try {
+                    orderService.placeOrder(request("Customer " + n));
+                    placed.incrementAndGet();
+                } catch (OutOfStockException e) {
+                    rejected.incrementAndGet();
+                }
+            }));
+        }
+        for (Future<?> task : tasks) {
+            task.get();
+        }
+        pool.shutdown();
+
+        assertEquals(500, placed.get());
+        assertEquals(100, rejected.get());
+        assertEquals(500, orderRepository.count());
+        assertEquals(0, productService.getProduct(product.getProductId()).getStock());
+        assertEquals(500, productService.getSales(product.getProductId()).getUnitsSold());
+    }
+
+    @Test
+    void cartAndGroup_spanSeveralSlots() {
+        productService.setStockSlots(product.getProductId(), 4);
+        OrderLineItem item = new OrderLineItem();
+        item.setProductId(product.getProductId());
+        item.setQuantity(300);
+        BatchOrderRequest cart = new BatchOrderRequest();
+        cart.setCustomerName("Cart");
+        cart.setItems(List.of(item));
+
+        assertEquals(300, orderService.placeOrders(cart).size());
+
+        List<OrderRequest> group = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            group.add(request("Group " + i));
+        }
+        List<PlacementResult> results = orderService.placeOrderGroup(group);
+
+        assertEquals(200, results.stream().filter(PlacementResult::isPlaced).count());
+        assertEquals(0, productService.getProduct(product.getProductId()).getStock());
+        assertEquals(500, productService.getSales(product.getProductId()).getUnitsSold());
+    }
+
+    @Test
+    void restockAndDrift_areRebalanced() {
+        productService.setStockSlots(product.getProductId(), 4);
+        assertEquals(600, productService.updateStock(product.getProductId(), 100).getStock());
+        assertEquals(List.of(125, 125, 125, 125), slotStock());
+
+        stockSlots.rebalance();
+        assertEquals(List.of(150, 150, 150, 150), slotStock());
+        assertEquals(0, productRepository.findStockById(product.getProductId()).orElseThrow());
+
+        // Drain one slot as if every order had landed on it.
+        slotRepository.decrementStock(product.getProductId(), 2, 150);
+        assertTrue(stockSlots.isSkewed(slotRepository.findAllSlots(), 0));
+        stockSlots.rebalance();
+        assertEquals(List.of(113, 113, 112, 112), slotStock());
+        assertFalse(stockSlots.isSkewed(slotRepository.findAllSlots(), 0));
+    }
+
+    @Test
+    void setSlotsToOne_mergesStockAndSales() {
+        productService.setStockSlots(product.getProductId(), 4);
+        for (int i = 0; i < 10; i++) {
+            orderService.placeOrder(request("Customer " + i));
+        }
+
+        assertEquals(490, productService.setStockSlots(product.getProductId(), 1).getStock());
+
+        assertTrue(slotRepository.findAllSlots().isEmpty());
+        assertFalse(stockSlots.isSlotted(product.getProductId()));
+        ProductEntity merged = productRepository.findById(product.getProductId()).orElseThrow();
+        assertEquals(490, merged.getStock());
+        assertEquals(10, merged.getUnitsSold());
+    }
+
+    @Test
+    void setSlots_outOfRange_isRejected() {
+        assertThrows(InvalidRequestException.class, () -> stockSlots.setSlots(product.getProductId(), 0));
+        assertThrows(InvalidRequestException.class, () -> stockSlots.setSlots(product.getProductId(), 65));
+    }
+}
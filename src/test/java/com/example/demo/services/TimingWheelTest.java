@@ -0,0 +1,82 @@
+package com.example.demo.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimingWheelTest {
+
+    private static final long TICK = 10;
+
+    private static List<String> advance(TimingWheel<String> wheel, long now) {
+        List<String> expired = new ArrayList<>();
+        wheel.advance(now, expired::add);
+        return expired;
+    }
+
+    @Test
+    void advance_expiresInDeadlineOrderNeverEarly() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        wheel.schedule("b", 25);
+        wheel.schedule("a", 10);
+        wheel.schedule("c", 31);
+
+        assertEquals(List.of(), advance(wheel, 9));
+        assertEquals(List.of("a"), advance(wheel, 10));
+        assertEquals(List.of(), advance(wheel, 29));
+        assertEquals(List.of("b"), advance(wheel, 30));
+        assertEquals(List.of("c"), advance(wheel, 40));
+    }
+
+    @Test
+    void advance_keepsTimeoutsDueInLaterRevolutions() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 4, 0);
+        // Both land in bucket 1; "late" is two revolutions further on.
+        wheel.schedule("soon", 10);
+        wheel.schedule("late", 90);
+
+        assertEquals(List.of("soon"), advance(wheel, 10));
+        assertEquals(List.of(), advance(wheel, 50));
+        assertEquals(List.of("late"), advance(wheel, 90));
+    }
+
+    @Test
+    void advance_afterLongStall_expiresEverythingDue() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 4, 0);
+        for (int i = 1; i <= 20; i++) {
+            wheel.schedule("t" + i, i * TICK);
+        }
+
+        assertEquals(15, advance(wheel, 150).size());
+        assertEquals(5, advance(wheel, 1000).size());
+    }
+
+    @Test
+    void cancel_dropsTimeout() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 20);
+        wheel.schedule("kept", 20);
+        cancelled.cancel();
+
+        assertEquals(List.of("kept"), advance(wheel, 20));
+    }
+
+    @Test
+    void schedule_pastDeadline_expiresOnNextAdvance() {
+        TimingWheel<String> wheel = new TimingWheel<>(TICK, 8, 0);
+        advance(wheel, 100);
+        wheel.schedule("overdue", 50);
+
+        assertEquals(List.of("overdue"), advance(wheel, 101));
+    }
+
+    @Test
+    void wheelSize_roundsUpToPowerOfTwo() {
+        assertEquals(8, new TimingWheel<String>(TICK, 5, 0).wheelSize());
+        assertEquals(4096, new TimingWheel<String>(TICK, 4096, 0).wheelSize());
+        assertThrows(IllegalArgumentException.class, () -> new TimingWheel<String>(0, 8, 0));
+    }
+}
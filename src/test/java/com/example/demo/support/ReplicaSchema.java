@@ -0,0 +1,37 @@
+package com.example.demo.support;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+
+/**
+ * Stands in for replication of the schema to an embedded read database. Once Hibernate has created
+ * the tables in the primary, their DDL is copied to {@code readDataSource}, before any bean reads
+ * through it. Rows are not copied; tests insert what the replica should hold. Import it into a
+ * Spring test with {@code @Import}.
+ */
+@TestConfiguration
+public class ReplicaSchema implements BeanPostProcessor {
+
+    private DataSource writeDataSource;
+    private DataSource readDataSource;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (beanName.equals("writeDataSource")) {
+            writeDataSource = (DataSource) bean;
+        } else if (beanName.equals("readDataSource")) {
+            readDataSource = (DataSource) bean;
+        } else if (bean instanceof LocalContainerEntityManagerFactoryBean) {
+            JdbcTemplate replica = new JdbcTemplate(readDataSource);
+            replica.execute("DROP ALL OBJECTS");
+            new JdbcTemplate(writeDataSource).queryForList("SCRIPT NODATA", String.class).stream()
+                    .filter(statement -> !statement.startsWith("CREATE USER"))
+                    .forEach(replica::execute);
+        }
+        return bean;
+    }
+}